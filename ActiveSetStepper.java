@@ -0,0 +1,259 @@
+import java.util.Random;
+
+/*
+ * This class computes generations incrementally, only recomputing the parts of the
+ * BitBoard that sit next to a change made by the previous generation
+ * The BitBoard is tracked in words, one long of a row holding 64 Cells; a word can
+ * only change if it, or one of the eight words around it, changed last generation, so
+ * every other word keeps its state and is not visited at all
+ * Because a GameOfLife object swaps its two BitBoards every generation, the BitBoard
+ * being written already holds the generation before the current one, which agrees
+ * with the current one everywhere except in the changed words; the untouched words
+ * therefore need no copying either, and the cost of a generation grows with the amount
+ * of activity instead of the area of the BitBoard
+ * The first generation, and any generation after the BitBoards were edited or
+ * swapped for others, is computed in full with the SWAR kernel to find the changes
+ * When the edges wrap around, a change on one edge reaches the opposite edge through
+ * the ghost squares, so any ghost square that differs between the two BitBoards counts
+ * as a change of the long holding it
+ */
+public class ActiveSetStepper implements Stepper {
+
+	// the BitBoards of the last generation and their modification counts afterwards
+	private BitBoard lastCurrent;
+	private BitBoard lastNext;
+	private int lastCurrentModCount;
+	private int lastNextModCount;
+
+	// the indices of the words that changed in the last generation
+	private int[] changed;
+	private int changedCount;
+
+	// the words scheduled for recomputing, as a list and as one bit per word
+	private int[] active;
+	private int activeCount;
+	private long[] scheduled;
+
+	private SwarStepper fullStepper = new SwarStepper();
+
+	/*
+	 * Writes the generation after current into next, only recomputing the words near
+	 * the last generation's changes when next still holds the generation before current
+	 */
+	public void step(BitBoard current, BitBoard next) {
+		if(current == lastNext && next == lastCurrent
+				&& current.getModCount() == lastNextModCount
+				&& next.getModCount() == lastCurrentModCount) {
+			addGhostChanges(current, next);
+			stepActive(current, next);
+		}
+		else {
+			stepFull(current, next);
+		}
+
+		lastCurrent = current;
+		lastNext = next;
+		lastCurrentModCount = current.getModCount();
+		lastNextModCount = next.getModCount();
+	}
+
+	/*
+	 * Writes rows fromRow (inclusive) to toRow (exclusive) of the generation after
+	 * current into next; a band of rows is always computed in full, and the next
+	 * call to step starts over with a full generation
+	 */
+	public void stepRows(BitBoard current, BitBoard next, int fromRow, int toRow) {
+		fullStepper.stepRows(current, next, fromRow, toRow);
+		lastCurrent = null;
+		lastNext = null;
+	}
+
+	/*
+	 * Returns the number of words that changed in the last generation
+	 */
+	public int getChangedWordCount() {
+		return changedCount;
+	}
+
+	/*
+	 * Computes every word with the SWAR kernel and records which ones changed
+	 */
+	private void stepFull(BitBoard current, BitBoard next) {
+		fullStepper.step(current, next);
+
+		long[] source = current.getWords();
+		long[] target = next.getWords();
+		int firstWord = current.rowOffset(0);
+		int endWord = current.rowOffset(current.getHeight());
+
+		long[] interiorMask = current.getInteriorMask();
+		int wordsPerRow = current.getWordsPerRow();
+
+		// leaves room for the ghost changes of both ghost rows and columns
+		int capacity = source.length + 2 * current.getHeight();
+		if(changed == null || changed.length != capacity) {
+			changed = new int[capacity];
+			active = new int[source.length];
+			scheduled = new long[(source.length + 63) >>> 6];
+		}
+
+		changedCount = 0;
+		for(int word = firstWord; word < endWord; word++) {
+			if((source[word] & interiorMask[word % wordsPerRow]) != target[word]) {
+				changed[changedCount++] = word;
+			}
+		}
+	}
+
+	/*
+	 * Adds to the changed words the ghost longs of current that differ from those of
+	 * next, which still holds the generation before with its own ghosts filled
+	 */
+	private void addGhostChanges(BitBoard current, BitBoard next) {
+		long[] source = current.getWords();
+		long[] target = next.getWords();
+		int wordsPerRow = current.getWordsPerRow();
+		int top = current.rowOffset(-1);
+		int bottom = current.rowOffset(current.getHeight());
+
+		for(int word = 0; word < wordsPerRow; word++) {
+			if(source[top + word] != target[top + word]) {
+				changed[changedCount++] = top + word;
+			}
+			if(source[bottom + word] != target[bottom + word]) {
+				changed[changedCount++] = bottom + word;
+			}
+		}
+
+		int rightColumn = current.getWidth() + 1;
+		long rightMask = 1L << rightColumn;
+		for(int y = 0; y < current.getHeight(); y++) {
+			int row = current.rowOffset(y);
+			if(((source[row] ^ target[row]) & 1L) != 0) {
+				changed[changedCount++] = row;
+			}
+			int right = row + (rightColumn >>> 6);
+			if(((source[right] ^ target[right]) & rightMask) != 0) {
+				changed[changedCount++] = right;
+			}
+		}
+	}
+
+	/*
+	 * Recomputes only the words next to the words that changed last generation
+	 */
+	private void stepActive(BitBoard current, BitBoard next) {
+		long[] source = current.getWords();
+		long[] target = next.getWords();
+		long[] interiorMask = current.getInteriorMask();
+		int wordsPerRow = current.getWordsPerRow();
+		int firstWord = current.rowOffset(0);
+		int endWord = current.rowOffset(current.getHeight());
+
+		// schedules each changed word and its eight neighbors, once each
+		activeCount = 0;
+		for(int i = 0; i < changedCount; i++) {
+			int word = changed[i];
+			int column = word % wordsPerRow;
+
+			for(int rowStart = word - column - wordsPerRow; rowStart <= word - column + wordsPerRow; rowStart += wordsPerRow) {
+				if(rowStart < firstWord || rowStart >= endWord) {
+					continue;
+				}
+
+				for(int neighbor = Math.max(0, column - 1); neighbor <= Math.min(wordsPerRow - 1, column + 1); neighbor++) {
+					int index = rowStart + neighbor;
+					long bit = 1L << index;
+					if((scheduled[index >>> 6] & bit) == 0) {
+						scheduled[index >>> 6] |= bit;
+						active[activeCount++] = index;
+					}
+				}
+			}
+		}
+
+		// recomputes the scheduled words, recording the ones that change this generation
+		changedCount = 0;
+		next.clearBirths();
+		for(int i = 0; i < activeCount; i++) {
+			int index = active[i];
+			int column = index % wordsPerRow;
+			boolean hasPrevious = column > 0;
+			boolean hasNext = column + 1 < wordsPerRow;
+			int above = index - wordsPerRow;
+			int below = index + wordsPerRow;
+
+			long word = SwarStepper.nextWord(
+					hasPrevious ? source[above - 1] : 0L, source[above], hasNext ? source[above + 1] : 0L,
+					hasPrevious ? source[index - 1] : 0L, source[index], hasNext ? source[index + 1] : 0L,
+					hasPrevious ? source[below - 1] : 0L, source[below], hasNext ? source[below + 1] : 0L)
+					& interiorMask[column];
+
+			int change = Long.bitCount(word) - Long.bitCount(target[index] & interiorMask[column]);
+			if(change != 0) {
+				next.addRowPopulation(index / wordsPerRow - 1, change);
+			}
+			int born = Long.bitCount(word & ~source[index]);
+			if(born != 0) {
+				next.addRowBirths(index / wordsPerRow - 1, born);
+			}
+			target[index] = word;
+			if(word != (source[index] & interiorMask[column])) {
+				changed[changedCount++] = index;
+			}
+			scheduled[index >>> 6] &= ~(1L << index);
+		}
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(5);
+		GameOfLife full = new GameOfLife(500, 300);
+		GameOfLife sparse = new GameOfLife(500, 300);
+
+		// a few small soups on an otherwise empty board
+		for(int soup = 0; soup < 12; soup++) {
+			int left = random.nextInt(480);
+			int top = random.nextInt(280);
+			for(int x = left; x < left + 20; x++) {
+				for(int y = top; y < top + 20; y++) {
+					if(random.nextBoolean()) {
+						full.revive(x, y);
+						sparse.revive(x, y);
+					}
+				}
+			}
+		}
+
+		ActiveSetStepper stepper = new ActiveSetStepper();
+		full.setStepper(new SwarStepper());
+		sparse.setStepper(stepper);
+
+		for(int generation = 1; generation <= 400; generation++) {
+			if(generation == 200) {
+				// an edit between generations must be picked up
+				full.swapStatus(250, 150);
+				sparse.swapStatus(250, 150);
+			}
+
+			full.nextGen();
+			sparse.nextGen();
+			for(int x = 0; x < full.getWidth(); x++) {
+				for(int y = 0; y < full.getHeight(); y++) {
+					if(full.isAlive(x, y) != sparse.isAlive(x, y)) {
+						throw new AssertionError("Generation " + generation + " differs at (" + x + ", " + y + ")");
+					}
+				}
+				if(full.getBoard().rowAliveCount(x % full.getHeight()) != sparse.getBoard().rowAliveCount(x % full.getHeight())) {
+					throw new AssertionError("Generation " + generation + " counts row " + x % full.getHeight() + " differently");
+				}
+			}
+			if(full.aliveCount() != sparse.aliveCount()) {
+				throw new AssertionError("Generation " + generation + " counts " + sparse.aliveCount()
+						+ " living Cells instead of " + full.aliveCount());
+			}
+		}
+
+		System.out.println("400 incremental generations match the full ones; words changed in the last one: "
+				+ stepper.getChangedWordCount() + " of " + full.getBoard().getWords().length);
+	}
+}
@@ -0,0 +1,608 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * This class stores a Board's setup as bits instead of GamePiece objects, using one
+ * bit per square, where a set bit represents a living Cell and a clear bit a dead one
+ * Each row is packed into consecutive longs of a single long array, called bits, so a
+ * BitBoard of any size holds no per-square objects
+ * The rows are padded by one ghost square on every side (one extra row above and
+ * below, one extra bit to the left and right), so the square at (x, y) is stored in
+ * row y + 1 at bit x + 1; the ghost squares let neighbor counting read past the edges
+ * without any bounds checks, and are dead unless fillGhosts copies the opposite edges
+ * into them for a wrapping Topology
+ * A BitBoard object can be constructed either by entering the dimensions as integers,
+ * by entering the side length as an integer if the BitBoard is a square, or by
+ * entering the initial setup as a two-dimensional GamePiece array
+ * This class offers the same getPiece, setPiece, removePiece and hasPiece methods as
+ * the Board class, along with primitive isAlive and setAlive methods that never
+ * create a GamePiece object
+ * The number of living squares in every row, and in the whole BitBoard, is kept up to
+ * date as squares are set, so counting them never scans the BitBoard; the Steppers,
+ * which write whole rows at once, set the counts of the rows they write, along with
+ * how many squares of each row they brought to life
+ */
+public class BitBoard {
+
+	// instance data
+	private int width;
+	private int height;
+	private int wordsPerRow;
+	private long[] bits;
+	private long[] interiorMask;
+	private int modCount;
+
+	// the number of living squares in each row and in the whole BitBoard
+	private int[] rowPopulations;
+	private int population;
+
+	// the number of squares born in each row and in the whole BitBoard when it was last stepped into
+	private int[] rowBirths;
+	private int births;
+
+	/*
+	 * Constructs a rectangular BitBoard given integer dimensions with every square dead
+	 */
+	public BitBoard(int width, int height) {
+		if(width < 1 || height < 1) {
+			throw new IllegalArgumentException("A BitBoard must have a positive width and height");
+		}
+
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + 2 + 63) >>> 6;
+		this.bits = new long[(height + 2) * wordsPerRow];
+		this.rowPopulations = new int[height];
+		this.rowBirths = new int[height];
+
+		// marks the bits of each row word that belong to real squares instead of ghosts
+		this.interiorMask = new long[wordsPerRow];
+		for(int x = 1; x <= width; x++) {
+			interiorMask[x >>> 6] |= 1L << (x & 63);
+		}
+	}
+
+	/*
+	 * Constructs a square BitBoard given an integer side length
+	 */
+	public BitBoard(int sideLength) {
+		this(sideLength, sideLength);
+	}
+
+	/*
+	 * Constructs a BitBoard given a two-dimensional array of GamePiece objects, where a
+	 * square is alive if it holds a GamePiece of type 1
+	 */
+	public BitBoard(GamePiece[][] board) {
+		this(board[0].length, board.length);
+
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				if(board[y][x] != null && board[y][x].getType() == Cell.ALIVE) {
+					setAlive(x, y, true);
+				}
+			}
+		}
+	}
+
+	/*
+	 *  Returns a String with the BitBoard's dimensions
+	 */
+	public String toString() {
+		return "This board has width " + this.getWidth() + " and height " + this.getHeight();
+	}
+
+	/*
+	 * Clears the BitBoard by setting every square to dead
+	 */
+	public void clear() {
+		Arrays.fill(bits, 0L);
+		Arrays.fill(rowPopulations, 0);
+		population = 0;
+		modCount++;
+	}
+
+	/*
+	 * Copies the state of every square from another BitBoard with the same dimensions
+	 */
+	public void copyFrom(BitBoard other) {
+		if(other.width != width || other.height != height) {
+			throw new IllegalArgumentException("Cannot copy a " + other.width + "x" + other.height
+					+ " board onto a " + width + "x" + height + " board");
+		}
+
+		System.arraycopy(other.bits, 0, bits, 0, bits.length);
+		System.arraycopy(other.rowPopulations, 0, rowPopulations, 0, height);
+		population = other.population;
+		modCount++;
+	}
+
+	/*
+	 * Checks to see if the square at (x, y) is alive; squares outside the BitBoard are dead
+	 */
+	public boolean isAlive(int x, int y) {
+		if(inBounds(x, y)) {
+			int column = x + 1;
+			return ((bits[(y + 1) * wordsPerRow + (column >>> 6)] >>> column) & 1L) != 0;
+		}
+
+		return false;
+	}
+
+	/*
+	 * Sets the square at (x, y) to alive or dead and returns whether it was alive before;
+	 * locations outside the BitBoard are ignored
+	 */
+	public boolean setAlive(int x, int y, boolean alive) {
+		if(!inBounds(x, y)) {
+			return false;
+		}
+
+		int column = x + 1;
+		int index = (y + 1) * wordsPerRow + (column >>> 6);
+		long mask = 1L << column;
+		boolean wasAlive = (bits[index] & mask) != 0;
+
+		if(alive) {
+			bits[index] |= mask;
+		}
+		else {
+			bits[index] &= ~mask;
+		}
+		if(alive != wasAlive) {
+			int change = alive ? 1 : -1;
+			rowPopulations[y] += change;
+			population += change;
+		}
+		modCount++;
+
+		return wasAlive;
+	}
+
+	/*
+	 * Sets a run of length squares of row y, starting at (x, y) and going right, to alive
+	 * or dead a whole long at a time; the part of the run outside the BitBoard is ignored
+	 * The counts change by the living squares gained or lost in the words the run
+	 * touches, so a row filled by many short runs is never scanned again
+	 */
+	public void setRun(int x, int y, int length, boolean alive) {
+		if(y < 0 || y >= height) {
+			return;
+		}
+
+		int first = Math.max(x, 0) + 1;
+		int last = (int) Math.min((long) x + length, width);
+		if(first > last) {
+			return;
+		}
+
+		int row = (y + 1) * wordsPerRow;
+		int change = 0;
+		for(int word = first >>> 6; word <= last >>> 6; word++) {
+			long mask = -1L;
+			if(word == first >>> 6) {
+				mask &= -1L << first;
+			}
+			if(word == last >>> 6) {
+				mask &= -1L >>> (63 - (last & 63));
+			}
+
+			change -= Long.bitCount(bits[row + word] & interiorMask[word]);
+			if(alive) {
+				bits[row + word] |= mask;
+			}
+			else {
+				bits[row + word] &= ~mask;
+			}
+			change += Long.bitCount(bits[row + word] & interiorMask[word]);
+		}
+		rowPopulations[y] += change;
+		population += change;
+		modCount++;
+	}
+
+	/*
+	 * Places a Cell with the given GamePiece's type on the BitBoard location given by (x, y)
+	 * and returns a Cell holding the state that was originally at (x, y); a null piece
+	 * leaves a dead square
+	 */
+	public GamePiece setPiece(int x, int y, GamePiece piece) {
+		if(!inBounds(x, y)) {
+			return null;
+		}
+
+		boolean wasAlive = setAlive(x, y, piece != null && piece.getType() == Cell.ALIVE);
+		return new Cell(wasAlive ? Cell.ALIVE : Cell.DEAD);
+	}
+
+	/*
+	 *  Kills the square at (x, y) and returns a Cell holding the state it had before
+	 */
+	public GamePiece removePiece(int x, int y) {
+		return setPiece(x, y, null);
+	}
+
+	/*
+	 * Returns a new Cell holding the state of location (x, y) on the BitBoard
+	 * Since the BitBoard stores no GamePiece objects, changing the returned Cell does
+	 * not change the BitBoard; use setAlive or setPiece instead
+	 */
+	public GamePiece getPiece(int x, int y) {
+		if(inBounds(x, y)) {
+			return new Cell(isAlive(x, y) ? Cell.ALIVE : Cell.DEAD);
+		}
+		else {
+			return null;
+		}
+	}
+
+	/*
+	 *  Checks if there is a Cell at location (x, y); every square inside a BitBoard
+	 *  holds a Cell, either dead or alive
+	 */
+	public boolean hasPiece(int x, int y) {
+		return inBounds(x, y);
+	}
+
+	/*
+	 *  Checks if a location (x, y) is inside the BitBoard
+	 */
+	public boolean inBounds(int x, int y) {
+		return (x >= 0 && x < this.getWidth() && y >= 0 && y < this.getHeight());
+	}
+
+	/*
+	 * Returns how many squares are alive, from the running count
+	 */
+	public int aliveCount() {
+		return population;
+	}
+
+	/*
+	 * Returns how many squares of row y are alive, from the running count of the row;
+	 * rows outside the BitBoard have none
+	 */
+	public int rowAliveCount(int y) {
+		if(y < 0 || y >= height) {
+			return 0;
+		}
+
+		return rowPopulations[y];
+	}
+
+	/*
+	 * Counts how many squares are alive in the region of columns by rows squares whose
+	 * top left square is (left, top); the part of the region outside the BitBoard is
+	 * ignored, rows that the region spans from edge to edge are read from their running
+	 * counts, and the rest are counted a long at a time
+	 */
+	public int aliveCount(int left, int top, int columns, int rows) {
+		int first = Math.max(left, 0) + 1;
+		int last = (int) Math.min((long) left + columns, width);
+		int firstRow = Math.max(top, 0);
+		int endRow = (int) Math.min((long) top + rows, height);
+		if(first > last || firstRow >= endRow) {
+			return 0;
+		}
+
+		boolean wholeRows = first == 1 && last == width;
+		if(wholeRows && firstRow == 0 && endRow == height) {
+			return population;
+		}
+
+		int aliveCellCount = 0;
+		for(int y = firstRow; y < endRow; y++) {
+			if(wholeRows) {
+				aliveCellCount += rowPopulations[y];
+				continue;
+			}
+
+			int row = (y + 1) * wordsPerRow;
+			for(int word = first >>> 6; word <= last >>> 6; word++) {
+				long mask = -1L;
+				if(word == first >>> 6) {
+					mask &= -1L << first;
+				}
+				if(word == last >>> 6) {
+					mask &= -1L >>> (63 - (last & 63));
+				}
+				aliveCellCount += Long.bitCount(bits[row + word] & mask);
+			}
+		}
+
+		return aliveCellCount;
+	}
+
+	/*
+	 * Returns a 64-bit hash of the states of all the squares, mixing the packed rows a
+	 * long at a time; BitBoards with the same squares alive have the same hash
+	 */
+	public long contentHash() {
+		long hash = width * 31L + height;
+
+		for(int y = 0; y < height; y++) {
+			int row = (y + 1) * wordsPerRow;
+			for(int word = 0; word < wordsPerRow; word++) {
+				hash = (hash ^ ((bits[row + word] & interiorMask[word]) * 0x9E3779B97F4A7C15L)) * 0xC2B2AE3D27D4EB4FL;
+				hash ^= hash >>> 29;
+			}
+		}
+
+		return hash;
+	}
+
+	/*
+	 * Checks if another BitBoard has the same dimensions and the same squares alive;
+	 * the ghost squares are not compared
+	 */
+	public boolean hasSameCells(BitBoard other) {
+		if(width != other.width || height != other.height) {
+			return false;
+		}
+
+		for(int y = 0; y < height; y++) {
+			int row = (y + 1) * wordsPerRow;
+			for(int word = 0; word < wordsPerRow; word++) {
+				if(((bits[row + word] ^ other.bits[row + word]) & interiorMask[word]) != 0) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * Returns the width of the BitBoard as an integer (getter)
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/*
+	 *  Returns the height of the BitBoard as an integer (getter)
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/*
+	 * Returns a counter that goes up every time a square is set through this class,
+	 * which lets a stateful Stepper notice that the BitBoard was edited between two
+	 * generations; writes made directly to the packed rows do not count
+	 */
+	int getModCount() {
+		return modCount;
+	}
+
+	/*
+	 * Returns the number of longs used to store each padded row
+	 */
+	int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	/*
+	 * Returns the index in the bits array of the first long of row y, where row -1
+	 * and row height are the dead ghost rows above and below the BitBoard
+	 */
+	int rowOffset(int y) {
+		return (y + 1) * wordsPerRow;
+	}
+
+	/*
+	 * Returns the packed rows of the BitBoard; the array is shared, not copied, so the
+	 * stepping kernels can read and write it directly
+	 */
+	long[] getWords() {
+		return bits;
+	}
+
+	/*
+	 * Returns, for each long of a row, a mask of the bits that hold real squares
+	 * rather than ghost squares
+	 */
+	long[] getInteriorMask() {
+		return interiorMask;
+	}
+
+	/*
+	 * Fills the ghost columns and rows from the opposite edges of the BitBoard for a
+	 * wrapping Topology, or clears them for PLANE; the ghost columns of each row are
+	 * filled first, so the ghost rows, copied whole, carry the right corners
+	 * This writes the packed rows directly and does not count as an edit
+	 */
+	void fillGhosts(Topology topology) {
+		int rightColumn = width + 1;
+		int rightWord = rightColumn >>> 6;
+		long rightMask = 1L << rightColumn;
+		boolean wrap = topology != Topology.PLANE;
+
+		for(int y = 0; y < height; y++) {
+			int row = (y + 1) * wordsPerRow;
+			long left = wrap ? (bits[row + (width >>> 6)] >>> width) & 1L : 0L;
+			long right = wrap ? (bits[row] >>> 1) & 1L : 0L;
+			bits[row] = (bits[row] & ~1L) | left;
+			bits[row + rightWord] = (bits[row + rightWord] & ~rightMask) | (right << rightColumn);
+		}
+
+		int top = 0;
+		int bottom = (height + 1) * wordsPerRow;
+		if(topology == Topology.TORUS) {
+			System.arraycopy(bits, height * wordsPerRow, bits, top, wordsPerRow);
+			System.arraycopy(bits, wordsPerRow, bits, bottom, wordsPerRow);
+		}
+		else if(topology == Topology.KLEIN_BOTTLE) {
+			mirrorRow(height * wordsPerRow, top);
+			mirrorRow(wordsPerRow, bottom);
+		}
+		else {
+			Arrays.fill(bits, top, top + wordsPerRow, 0L);
+			Arrays.fill(bits, bottom, bottom + wordsPerRow, 0L);
+		}
+	}
+
+	/*
+	 * Copies the padded row starting at index from into the one starting at index to,
+	 * turned left to right, so padded column p lands in column width + 1 - p
+	 */
+	private void mirrorRow(int from, int to) {
+		Arrays.fill(bits, to, to + wordsPerRow, 0L);
+		for(int column = 0; column <= width + 1; column++) {
+			long bit = (bits[from + (column >>> 6)] >>> column) & 1L;
+			int mirrored = width + 1 - column;
+			bits[to + (mirrored >>> 6)] |= bit << mirrored;
+		}
+	}
+
+	/*
+	 * Counts as an edit, so that stateful Steppers start over, after something other
+	 * than the squares changed how the next generation is computed
+	 */
+	void markModified() {
+		modCount++;
+	}
+
+	/*
+	 * Sets the count of living squares in row y after a Stepper wrote the row directly;
+	 * the count of the whole BitBoard is not changed until sumRowPopulations is called,
+	 * so bands of rows can be written by separate threads
+	 */
+	void setRowPopulation(int y, int count) {
+		rowPopulations[y] = count;
+	}
+
+	/*
+	 * Adds change to the counts of living squares in row y and in the whole BitBoard,
+	 * after a single long of the row was written directly
+	 */
+	void addRowPopulation(int y, int change) {
+		rowPopulations[y] += change;
+		population += change;
+	}
+
+	/*
+	 * Sets the count of squares born in row y when a Stepper wrote the row directly;
+	 * like the row populations, the births of the whole BitBoard are only added up by
+	 * sumRowPopulations
+	 */
+	void setRowBirths(int y, int count) {
+		rowBirths[y] = count;
+	}
+
+	/*
+	 * Adds to the counts of squares born in row y and in the whole BitBoard, after a
+	 * single long of the row was written directly
+	 */
+	void addRowBirths(int y, int count) {
+		rowBirths[y] += count;
+		births += count;
+	}
+
+	/*
+	 * Sets every count of squares born to 0, before a Stepper that only writes some of
+	 * the longs adds the births of the ones it writes
+	 */
+	void clearBirths() {
+		Arrays.fill(rowBirths, 0);
+		births = 0;
+	}
+
+	/*
+	 * Returns how many squares the Stepper that last wrote this BitBoard brought to
+	 * life, which is only meaningful until the BitBoard is changed in any other way
+	 */
+	int getBirths() {
+		return births;
+	}
+
+	/*
+	 * Adds up the row counts into the counts of the whole BitBoard, once every row
+	 * written directly has had its counts set
+	 */
+	void sumRowPopulations() {
+		int total = 0;
+		int born = 0;
+		for(int y = 0; y < height; y++) {
+			total += rowPopulations[y];
+			born += rowBirths[y];
+		}
+		population = total;
+		births = born;
+	}
+
+	/*
+	 * Counts the living squares of every row again from the packed rows, after they
+	 * were filled in directly without keeping the counts
+	 */
+	void recountPopulations() {
+		for(int y = 0; y < height; y++) {
+			recountRow(y);
+		}
+		sumRowPopulations();
+	}
+
+	/*
+	 * Counts the living squares of row y again, updating the count of the whole BitBoard
+	 */
+	private void recountRow(int y) {
+		int row = (y + 1) * wordsPerRow;
+		int count = 0;
+		for(int word = 0; word < wordsPerRow; word++) {
+			count += Long.bitCount(bits[row + word] & interiorMask[word]);
+		}
+		population += count - rowPopulations[y];
+		rowPopulations[y] = count;
+	}
+
+	public static void main(String[] args) {
+		BitBoard test1 = new BitBoard(4, 5);
+		System.out.println(test1);
+		System.out.println("The previous piece at (0, 0): " + test1.setPiece(0, 0, new Cell(1)));
+		System.out.println("The piece at (0, 0): " + test1.getPiece(0, 0));
+		System.out.println("The piece at (5, 7): " + test1.getPiece(5, 7));
+		System.out.println("There is a piece at (3, 4): " + test1.hasPiece(3, 4));
+		System.out.println("There is a piece at (5, 7): " + test1.hasPiece(5, 7));
+		System.out.println("The square at (0, 0) is alive: " + test1.isAlive(0, 0));
+		System.out.println("The previous piece at (0, 0): " + test1.removePiece(0, 0));
+		System.out.println("The square at (0, 0) is alive: " + test1.isAlive(0, 0));
+
+		BitBoard test2 = new BitBoard(130, 3);
+		test2.setAlive(0, 0, true);
+		test2.setAlive(62, 1, true);
+		test2.setAlive(63, 1, true);
+		test2.setAlive(129, 2, true);
+		System.out.println(test2);
+		System.out.println("Living squares: " + test2.aliveCount());
+		System.out.println("Living squares in row 1: " + test2.rowAliveCount(1));
+		System.out.println("Living squares in columns 60 to 129 of rows 1 and 2: " + test2.aliveCount(60, 1, 70, 2));
+		test2.setRun(10, 0, 100, true);
+		System.out.println("Living squares after a run of 100: " + test2.aliveCount());
+		Random random = new Random(9);
+		for(int i = 0; i < 2000; i++) {
+			test2.setRun(random.nextInt(150) - 10, random.nextInt(3), random.nextInt(80), random.nextBoolean());
+		}
+		for(int y = 0; y < 3; y++) {
+			int living = 0;
+			for(int x = 0; x < 130; x++) {
+				living += test2.isAlive(x, y) ? 1 : 0;
+			}
+			if(test2.rowAliveCount(y) != living) {
+				throw new AssertionError("Row " + y + " counts " + test2.rowAliveCount(y) + " living squares after runs, not " + living);
+			}
+		}
+		if(test2.aliveCount() != test2.rowAliveCount(0) + test2.rowAliveCount(1) + test2.rowAliveCount(2)) {
+			throw new AssertionError("The population " + test2.aliveCount() + " is not the sum of the rows");
+		}
+		System.out.println("Living squares after 2000 random runs: " + test2.aliveCount());
+		test2.clear();
+		System.out.println("Living squares after clear: " + test2.aliveCount());
+
+		Cell[][] test = {{new Cell(0), new Cell(1), new Cell(0), new Cell(1), new Cell(0), new Cell(1)},
+								{new Cell(1), new Cell(0), new Cell(1), new Cell(0), new Cell(1), new Cell(0)}};
+
+		BitBoard test3 = new BitBoard(test);
+		System.out.println(test3);
+		System.out.println("Living squares: " + test3.aliveCount());
+	}
+}
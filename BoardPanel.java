@@ -1,4 +1,3 @@
-import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 
@@ -7,13 +6,65 @@ import javax.swing.JPanel;
 /*
  * A class that extends the JPanel class, adding the functionality
  * of painting the current generation of a Game of Life.
+ * The board is drawn by a BoardRenderer into the pixels of an image
+ * that is reused between repaints, and the image is then drawn onto
+ * the panel in one call. Only the Cells inside the viewport are drawn;
+ * the viewport is the whole board unless setViewport chooses a part of it.
+ * A panel made for a SimulationLoop paints the loop's latest Frame and
+ * never reads the GameOfLife, which keeps changing on the loop's thread.
  */
 public class BoardPanel extends JPanel{
 	private GameOfLife game;
+	private SimulationLoop loop;
+	private BoardRenderer renderer = new BoardRenderer();
+	
+	// the part of the board that is shown, or null for the whole board
+	private int viewLeft;
+	private int viewTop;
+	private int viewColumns;
+	private int viewRows;
+	private boolean wholeBoard = true;
 	
 	public BoardPanel(GameOfLife g){
 		game = g;
 	}
+	
+	public BoardPanel(SimulationLoop l){
+		loop = l;
+	}
+	
+	/**
+	 * Returns the board to paint: the latest Frame's copy when there
+	 * is a SimulationLoop, otherwise the game's current board.
+	 */
+	private BitBoard currentBoard(){
+		if(loop != null) {
+			return loop.getLatestFrame().getBoard();
+		}
+		return game.getBoard();
+	}
+	
+	/**
+	 * Shows only the columns by rows Cells whose top left Cell is
+	 * (left, top); the viewport is trimmed to fit inside the board.
+	 */
+	public void setViewport(int left, int top, int columns, int rows){
+		BitBoard board = currentBoard();
+		viewLeft = Math.max(0, Math.min(left, board.getWidth() - 1));
+		viewTop = Math.max(0, Math.min(top, board.getHeight() - 1));
+		viewColumns = Math.max(1, Math.min(columns, board.getWidth() - viewLeft));
+		viewRows = Math.max(1, Math.min(rows, board.getHeight() - viewTop));
+		wholeBoard = false;
+		repaint();
+	}
+	
+	/**
+	 * Shows the whole board again.
+	 */
+	public void showWholeBoard(){
+		wholeBoard = true;
+		repaint();
+	}
 
 	
 	/**
@@ -24,30 +75,18 @@ public class BoardPanel extends JPanel{
 	 */
 	public void paintComponent(Graphics g){
 		Graphics2D g2 = (Graphics2D)g;
-		g2.setColor(Color.LIGHT_GRAY);
-
-		// draws the current state of the board
-		int cellWidth = getWidth() / game.getWidth();
-		int cellHeight = getHeight() / game.getHeight();
-		
-		int finalBoardWidth = cellWidth * game.getWidth();
-		int finalBoardHeight = cellHeight * game.getHeight();
+		g2.setColor(getBackground());
+		g2.fillRect(0, 0, getWidth(), getHeight());
 
-		for(int x = 0; x < finalBoardWidth; x += cellWidth) {
-			for(int y = 0; y < finalBoardHeight; y += cellHeight ) {
-				g2.drawRect(x, y, cellWidth, cellHeight);
-			}
+		// draws the Cells of the viewport into the reused image
+		BitBoard board = currentBoard();
+		if(wholeBoard) {
+			g2.drawImage(renderer.render(board, 0, 0, board.getWidth(), board.getHeight(),
+					getWidth(), getHeight()), 0, 0, null);
 		}
-		
-		// fills every rectangle occupied by a living Cell
-		for(int x = 0; x < finalBoardWidth; x += cellWidth) {
-			for(int y = 0; y < finalBoardHeight; y += cellHeight) {
-					if(game.isAlive(x / cellWidth, y / cellHeight)) {
-						g2.setColor(Color.BLACK);
-						g2.fillRect(x, y, cellWidth, cellHeight);
-						g2.setColor(Color.LIGHT_GRAY);
-					}
-			}
+		else {
+			g2.drawImage(renderer.render(board, viewLeft, viewTop, viewColumns, viewRows,
+					getWidth(), getHeight()), 0, 0, null);
 		}
 	}
 }
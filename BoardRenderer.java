@@ -0,0 +1,392 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/*
+ * This class draws a rectangular part of a BitBoard, called the viewport, into the
+ * int pixels of a BufferedImage that is kept and reused from one frame to the next
+ * When every Cell of the viewport gets at least one pixel, each Cell becomes a block of
+ * pixels, black when alive and white when dead, with light gray grid lines once the
+ * blocks are big enough to show them
+ * When there are more Cells than pixels, each pixel stands for a block of Cells and is
+ * shaded from white to black by how many of them are alive, counted a long at a time
+ * with bit counts, so a huge board is still drawn in a few milliseconds; when only one
+ * direction has more Cells than pixels, the Cells of the other are still drawn as
+ * many pixels wide or tall as fit, so the image fills the space it is given
+ * Only the Cells inside the viewport are ever read
+ * In block mode the renderer keeps a copy of the rows it drew last time, and when the
+ * viewport and image size are unchanged it compares them with the new rows a tile at a
+ * time (one long of a row by TiledStepper.TILE_ROWS rows) and redraws only the tiles
+ * that differ, so a mostly still board costs little more than the comparison
+ */
+public class BoardRenderer {
+
+	// the colors of the image, as RGB ints
+	private static final int ALIVE_COLOR = 0x000000;
+	private static final int DEAD_COLOR = 0xFFFFFF;
+	private static final int GRID_COLOR = 0xC0C0C0;
+
+	// the smallest Cell, in pixels, that still gets grid lines
+	private static final int GRID_MINIMUM = 4;
+
+	// instance data
+	private BufferedImage image;
+	private int[] pixels;
+	private int[] shades = new int[256];
+
+	// the living Cells counted for each pixel of a line, and the words each pixel covers
+	private int[] counts = new int[0];
+	private float[] shadeScales;
+	private long[][] planes = new long[0][0];
+	private int[] firstWords;
+	private int[] lastWords;
+	private long[] firstMasks;
+	private long[] lastMasks;
+
+	// the rows drawn by the last call in block mode, and the layout they were drawn with
+	private long[] drawnWords = new long[0];
+	private boolean drawnValid;
+	private int drawnLeft;
+	private int drawnTop;
+	private int drawnColumns;
+	private int drawnRows;
+	private int drawnCellWidth;
+	private int drawnCellHeight;
+	private int redrawnTileCount;
+
+	/*
+	 * Constructs a BoardRenderer with no image yet
+	 */
+	public BoardRenderer() {
+		for(int level = 0; level < 256; level++) {
+			int gray = 255 - level;
+			shades[level] = (gray << 16) | (gray << 8) | gray;
+		}
+	}
+
+	/*
+	 * Draws the viewport of columns by rows Cells whose top left Cell is (left, top)
+	 * into an image that fits in pixelWidth by pixelHeight pixels, and returns the image
+	 * The image is reused by the next call, so it should be drawn before then
+	 */
+	public BufferedImage render(BitBoard board, int left, int top, int columns, int rows, int pixelWidth, int pixelHeight) {
+		pixelWidth = Math.max(1, pixelWidth);
+		pixelHeight = Math.max(1, pixelHeight);
+		int cellWidth = pixelWidth / columns;
+		int cellHeight = pixelHeight / rows;
+
+		if(cellWidth >= 1 && cellHeight >= 1) {
+			boolean grid = cellWidth >= GRID_MINIMUM && cellHeight >= GRID_MINIMUM;
+			int width = cellWidth * columns + (grid ? 1 : 0);
+			int height = cellHeight * rows + (grid ? 1 : 0);
+			BufferedImage previousImage = image;
+			prepareImage(width, height);
+
+			long[] words = board.getWords();
+			if(drawnValid && image == previousImage && drawnWords.length == words.length
+					&& drawnLeft == left && drawnTop == top && drawnColumns == columns && drawnRows == rows
+					&& drawnCellWidth == cellWidth && drawnCellHeight == cellHeight) {
+				renderDirtyTiles(board, left, top, columns, rows, cellWidth, cellHeight, grid, width);
+			}
+			else {
+				renderBlocks(board, left, top, 0, columns, 0, rows, cellWidth, cellHeight, grid, width);
+				renderGridEdges(grid, width, height);
+				redrawnTileCount = -1;
+
+				if(drawnWords.length != words.length) {
+					drawnWords = new long[words.length];
+				}
+				System.arraycopy(words, 0, drawnWords, 0, words.length);
+				drawnValid = true;
+				drawnLeft = left;
+				drawnTop = top;
+				drawnColumns = columns;
+				drawnRows = rows;
+				drawnCellWidth = cellWidth;
+				drawnCellHeight = cellHeight;
+			}
+		}
+		else {
+			// a direction with fewer Cells than pixels keeps its whole pixels per Cell
+			int width = Math.min(pixelWidth, columns);
+			int height = Math.min(pixelHeight, rows);
+			int pixelsPerColumn = Math.max(1, cellWidth);
+			int pixelsPerRow = Math.max(1, cellHeight);
+			prepareImage(width * pixelsPerColumn, height * pixelsPerRow);
+			renderDensity(board, left, top, columns, rows, width, height, pixelsPerColumn, pixelsPerRow);
+			drawnValid = false;
+		}
+
+		return image;
+	}
+
+	/*
+	 * Returns the number of tiles redrawn by the last call in block mode, or -1 when
+	 * the whole viewport was drawn
+	 */
+	public int getRedrawnTileCount() {
+		return redrawnTileCount;
+	}
+
+	/*
+	 * Makes sure the image has the given size, creating a new one only when it changes
+	 */
+	private void prepareImage(int width, int height) {
+		if(image == null || image.getWidth() != width || image.getHeight() != height) {
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		}
+	}
+
+	/*
+	 * Compares the viewport's rows with the ones drawn last time, tile by tile, and
+	 * redraws and remembers only the tiles that differ
+	 */
+	private void renderDirtyTiles(BitBoard board, int left, int top, int columns, int rows,
+			int cellWidth, int cellHeight, boolean grid, int width) {
+		long[] words = board.getWords();
+		int firstWord = (left + 1) >>> 6;
+		int lastWord = (left + columns) >>> 6;
+		redrawnTileCount = 0;
+
+		for(int bandTop = top - top % TiledStepper.TILE_ROWS; bandTop < top + rows; bandTop += TiledStepper.TILE_ROWS) {
+			int firstRow = Math.max(top, bandTop);
+			int endRow = Math.min(top + rows, bandTop + TiledStepper.TILE_ROWS);
+
+			for(int word = firstWord; word <= lastWord; word++) {
+				boolean dirty = false;
+				for(int y = firstRow; y < endRow && !dirty; y++) {
+					int index = board.rowOffset(y) + word;
+					dirty = words[index] != drawnWords[index];
+				}
+				if(!dirty) {
+					continue;
+				}
+
+				// the Cells of the viewport held by this long, whose bits are x + 1
+				int firstColumn = Math.max(0, word * 64 - 1 - left);
+				int endColumn = Math.min(columns, word * 64 + 63 - left);
+				renderBlocks(board, left, top, firstColumn, endColumn, firstRow - top, endRow - top,
+						cellWidth, cellHeight, grid, width);
+				for(int y = firstRow; y < endRow; y++) {
+					int index = board.rowOffset(y) + word;
+					drawnWords[index] = words[index];
+				}
+				redrawnTileCount++;
+			}
+		}
+	}
+
+	/*
+	 * Draws the Cells of viewport columns firstColumn to endColumn and rows firstRow to
+	 * endRow (both exclusive at the end) as blocks of cellWidth by cellHeight pixels;
+	 * each row of Cells is drawn as one line of pixels, which is then copied down the
+	 * rest of the block
+	 */
+	private void renderBlocks(BitBoard board, int left, int top, int firstColumn, int endColumn,
+			int firstRow, int endRow, int cellWidth, int cellHeight, boolean grid, int width) {
+		long[] words = board.getWords();
+		int firstPixel = firstColumn * cellWidth;
+		int pixelCount = (endColumn - firstColumn) * cellWidth;
+
+		for(int y = firstRow; y < endRow; y++) {
+			int row = board.rowOffset(top + y);
+			int firstLine = y * cellHeight * width;
+			int fillLine = grid ? firstLine + width : firstLine;
+
+			// the first line of the block is the grid line above the row, when there is one
+			if(grid) {
+				for(int x = firstColumn; x < endColumn; x++) {
+					int column = left + x + 1;
+					boolean alive = ((words[row + (column >>> 6)] >>> column) & 1L) != 0;
+					Arrays.fill(pixels, firstLine + x * cellWidth, firstLine + (x + 1) * cellWidth,
+							alive ? ALIVE_COLOR : GRID_COLOR);
+				}
+			}
+
+			for(int x = firstColumn; x < endColumn; x++) {
+				int column = left + x + 1;
+				boolean alive = ((words[row + (column >>> 6)] >>> column) & 1L) != 0;
+				int start = fillLine + x * cellWidth;
+				Arrays.fill(pixels, start, start + cellWidth, alive ? ALIVE_COLOR : DEAD_COLOR);
+				if(grid && !alive) {
+					pixels[start] = GRID_COLOR;
+				}
+			}
+
+			for(int line = (grid ? 2 : 1); line < cellHeight; line++) {
+				System.arraycopy(pixels, fillLine + firstPixel, pixels, firstLine + line * width + firstPixel, pixelCount);
+			}
+		}
+	}
+
+	/*
+	 * Draws the grid lines along the right and bottom edges of the image, which belong
+	 * to no Cell
+	 */
+	private void renderGridEdges(boolean grid, int width, int height) {
+		if(grid) {
+			for(int line = 0; line < height; line++) {
+				pixels[line * width + width - 1] = GRID_COLOR;
+			}
+			Arrays.fill(pixels, (height - 1) * width, height * width, GRID_COLOR);
+		}
+	}
+
+	/*
+	 * Draws each pixel as the share of living Cells in the block of Cells it covers
+	 * The rows of each line of pixels are first added together bit by bit into a few
+	 * bit planes, where plane p holds bit p of the count of living Cells in every column,
+	 * so a pixel only has to count the bits of each plane under its columns instead of
+	 * the bits of every row; the words and masks of each pixel are worked out once
+	 * Each of the width by height shades is drawn as a block of pixelsPerColumn by
+	 * pixelsPerRow pixels, one of which is always 1
+	 */
+	private void renderDensity(BitBoard board, int left, int top, int columns, int rows, int width, int height,
+			int pixelsPerColumn, int pixelsPerRow) {
+		long[] words = board.getWords();
+		int firstViewWord = (left + 1) >>> 6;
+		int endViewWord = ((left + columns) >>> 6) + 1;
+		int maximumBlockRows = (rows + height - 1) / height;
+		int planeCount = 32 - Integer.numberOfLeadingZeros(maximumBlockRows);
+
+		if(counts.length < width) {
+			counts = new int[width];
+			shadeScales = new float[width];
+			firstWords = new int[width];
+			lastWords = new int[width];
+			firstMasks = new long[width];
+			lastMasks = new long[width];
+		}
+		if(planes.length < planeCount || planes[0].length < board.getWordsPerRow()) {
+			planes = new long[planeCount][board.getWordsPerRow()];
+		}
+
+		boolean wide = false;
+		for(int px = 0; px < width; px++) {
+			int first = left + (int) ((long) px * columns / width) + 1;
+			int end = left + (int) ((long) (px + 1) * columns / width) + 1;
+			shadeScales[px] = 1f / (end - first);
+			firstWords[px] = first >>> 6;
+			lastWords[px] = (end - 1) >>> 6;
+			firstMasks[px] = -1L << first;
+			lastMasks[px] = -1L >>> (63 - ((end - 1) & 63));
+
+			// a pixel inside one long reads it once through the combined mask
+			if(firstWords[px] == lastWords[px]) {
+				firstMasks[px] &= lastMasks[px];
+				lastMasks[px] = 0L;
+			}
+			wide |= lastWords[px] - firstWords[px] > 1;
+		}
+
+		for(int py = 0; py < height; py++) {
+			int firstRow = top + (int) ((long) py * rows / height);
+			int endRow = top + (int) ((long) (py + 1) * rows / height);
+
+			for(int p = 0; p < planeCount; p++) {
+				Arrays.fill(planes[p], firstViewWord, endViewWord, 0L);
+			}
+
+			// adds each row into the planes with a ripple of half adders
+			for(int y = firstRow; y < endRow; y++) {
+				int row = board.rowOffset(y);
+				for(int word = firstViewWord; word < endViewWord; word++) {
+					long carry = words[row + word];
+					for(int p = 0; carry != 0 && p < planeCount; p++) {
+						long plane = planes[p][word];
+						planes[p][word] = plane ^ carry;
+						carry &= plane;
+					}
+				}
+			}
+
+			Arrays.fill(counts, 0, width, 0);
+			for(int p = 0; p < planeCount; p++) {
+				long[] plane = planes[p];
+				for(int px = 0; px < width; px++) {
+					counts[px] += (Long.bitCount(plane[firstWords[px]] & firstMasks[px])
+							+ Long.bitCount(plane[lastWords[px]] & lastMasks[px])) << p;
+				}
+
+				if(wide) {
+					for(int px = 0; px < width; px++) {
+						for(int word = firstWords[px] + 1; word < lastWords[px]; word++) {
+							counts[px] += Long.bitCount(plane[word]) << p;
+						}
+					}
+				}
+			}
+
+			int imageWidth = width * pixelsPerColumn;
+			int line = py * pixelsPerRow * imageWidth;
+			float rowScale = 255f / (endRow - firstRow);
+			if(pixelsPerColumn == 1) {
+				for(int px = 0; px < width; px++) {
+					pixels[line + px] = shades[(int) (counts[px] * shadeScales[px] * rowScale)];
+				}
+			}
+			else {
+				for(int px = 0; px < width; px++) {
+					int start = line + px * pixelsPerColumn;
+					Arrays.fill(pixels, start, start + pixelsPerColumn, shades[(int) (counts[px] * shadeScales[px] * rowScale)]);
+				}
+			}
+			for(int copy = 1; copy < pixelsPerRow; copy++) {
+				System.arraycopy(pixels, line, pixels, line + copy * imageWidth, imageWidth);
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		GameOfLife game = LifeBenchmark.randomGame(300, 25, 3);
+		game.setStepper(new TiledStepper());
+		BoardRenderer incremental = new BoardRenderer();
+		int[][] layouts = {{0, 0, 300, 300, 1200, 1200}, {37, 90, 150, 100, 600, 300}, {70, 5, 200, 200, 200, 200}};
+
+		// checks that redrawing only the dirty tiles gives the same pixels as drawing everything
+		for(int[] layout: layouts) {
+			int redrawn = 0;
+			for(int generation = 0; generation < 60; generation++) {
+				game.nextGen();
+				BufferedImage image = incremental.render(game.getBoard(), layout[0], layout[1], layout[2], layout[3], layout[4], layout[5]);
+				BufferedImage expected = new BoardRenderer().render(game.getBoard(), layout[0], layout[1], layout[2], layout[3], layout[4], layout[5]);
+				redrawn += Math.max(0, incremental.getRedrawnTileCount());
+
+				for(int x = 0; x < image.getWidth(); x++) {
+					for(int y = 0; y < image.getHeight(); y++) {
+						if(image.getRGB(x, y) != expected.getRGB(x, y)) {
+							throw new AssertionError("Pixel (" + x + ", " + y + ") differs in generation " + game.getGenNumber());
+						}
+					}
+				}
+			}
+			System.out.println("Dirty tile redraws match full redraws for a " + layout[2] + "x" + layout[3]
+					+ " viewport; tiles redrawn: " + redrawn);
+		}
+
+		// checks that a board crowded in only one direction still fills the space, each
+		// Cell of the other direction stretched over the pixels it has room for
+		GameOfLife strip = LifeBenchmark.randomGame(4000, 25, 4);
+		BitBoard stripBoard = strip.getBoard();
+		int[][] shapes = {{4000, 100, 800, 600, 1, 6}, {100, 4000, 600, 800, 6, 1}};
+		for(int[] shape: shapes) {
+			BufferedImage stretched = new BoardRenderer().render(stripBoard, 0, 0, shape[0], shape[1], shape[2], shape[3]);
+			BufferedImage flat = new BoardRenderer().render(stripBoard, 0, 0, shape[0], shape[1],
+					shape[2] / shape[4], shape[3] / shape[5]);
+			if(stretched.getWidth() != shape[2] || stretched.getHeight() != shape[3]) {
+				throw new AssertionError("A " + shape[0] + "x" + shape[1] + " viewport in " + shape[2] + "x" + shape[3]
+						+ " pixels drew a " + stretched.getWidth() + "x" + stretched.getHeight() + " image");
+			}
+			for(int x = 0; x < stretched.getWidth(); x++) {
+				for(int y = 0; y < stretched.getHeight(); y++) {
+					if(stretched.getRGB(x, y) != flat.getRGB(x / shape[4], y / shape[5])) {
+						throw new AssertionError("Pixel (" + x + ", " + y + ") of the stretched " + shape[0] + "x" + shape[1]
+								+ " viewport is not its shade");
+					}
+				}
+			}
+			System.out.println("A " + shape[0] + "x" + shape[1] + " viewport fills all " + shape[2] + "x" + shape[3] + " pixels");
+		}
+	}
+}
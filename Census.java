@@ -0,0 +1,794 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/*
+ * This class takes a census of the objects on a GameOfLife's board: it finds every
+ * group of living Cells that touch, diagonals included, and counts how many groups
+ * there are of each shape, naming the common ones such as blocks, blinkers and gliders
+ * The groups are labeled in one pass over the packed rows: every run of living Cells
+ * in a row is joined by union-find to the runs it touches in the row above, and a
+ * second pass over the runs numbers the groups; the runs, their parents and the
+ * groups are kept in int and long arrays that are reused from one census to the next
+ * Every group is reduced to a key that is the same for all eight rotations and
+ * reflections of its shape: a group that fits in 8x8 Cells is drawn into a long, a
+ * byte per row, and its key is the smallest of the eight transformed longs, which
+ * tells all such shapes apart exactly; a larger group's key is a 56-bit hash of its
+ * Cells in each orientation
+ * Turning a small shape into its key takes a few dozen operations, so the result is
+ * remembered in a direct-mapped cache of a few thousand shapes as they lie; on a board
+ * of millions of objects almost all of them are one of a handful of shapes, and each
+ * of those is only transformed once
+ * The known patterns are run through one period when the class is loaded, and every
+ * phase is named; the names are looked up once per distinct key at the end
+ * A Census can also join Cells up to a larger distance apart, which keeps together
+ * oscillators and spaceships whose Cells do not all touch in every phase; the known
+ * patterns are named as they are seen two squares apart, so at distance 1 the phases
+ * that fall apart are counted as pieces without a name
+ * The board is treated as a plane: on a torus or Klein bottle a group crossing an edge
+ * is counted as the pieces on either side
+ * A Census is not thread-safe; each thread should use its own
+ */
+public class Census {
+
+	// the cache of keys of small shapes has 2^CACHE_BITS slots
+	private static final int CACHE_BITS = 12;
+
+	// the known patterns, their periods and their Cells in one phase, 'o' for alive
+	private static final String[] KNOWN_NAMES = {
+		"block", "beehive", "loaf", "boat", "ship", "tub", "pond", "long boat", "barge", "mango", "eater",
+		"aircraft carrier", "snake", "blinker", "toad", "beacon", "pulsar", "glider",
+		"lightweight spaceship", "middleweight spaceship", "heavyweight spaceship"
+	};
+	private static final int[] KNOWN_PERIODS = {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 2, 2, 2, 3, 4, 4, 4, 4};
+	private static final String[][] KNOWN_ROWS = {
+		{"oo", "oo"},
+		{".oo.", "o..o", ".oo."},
+		{".oo.", "o..o", ".o.o", "..o."},
+		{"oo.", "o.o", ".o."},
+		{"oo.", "o.o", ".oo"},
+		{".o.", "o.o", ".o."},
+		{".oo.", "o..o", "o..o", ".oo."},
+		{"oo..", "o.o.", ".o.o", "..o."},
+		{".o..", "o.o.", ".o.o", "..o."},
+		{".oo..", "o..o.", ".o..o", "..oo."},
+		{"oo..", "o.o.", "..o.", "..oo"},
+		{"oo..", "o..o", "..oo"},
+		{"oo.o", "o.oo"},
+		{"ooo"},
+		{".ooo", "ooo."},
+		{"oo..", "oo..", "..oo", "..oo"},
+		{"..ooo...ooo..", ".............", "o....o.o....o", "o....o.o....o", "o....o.o....o", "..ooo...ooo..",
+				".............", "..ooo...ooo..", "o....o.o....o", "o....o.o....o", "o....o.o....o", ".............",
+				"..ooo...ooo.."},
+		{".o.", "..o", "ooo"},
+		{".o..o", "o....", "o...o", "oooo."},
+		{"...o..", ".o...o", "o.....", "o....o", "ooooo."},
+		{"...oo..", ".o....o", "o......", "o.....o", "oooooo."}
+	};
+
+	// the names of the known patterns by the key of each of their phases
+	private static final Map<Long, String> NAMES = new HashMap<Long, String>();
+	static {
+		// some phases of the oscillators and spaceships only hold together two squares apart
+		Census registrar = new Census(2);
+		for(int i = 0; i < KNOWN_NAMES.length; i++) {
+			define(registrar, KNOWN_NAMES[i], KNOWN_PERIODS[i], KNOWN_ROWS[i]);
+		}
+	}
+
+	// instance data
+	private int distance;
+	private int runCount;
+	private int[] runStart = new int[1024];
+	private int[] runEnd = new int[1024];
+	private int[] parent = new int[1024];
+	private int[] rowFirstRun = new int[0];
+	private int groupCount;
+	private int[] minX = new int[256];
+	private int[] maxX = new int[256];
+	private int[] minY = new int[256];
+	private int[] maxY = new int[256];
+	private int[] cells = new int[256];
+	private long[] shapes = new long[256];
+	private long[] keys = new long[256];
+	private long[] largeHashes = new long[8 * 16];
+	private long[] cacheShapes = new long[1 << CACHE_BITS];
+	private long[] cacheKeys = new long[1 << CACHE_BITS];
+	private long[] tallyKeys = new long[256];
+	private int[] tallyCounts = new int[256];
+	private int[] tallyCells = new int[256];
+	private int tallySize;
+
+	/*
+	 * Constructs a Census that puts Cells in the same object when they touch
+	 */
+	public Census() {
+		this(1);
+	}
+
+	/*
+	 * Constructs a Census that puts Cells in the same object when they are at most the
+	 * given number of squares apart across and down; 1 joins the Cells that touch
+	 */
+	public Census(int distance) {
+		if(distance < 1 || distance > 8) {
+			throw new IllegalArgumentException("The distance must be from 1 to 8, not " + distance);
+		}
+
+		this.distance = distance;
+	}
+
+	/*
+	 * Counts the objects on the game's board by name, most common first; a shape that
+	 * is not known is named by its number of Cells and its key in hexadecimal
+	 */
+	public Map<String, Integer> take(GameOfLife game) {
+		label(game.getBoard());
+
+		Arrays.fill(tallyCounts, 0);
+		tallySize = 0;
+		for(int group = 0; group < groupCount; group++) {
+			tally(keys[group], cells[group]);
+		}
+
+		// several keys can share a name, one for each phase of an oscillator or spaceship
+		Map<String, Integer> byName = new HashMap<String, Integer>();
+		for(int slot = 0; slot < tallyCounts.length; slot++) {
+			if(tallyCounts[slot] > 0) {
+				String name = nameOf(tallyKeys[slot], tallyCells[slot]);
+				Integer count = byName.get(name);
+				byName.put(name, (count == null) ? tallyCounts[slot] : count + tallyCounts[slot]);
+			}
+		}
+
+		List<Map.Entry<String, Integer>> entries = new ArrayList<Map.Entry<String, Integer>>(byName.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>() {
+
+			@Override
+			public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+				int byCount = Integer.compare(b.getValue(), a.getValue());
+				return (byCount != 0) ? byCount : a.getKey().compareTo(b.getKey());
+			}
+
+		});
+
+		Map<String, Integer> census = new LinkedHashMap<String, Integer>();
+		for(Map.Entry<String, Integer> entry: entries) {
+			census.put(entry.getKey(), entry.getValue());
+		}
+		return census;
+	}
+
+	/*
+	 * Returns how many objects the last census found (getter)
+	 */
+	public int getObjectCount() {
+		return groupCount;
+	}
+
+	/*
+	 * Returns the key of the only object on the game's board, throwing an
+	 * IllegalStateException if there is not exactly one
+	 */
+	long keyOf(GameOfLife game) {
+		label(game.getBoard());
+		if(groupCount != 1) {
+			throw new IllegalStateException("The board holds " + groupCount + " objects, not one");
+		}
+		return keys[0];
+	}
+
+	/*
+	 * Returns the name of the pattern with the given key and number of Cells
+	 */
+	private static String nameOf(long key, int cellCount) {
+		String name = NAMES.get(key);
+		return (name != null) ? name : cellCount + "-cell object " + Long.toHexString(key);
+	}
+
+	/*
+	 * Finds the groups of the board and fills in the box, number of Cells and key of
+	 * each one
+	 */
+	private void label(BitBoard board) {
+		long[] words = board.getWords();
+		long[] interiorMask = board.getInteriorMask();
+		int wordsPerRow = board.getWordsPerRow();
+		int height = board.getHeight();
+
+		if(rowFirstRun.length < height + 1) {
+			rowFirstRun = new int[height + 1];
+		}
+		runCount = 0;
+
+		for(int y = 0; y < height; y++) {
+			int rowFirst = runCount;
+			rowFirstRun[y] = rowFirst;
+
+			// a run reaching the top bit of a long may go on in the next one
+			int row = (y + 1) * wordsPerRow;
+			boolean open = false;
+			for(int i = 0; i < wordsPerRow; i++) {
+				long word = words[row + i] & interiorMask[i];
+				int base = (i << 6) - 1;
+				if(word == 0) {
+					open = false;
+				}
+				while(word != 0) {
+					int bit = Long.numberOfTrailingZeros(word);
+					long dead = ~word & (-1L << bit);
+					int end = (dead == 0) ? 64 : Long.numberOfTrailingZeros(dead);
+					if(bit == 0 && open) {
+						runEnd[runCount - 1] = base + end - 1;
+					}
+					else {
+						addRun(base + bit, base + end - 1);
+					}
+					open = end == 64;
+					word = open ? 0L : word & (-1L << end);
+				}
+			}
+
+			for(int r = rowFirst + 1; r < runCount; r++) {
+				if(runStart[r] - runEnd[r - 1] <= distance) {
+					union(find(r - 1), find(r));
+				}
+			}
+			for(int above = Math.max(0, y - distance); above < y; above++) {
+				joinRows(rowFirstRun[above], rowFirstRun[above + 1], rowFirst, runCount);
+			}
+		}
+		rowFirstRun[height] = runCount;
+
+		// a run's parent always comes before it, so it is numbered by the time the run is
+		groupCount = 0;
+		for(int r = 0; r < runCount; r++) {
+			int p = parent[r];
+			parent[r] = (p == r) ? groupCount++ : parent[p];
+		}
+
+		measureGroups(height);
+		drawGroups(height);
+	}
+
+	/*
+	 * Adds a run of living Cells from x = start to x = end of the current row
+	 */
+	private void addRun(int start, int end) {
+		if(runCount == runStart.length) {
+			runStart = Arrays.copyOf(runStart, runCount * 2);
+			runEnd = Arrays.copyOf(runEnd, runCount * 2);
+			parent = Arrays.copyOf(parent, runCount * 2);
+		}
+
+		runStart[runCount] = start;
+		runEnd[runCount] = end;
+		parent[runCount] = runCount;
+		runCount++;
+	}
+
+	/*
+	 * Joins every run of a row from first to last (exclusive) with the runs of an earlier
+	 * row from previousFirst to previousLast (exclusive) that lie within the distance;
+	 * both rows' runs are in order from left to right, so one sweep finds every pair
+	 */
+	private void joinRows(int previousFirst, int previousLast, int first, int last) {
+		int j = previousFirst;
+		for(int r = first; r < last; r++) {
+			int start = runStart[r] - distance;
+			int end = runEnd[r] + distance;
+			while(j < previousLast && runEnd[j] < start) {
+				j++;
+			}
+			int root = find(r);
+			for(int k = j; k < previousLast && runStart[k] <= end; k++) {
+				root = union(find(k), root);
+			}
+		}
+	}
+
+	/*
+	 * Returns the root of a run's tree, halving the path to it on the way
+	 */
+	private int find(int run) {
+		while(parent[run] != run) {
+			parent[run] = parent[parent[run]];
+			run = parent[run];
+		}
+		return run;
+	}
+
+	/*
+	 * Joins two trees under the earlier of their roots, so every run's parent comes
+	 * before it, and returns that root
+	 */
+	private int union(int rootA, int rootB) {
+		if(rootA < rootB) {
+			parent[rootB] = rootA;
+			return rootA;
+		}
+		parent[rootA] = rootB;
+		return rootB;
+	}
+
+	/*
+	 * Finds the box around each group and how many Cells it has
+	 */
+	private void measureGroups(int height) {
+		if(minX.length < groupCount) {
+			int length = Math.max(groupCount, minX.length * 2);
+			minX = new int[length];
+			maxX = new int[length];
+			minY = new int[length];
+			maxY = new int[length];
+			cells = new int[length];
+			shapes = new long[length];
+			keys = new long[length];
+		}
+		Arrays.fill(minX, 0, groupCount, Integer.MAX_VALUE);
+		Arrays.fill(maxX, 0, groupCount, -1);
+		Arrays.fill(minY, 0, groupCount, -1);
+		Arrays.fill(cells, 0, groupCount, 0);
+
+		for(int y = 0; y < height; y++) {
+			for(int r = rowFirstRun[y]; r < rowFirstRun[y + 1]; r++) {
+				int group = parent[r];
+				if(minY[group] < 0) {
+					minY[group] = y;
+				}
+				maxY[group] = y;
+				minX[group] = Math.min(minX[group], runStart[r]);
+				maxX[group] = Math.max(maxX[group], runEnd[r]);
+				cells[group] += runEnd[r] - runStart[r] + 1;
+			}
+		}
+	}
+
+	/*
+	 * Draws each group that fits in 8x8 Cells into a long and hashes each larger group
+	 * in all eight orientations, then works out every group's key
+	 */
+	private void drawGroups(int height) {
+		// a large group's shape holds the index of its eight hashes instead
+		int largeCount = 0;
+		for(int group = 0; group < groupCount; group++) {
+			shapes[group] = isSmall(group) ? 0L : largeCount++;
+		}
+		if(largeHashes.length < 8 * largeCount) {
+			largeHashes = new long[Math.max(8 * largeCount, largeHashes.length * 2)];
+		}
+		Arrays.fill(largeHashes, 0, 8 * largeCount, 0L);
+
+		for(int y = 0; y < height; y++) {
+			for(int r = rowFirstRun[y]; r < rowFirstRun[y + 1]; r++) {
+				int group = parent[r];
+				int top = y - minY[group];
+				int left = runStart[r] - minX[group];
+				int length = runEnd[r] - runStart[r] + 1;
+				if(isSmall(group)) {
+					shapes[group] |= ((1L << length) - 1) << (top * 8 + left);
+				}
+				else {
+					int width = maxX[group] - minX[group] + 1;
+					int groupHeight = maxY[group] - minY[group] + 1;
+					for(int x = left; x < left + length; x++) {
+						hashCell(8 * (int) shapes[group], x, top, width, groupHeight);
+					}
+				}
+			}
+		}
+
+		for(int group = 0; group < groupCount; group++) {
+			keys[group] = isSmall(group) ? cachedKey(shapes[group]) : largeKey(group);
+		}
+	}
+
+	/*
+	 * Checks if a group fits in 8x8 Cells
+	 */
+	private boolean isSmall(int group) {
+		return maxX[group] - minX[group] < 8 && maxY[group] - minY[group] < 8;
+	}
+
+	/*
+	 * Returns the key of a small shape drawn in the top left corner of a long, from the
+	 * cache when the same shape was seen lying the same way
+	 */
+	private long cachedKey(long shape) {
+		int slot = (int) ((shape * 0x9E3779B97F4A7C15L) >>> (64 - CACHE_BITS));
+		if(cacheShapes[slot] != shape) {
+			cacheShapes[slot] = shape;
+			cacheKeys[slot] = smallKey(shape);
+		}
+		return cacheKeys[slot];
+	}
+
+	/*
+	 * Returns the smallest of the eight rotations and reflections of a shape drawn in a
+	 * long, a byte per row with the lowest bit of each on the left, each moved back into
+	 * the top left corner; a shape in the corner always has Cells in its lowest byte
+	 */
+	static long smallKey(long shape) {
+		long transposed = transpose(shape);
+		long key = normalize(shape);
+		key = Math.min(key, normalize(mirror(shape)));
+		key = Math.min(key, normalize(Long.reverseBytes(shape)));
+		key = Math.min(key, normalize(mirror(Long.reverseBytes(shape))));
+		key = Math.min(key, normalize(transposed));
+		key = Math.min(key, normalize(mirror(transposed)));
+		key = Math.min(key, normalize(Long.reverseBytes(transposed)));
+		key = Math.min(key, normalize(mirror(Long.reverseBytes(transposed))));
+		return key;
+	}
+
+	/*
+	 * Reverses the bits of every byte of a long, mirroring a shape from left to right
+	 */
+	private static long mirror(long shape) {
+		shape = ((shape >>> 1) & 0x5555555555555555L) | ((shape & 0x5555555555555555L) << 1);
+		shape = ((shape >>> 2) & 0x3333333333333333L) | ((shape & 0x3333333333333333L) << 2);
+		return ((shape >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((shape & 0x0F0F0F0F0F0F0F0FL) << 4);
+	}
+
+	/*
+	 * Swaps the rows and columns of a shape by swapping ever smaller blocks of bits
+	 * across the diagonal
+	 */
+	private static long transpose(long shape) {
+		long swap = 0x0F0F0F0F00000000L & (shape ^ (shape << 28));
+		shape ^= swap ^ (swap >>> 28);
+		swap = 0x3333000033330000L & (shape ^ (shape << 14));
+		shape ^= swap ^ (swap >>> 14);
+		swap = 0x5500550055005500L & (shape ^ (shape << 7));
+		return shape ^ swap ^ (swap >>> 7);
+	}
+
+	/*
+	 * Moves a shape up to the first byte and left to the first bit
+	 */
+	private static long normalize(long shape) {
+		shape >>>= Long.numberOfTrailingZeros(shape) & ~7;
+		long columns = shape | (shape >>> 32);
+		columns |= columns >>> 16;
+		columns |= columns >>> 8;
+		return shape >>> Long.numberOfTrailingZeros(columns & 0xFFL);
+	}
+
+	/*
+	 * Adds a Cell at (x, y) of a large group's box to the group's hashes, one for each
+	 * orientation of the box
+	 */
+	private void hashCell(int index, int x, int y, int width, int height) {
+		int mirroredX = width - 1 - x;
+		int mirroredY = height - 1 - y;
+		largeHashes[index] += mix(pack(x, y));
+		largeHashes[index + 1] += mix(pack(mirroredX, y));
+		largeHashes[index + 2] += mix(pack(x, mirroredY));
+		largeHashes[index + 3] += mix(pack(mirroredX, mirroredY));
+		largeHashes[index + 4] += mix(pack(y, x));
+		largeHashes[index + 5] += mix(pack(mirroredY, x));
+		largeHashes[index + 6] += mix(pack(y, mirroredX));
+		largeHashes[index + 7] += mix(pack(mirroredY, mirroredX));
+	}
+
+	/*
+	 * Returns the key of a large group, the smallest of its hashes with the size of the
+	 * box in that orientation mixed in; the lowest byte is cleared so it never equals the
+	 * key of a small shape
+	 */
+	private long largeKey(int group) {
+		int index = 8 * (int) shapes[group];
+		int width = maxX[group] - minX[group] + 1;
+		int height = maxY[group] - minY[group] + 1;
+		long key = Long.MAX_VALUE;
+		for(int orientation = 0; orientation < 8; orientation++) {
+			long size = (orientation < 4) ? pack(width, height) : pack(height, width);
+			key = Math.min(key, largeHashes[index + orientation] + mix(~size));
+		}
+		return mix(key) & ~0xFFL;
+	}
+
+	/*
+	 * Packs two coordinates into a long
+	 */
+	private static long pack(int x, int y) {
+		return ((long) x << 32) | y;
+	}
+
+	/*
+	 * Scrambles the bits of a long so that nearby values give unrelated results
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+
+	/*
+	 * Counts one more object with the given key in the open-addressing tally, doubling it
+	 * when it becomes half full; a slot with a count of 0 is empty
+	 */
+	private void tally(long key, int cellCount) {
+		int mask = tallyKeys.length - 1;
+		int slot = (int) mix(key) & mask;
+		while(tallyCounts[slot] > 0 && tallyKeys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		if(tallyCounts[slot] > 0) {
+			tallyCounts[slot]++;
+			return;
+		}
+
+		tallyKeys[slot] = key;
+		tallyCounts[slot] = 1;
+		tallyCells[slot] = cellCount;
+		if(++tallySize * 2 > tallyKeys.length) {
+			long[] oldKeys = tallyKeys;
+			int[] oldCounts = tallyCounts;
+			int[] oldCells = tallyCells;
+			tallyKeys = new long[oldKeys.length * 2];
+			tallyCounts = new int[oldKeys.length * 2];
+			tallyCells = new int[oldKeys.length * 2];
+			mask = tallyKeys.length - 1;
+			for(int old = 0; old < oldKeys.length; old++) {
+				if(oldCounts[old] > 0) {
+					slot = (int) mix(oldKeys[old]) & mask;
+					while(tallyCounts[slot] > 0) {
+						slot = (slot + 1) & mask;
+					}
+					tallyKeys[slot] = oldKeys[old];
+					tallyCounts[slot] = oldCounts[old];
+					tallyCells[slot] = oldCells[old];
+				}
+			}
+		}
+	}
+
+	/*
+	 * Names every phase of a known pattern, checking that each phase is a single object
+	 * and that the pattern comes back to its first shape after its period
+	 */
+	private static void define(Census registrar, String name, int period, String[] rows) {
+		int margin = period + 2;
+		GameOfLife game = new GameOfLife(rows[0].length() + 2 * margin, rows.length + 2 * margin);
+		place(game, margin, margin, rows, 0);
+
+		long first = registrar.keyOf(game);
+		for(int phase = 0; phase < period; phase++) {
+			String known = NAMES.put(registrar.keyOf(game), name);
+			if(known != null && !known.equals(name)) {
+				throw new IllegalStateException("The " + name + " has the same shape as the " + known);
+			}
+			game.nextGen();
+		}
+		if(registrar.keyOf(game) != first) {
+			throw new IllegalStateException("The " + name + " does not come back after " + period + " generations");
+		}
+	}
+
+	/*
+	 * Revives the Cells of a pattern with its top left corner at (left, top), turned one
+	 * of eight ways: bit 2 of the orientation swaps rows and columns, then bit 0 mirrors
+	 * it from left to right and bit 1 from top to bottom
+	 */
+	private static void place(GameOfLife game, int left, int top, String[] rows, int orientation) {
+		for(int y = 0; y < rows.length; y++) {
+			for(int x = 0; x < rows[y].length(); x++) {
+				if(rows[y].charAt(x) != 'o') {
+					continue;
+				}
+
+				int across = x, down = y, width = rows[0].length(), height = rows.length;
+				if((orientation & 4) != 0) {
+					across = y;
+					down = x;
+					width = rows.length;
+					height = rows[0].length();
+				}
+				if((orientation & 1) != 0) {
+					across = width - 1 - across;
+				}
+				if((orientation & 2) != 0) {
+					down = height - 1 - down;
+				}
+				game.revive(left + across, top + down);
+			}
+		}
+	}
+
+	/*
+	 * Finds the sizes of the groups of a board by flood fill, one Cell at a time
+	 */
+	private static int[] floodFillSizes(GameOfLife game, int distance) {
+		int width = game.getWidth();
+		int height = game.getHeight();
+		boolean[] seen = new boolean[width * height];
+		int[] queue = new int[width * height];
+		List<Integer> sizes = new ArrayList<Integer>();
+
+		for(int cell = 0; cell < width * height; cell++) {
+			if(seen[cell] || !game.isAlive(cell % width, cell / width)) {
+				continue;
+			}
+
+			int head = 0, tail = 0;
+			queue[tail++] = cell;
+			seen[cell] = true;
+			while(head < tail) {
+				int x = queue[head] % width, y = queue[head] / width;
+				head++;
+				for(int dy = -distance; dy <= distance; dy++) {
+					for(int dx = -distance; dx <= distance; dx++) {
+						int nx = x + dx, ny = y + dy;
+						if(game.isAlive(nx, ny) && !seen[ny * width + nx]) {
+							seen[ny * width + nx] = true;
+							queue[tail++] = ny * width + nx;
+						}
+					}
+				}
+			}
+			sizes.add(tail);
+		}
+
+		int[] sorted = new int[sizes.size()];
+		for(int i = 0; i < sorted.length; i++) {
+			sorted[i] = sizes.get(i);
+		}
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(25);
+
+		// the groups must be the same as a flood fill finds, across the edges of the longs
+		for(int distance = 1; distance <= 3; distance++) {
+			for(int trial = 0; trial < 20; trial++) {
+				GameOfLife game = new GameOfLife(1 + random.nextInt(200), 1 + random.nextInt(100));
+				int density = 5 + random.nextInt(40);
+				for(int y = 0; y < game.getHeight(); y++) {
+					for(int x = 0; x < game.getWidth(); x++) {
+						if(random.nextInt(100) < density) {
+							game.revive(x, y);
+						}
+					}
+				}
+
+				Census census = new Census(distance);
+				census.take(game);
+				int[] sizes = Arrays.copyOf(census.cells, census.groupCount);
+				Arrays.sort(sizes);
+				if(!Arrays.equals(sizes, floodFillSizes(game, distance))) {
+					throw new AssertionError("The groups at distance " + distance + " differ from a flood fill on a "
+							+ game.getWidth() + "x" + game.getHeight() + " board");
+				}
+			}
+		}
+		System.out.println("The groups match a flood fill at distances 1 to 3");
+
+		// every orientation of a shape has the same key, for shapes drawn in a long or hashed
+		Census census = new Census();
+		for(int trial = 0; trial < 200; trial++) {
+			int width = 1 + random.nextInt((trial % 2 == 0) ? 8 : 16);
+			int height = 1 + random.nextInt((trial % 2 == 0) ? 8 : 16);
+			char[][] cells = new char[height][width];
+			for(int y = 0; y < height; y++) {
+				for(int x = 0; x < width; x++) {
+					// a full first row and column fill the box, and every other Cell touches one before it
+					boolean edge = x == 0 || y == 0;
+					boolean touching = !edge && (cells[y - 1][x - 1] == 'o' || cells[y - 1][x] == 'o'
+							|| cells[y][x - 1] == 'o' || (x + 1 < width && cells[y - 1][x + 1] == 'o'));
+					cells[y][x] = (edge || (touching && random.nextInt(100) < 60)) ? 'o' : '.';
+				}
+			}
+			String[] rows = new String[height];
+			for(int y = 0; y < height; y++) {
+				rows[y] = new String(cells[y]);
+			}
+
+			long key = 0;
+			for(int orientation = 0; orientation < 8; orientation++) {
+				GameOfLife game = new GameOfLife(20, 20);
+				place(game, 1 + random.nextInt(3), 1 + random.nextInt(3), rows, orientation);
+				long found = census.keyOf(game);
+				if(orientation > 0 && found != key) {
+					throw new AssertionError("Orientation " + orientation + " of " + String.join("/", rows)
+							+ " has another key");
+				}
+				key = found;
+			}
+
+			// the key of a small shape is the smallest of its orientations drawn one Cell at a time
+			if(width <= 8 && height <= 8) {
+				long expected = Long.MAX_VALUE;
+				for(int orientation = 0; orientation < 8; orientation++) {
+					GameOfLife game = new GameOfLife(8, 8);
+					place(game, 0, 0, rows, orientation);
+					long drawn = 0;
+					for(int y = 0; y < 8; y++) {
+						for(int x = 0; x < 8; x++) {
+							if(game.isAlive(x, y)) {
+								drawn |= 1L << (y * 8 + x);
+							}
+						}
+					}
+					expected = Math.min(expected, drawn);
+				}
+				if(key != expected) {
+					throw new AssertionError(String.join("/", rows) + " has key " + Long.toHexString(key) + " instead of "
+							+ Long.toHexString(expected));
+				}
+			}
+		}
+		System.out.println("Every orientation of 200 random shapes has the same key");
+
+		// every phase of a glider and a lightweight spaceship keeps its name as it flies
+		GameOfLife flight = new GameOfLife(60, 60);
+		place(flight, 40, 5, KNOWN_ROWS[Arrays.asList(KNOWN_NAMES).indexOf("glider")], 1);
+		place(flight, 30, 40, KNOWN_ROWS[Arrays.asList(KNOWN_NAMES).indexOf("lightweight spaceship")], 0);
+		Census spaced = new Census(2);
+		for(int generation = 0; generation < 40; generation++) {
+			Map<String, Integer> found = spaced.take(flight);
+			if(!found.toString().equals("{glider=1, lightweight spaceship=1}")) {
+				throw new AssertionError("Generation " + generation + " holds " + found);
+			}
+			flight.nextGen();
+		}
+		System.out.println("A glider and a lightweight spaceship keep their names for 40 generations");
+
+		// millions of known objects in random orientations, a few squares apart
+		int side = (args.length > 0) ? Integer.parseInt(args[0]) : 12000;
+		GameOfLife game = new GameOfLife(side, side);
+		Map<String, Integer> expected = new HashMap<String, Integer>();
+		Map<String, Integer> expectedTouching = new HashMap<String, Integer>();
+		List<Integer> small = new ArrayList<Integer>();
+		Map<Integer, Map<String, Integer>> pieces = new HashMap<Integer, Map<String, Integer>>();
+		Census touching = new Census();
+		for(int i = 0; i < KNOWN_NAMES.length; i++) {
+			if(KNOWN_ROWS[i].length <= 6 && KNOWN_ROWS[i][0].length() <= 6) {
+				// at distance 1 a pattern whose Cells do not all touch is counted as its pieces
+				small.add(i);
+				GameOfLife alone = new GameOfLife(8, 8);
+				place(alone, 1, 1, KNOWN_ROWS[i], 0);
+				pieces.put(i, touching.take(alone));
+			}
+		}
+		for(int top = 0; top + 6 <= side; top += 9) {
+			for(int left = 0; left + 6 <= side; left += 9) {
+				int pattern = small.get(random.nextInt(small.size()));
+				place(game, left, top, KNOWN_ROWS[pattern], random.nextInt(8));
+				Integer count = expected.get(KNOWN_NAMES[pattern]);
+				expected.put(KNOWN_NAMES[pattern], (count == null) ? 1 : count + 1);
+				for(Map.Entry<String, Integer> piece: pieces.get(pattern).entrySet()) {
+					count = expectedTouching.get(piece.getKey());
+					expectedTouching.put(piece.getKey(), (count == null) ? piece.getValue() : count + piece.getValue());
+				}
+			}
+		}
+
+		for(Census timed: new Census[] {touching, spaced}) {
+			// a few censuses first let the JIT compile the labeling loops
+			for(int warmup = 0; warmup < 3; warmup++) {
+				timed.take(game);
+			}
+			long start = System.nanoTime();
+			Map<String, Integer> found = timed.take(game);
+			long elapsed = System.nanoTime() - start;
+			System.out.println(String.format("Distance %d: %d objects of %d shapes on a %dx%d board in %.1f ms",
+					timed.distance, timed.getObjectCount(), found.size(), side, side, elapsed / 1e6));
+			Map<String, Integer> wanted = (timed == spaced) ? expected : expectedTouching;
+			if(!found.equals(wanted)) {
+				throw new AssertionError("The census at distance " + timed.distance + " found " + found + " instead of "
+						+ wanted);
+			}
+		}
+		System.out.println(spaced.take(game));
+	}
+}
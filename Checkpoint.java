@@ -0,0 +1,336 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/*
+ * This class saves a generation of a GameOfLife to a compact binary file and restores it
+ * The file starts with a 32 byte header: the magic bytes "GOL2", the header length, the
+ * width, the height, the generation number as a long, the number of longs per row and
+ * the Topology's ordinal; it is followed by every row, top to bottom, packed into longs
+ * with the Cell at x held in bit x % 64 of long x / 64, all in little-endian byte order
+ * When the header length is more than 32, the Rule follows the header as an int
+ * length and that many UTF-8 bytes of its notation, padded to a whole number of longs;
+ * only the two-state rules a GameOfLife runs can be saved, and without them the game
+ * is restored running B3/S23
+ * Files from before the Topology was saved start with "GOL1" and hold 0 in its place;
+ * they are still read, as a PLANE
+ * Files are written and read straight through a FileChannel, a megabyte at a time from
+ * one direct ByteBuffer, so huge boards move at the speed of the disk; nothing is left
+ * mapped, which on Windows would keep a file from being replaced by the next save
+ * A file is written under a temporary name and then renamed, so a crash in the middle
+ * never leaves a broken file
+ */
+public class Checkpoint {
+
+	// the magic bytes "GOL2" read as a little-endian int, and "GOL1" of the files without a Topology
+	private static final int MAGIC = 0x324C4F47;
+	private static final int PLANE_MAGIC = 0x314C4F47;
+	private static final int HEADER_BYTES = 32;
+
+	// the size of the buffer the rows are written and read through, a whole number of longs
+	private static final int BUFFER_BYTES = 1 << 20;
+
+	// the most bytes of Rule notation a header may hold, far more than any real rule needs
+	private static final int MAXIMUM_RULE_BYTES = 1 << 16;
+
+	/*
+	 * Saves the current generation of a GameOfLife to the given file
+	 */
+	public static void save(GameOfLife game, Path file) throws IOException {
+		save(game.getBoard(), game.getGenNumber(), game.getTopology(), game.getRule(), file);
+	}
+
+	/*
+	 * Saves a BitBoard, its generation number, the Topology of its edges and the Rule it
+	 * runs to the given file
+	 */
+	public static void save(BitBoard board, long generation, Topology topology, Rule rule, Path file) throws IOException {
+		if(!rule.isTwoStateRangeOne()) {
+			throw new IllegalArgumentException("A checkpoint only holds dead and living Cells, not the states of " + rule);
+		}
+
+		byte[] notation = rule.toString().getBytes(StandardCharsets.UTF_8);
+		int headerBytes = (HEADER_BYTES + Integer.BYTES + notation.length + 7) & ~7;
+		int rowLongs = (board.getWidth() + 63) >>> 6;
+		long dataBytes = (long) board.getHeight() * rowLongs * 8;
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			// a new direct buffer is all zeros, which pads the Rule to a whole number of longs
+			ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_BYTES, headerBytes)).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(headerBytes).putInt(board.getWidth()).putInt(board.getHeight());
+			buffer.putLong(generation).putInt(rowLongs).putInt(topology.ordinal());
+			buffer.putInt(notation.length).put(notation);
+			buffer.position(headerBytes);
+
+			long[] words = board.getWords();
+			long[] interiorMask = board.getInteriorMask();
+			for(int y = 0; y < board.getHeight(); y++) {
+				int row = board.rowOffset(y);
+				// drops the ghost bits around the row, so the Cell at x lands in bit x
+				for(int i = 0; i < rowLongs; i++) {
+					if(buffer.remaining() < Long.BYTES) {
+						drain(channel, buffer);
+					}
+					long next = (i + 1 < board.getWordsPerRow()) ? words[row + i + 1] & interiorMask[i + 1] : 0L;
+					buffer.putLong(((words[row + i] & interiorMask[i]) >>> 1) | (next << 63));
+				}
+			}
+			drain(channel, buffer);
+			channel.force(false);
+
+			if(channel.size() != headerBytes + dataBytes) {
+				throw new IOException("The checkpoint " + temporary + " was not written completely");
+			}
+		}
+
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*
+	 * Restores a GameOfLife, with its generation number, Topology and Rule, from the
+	 * given file
+	 */
+	public static GameOfLife load(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() < HEADER_BYTES) {
+				throw new IOException(file + " is too short to be a checkpoint");
+			}
+
+			ByteBuffer header = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			fill(channel, header, HEADER_BYTES, file);
+			int magic = header.getInt();
+			if(magic != MAGIC && magic != PLANE_MAGIC) {
+				throw new IOException(file + " is not a checkpoint");
+			}
+
+			int headerBytes = header.getInt();
+			int width = header.getInt();
+			int height = header.getInt();
+			long generation = header.getLong();
+			int rowLongs = header.getInt();
+			int topology = header.getInt();
+
+			if(width < 1 || height < 1 || rowLongs != (width + 63) >>> 6 || headerBytes < HEADER_BYTES
+					|| topology < 0 || topology >= Topology.values().length) {
+				throw new IOException(file + " has a damaged header");
+			}
+			if(generation < 0 || generation > Integer.MAX_VALUE) {
+				throw new IOException(file + " is at generation " + generation + ", beyond what GameOfLife counts");
+			}
+			if(channel.size() != headerBytes + (long) height * rowLongs * 8) {
+				throw new IOException(file + " has " + channel.size() + " bytes, which does not match a "
+						+ width + "x" + height + " board");
+			}
+
+			GameOfLife game = new GameOfLife(width, height);
+			if(headerBytes > HEADER_BYTES) {
+				game.setRule(readRule(channel, file, headerBytes));
+			}
+			BitBoard board = game.getBoard();
+			long[] words = board.getWords();
+			long[] interiorMask = board.getInteriorMask();
+
+			// the rows are read through the same buffer as the header, a buffer full at a time
+			ByteBuffer buffer = header;
+			buffer.clear().limit(0);
+			channel.position(headerBytes);
+			long bytesLeft = (long) height * rowLongs * 8;
+			for(int y = 0; y < height; y++) {
+				int row = board.rowOffset(y);
+				// puts the ghost bit back in front of the row, so the Cell at x lands in bit x + 1
+				long carry = 0L;
+				for(int i = 0; i < board.getWordsPerRow(); i++) {
+					long packed = 0L;
+					if(i < rowLongs) {
+						if(!buffer.hasRemaining()) {
+							fill(channel, buffer, bytesLeft, file);
+							bytesLeft -= buffer.remaining();
+						}
+						packed = buffer.getLong();
+					}
+					words[row + i] = ((packed << 1) | carry) & interiorMask[i];
+					carry = packed >>> 63;
+				}
+			}
+
+			board.recountPopulations();
+			game.setGenNumber((int) generation);
+			game.setTopology(Topology.values()[topology]);
+			return game;
+		}
+	}
+
+	/*
+	 * Reads the Rule that follows the fixed part of the header, which must be one a
+	 * GameOfLife can run
+	 */
+	private static Rule readRule(FileChannel channel, Path file, int headerBytes) throws IOException {
+		if(headerBytes - HEADER_BYTES > MAXIMUM_RULE_BYTES) {
+			throw new IOException(file + " has a damaged header");
+		}
+		ByteBuffer extra = ByteBuffer.allocate(headerBytes - HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		channel.position(HEADER_BYTES);
+		fill(channel, extra, extra.capacity(), file);
+		if(extra.remaining() < Integer.BYTES) {
+			throw new IOException(file + " has a damaged header");
+		}
+		int length = extra.getInt();
+		if(length < 0 || length > extra.remaining()) {
+			throw new IOException(file + " has a damaged header");
+		}
+
+		byte[] notation = new byte[length];
+		extra.get(notation);
+		Rule rule;
+		try {
+			rule = Rule.parse(new String(notation, StandardCharsets.UTF_8));
+		}
+		catch(IllegalArgumentException e) {
+			throw new IOException(file + " has a rule that cannot be read: " + e.getMessage());
+		}
+		if(!rule.isTwoStateRangeOne()) {
+			throw new IOException(file + " runs " + rule + ", which a GameOfLife cannot run");
+		}
+		return rule;
+	}
+
+	/*
+	 * Writes everything put into the buffer to the channel and empties the buffer
+	 */
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/*
+	 * Refills the buffer with the next bytes of the channel, as many as fit but no more
+	 * than bytesLeft, and leaves them ready to be read
+	 */
+	private static void fill(FileChannel channel, ByteBuffer buffer, long bytesLeft, Path file) throws IOException {
+		buffer.clear();
+		buffer.limit((int) Math.min(buffer.capacity(), bytesLeft));
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer) < 0) {
+				throw new IOException(file + " ended before the whole checkpoint was read");
+			}
+		}
+		buffer.flip();
+	}
+
+	public static void main(String[] args) throws IOException {
+		GameOfLife game = new GameOfLife(1000, 700);
+		Random random = new Random(9);
+		for(int x = 0; x < game.getWidth(); x++) {
+			for(int y = 0; y < game.getHeight(); y++) {
+				if(random.nextInt(3) == 0) {
+					game.revive(x, y);
+				}
+			}
+		}
+		game.setStepper(new SwarStepper());
+		for(int i = 0; i < 25; i++) {
+			game.nextGen();
+		}
+
+		Path file = Files.createTempFile("life", ".ckpt");
+		Checkpoint.save(game, file);
+		GameOfLife restored = Checkpoint.load(file);
+		System.out.println("Saved " + Files.size(file) + " bytes at generation " + game.getGenNumber());
+
+		for(int x = 0; x < game.getWidth(); x++) {
+			for(int y = 0; y < game.getHeight(); y++) {
+				if(game.isAlive(x, y) != restored.isAlive(x, y)) {
+					throw new AssertionError("The restored board differs at (" + x + ", " + y + ")");
+				}
+			}
+		}
+		System.out.println("Restored generation " + restored.getGenNumber() + " with " + restored.aliveCount()
+				+ " living Cells, matching the saved " + game.aliveCount());
+
+		// rows longer than the buffer are split between refills, in the middle of a row
+		GameOfLife wide = new GameOfLife(10000001, 3);
+		for(int i = 0; i < 30000; i++) {
+			wide.revive(random.nextInt(wide.getWidth()), random.nextInt(wide.getHeight()));
+		}
+		Checkpoint.save(wide, file);
+		if(!Checkpoint.load(file).getBoard().hasSameCells(wide.getBoard())) {
+			throw new AssertionError("A board with rows longer than the buffer was not restored");
+		}
+		System.out.println("A " + wide.getWidth() + "x" + wide.getHeight() + " board with " + wide.aliveCount()
+				+ " living Cells was restored");
+
+		// checkpoints every 10 generations on a background thread while the game runs
+		Path periodic = Paths.get(file + ".periodic");
+		try(Checkpointer checkpointer = new Checkpointer(periodic, 10)) {
+			game.addGenerationListener(checkpointer);
+			for(int i = 0; i < 100; i++) {
+				game.nextGen();
+			}
+			game.removeGenerationListener(checkpointer);
+		}
+		System.out.println("The periodic checkpoint is at generation " + Checkpoint.load(periodic).getGenNumber());
+
+		// a game on a torus must resume on a torus, directly and through a Checkpointer
+		game.setTopology(Topology.TORUS);
+		Checkpoint.save(game, file);
+		if(Checkpoint.load(file).getTopology() != Topology.TORUS) {
+			throw new AssertionError("The checkpoint did not keep the TORUS");
+		}
+		try(Checkpointer checkpointer = new Checkpointer(periodic, 1)) {
+			game.addGenerationListener(checkpointer);
+			game.nextGen();
+			game.removeGenerationListener(checkpointer);
+		}
+		GameOfLife resumed = Checkpoint.load(periodic);
+		resumed.setStepper(new SwarStepper());
+		resumed.nextGen();
+		game.nextGen();
+		if(resumed.getTopology() != Topology.TORUS || !resumed.getBoard().hasSameCells(game.getBoard())) {
+			throw new AssertionError("The periodic checkpoint did not resume on the TORUS");
+		}
+
+		// a checkpoint from before the Topology was saved is read as a PLANE
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			ByteBuffer old = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			old.putInt(PLANE_MAGIC).flip();
+			channel.write(old, 0);
+			old.clear();
+			old.putInt(0).flip();
+			channel.write(old, HEADER_BYTES - Integer.BYTES);
+		}
+		if(Checkpoint.load(file).getTopology() != Topology.PLANE) {
+			throw new AssertionError("A GOL1 checkpoint was not read as a PLANE");
+		}
+		System.out.println("The Topology is kept, and GOL1 checkpoints are read as a PLANE");
+
+		// the Rule is kept, and rules with more states than a checkpoint holds are refused
+		game.setRule(Rule.parse("B36/S23"));
+		Checkpoint.save(game, file);
+		if(!Checkpoint.load(file).getRule().equals(game.getRule())) {
+			throw new AssertionError("The checkpoint did not keep " + game.getRule());
+		}
+		try {
+			Checkpoint.save(game.getBoard(), game.getGenNumber(), Topology.PLANE, Rule.parse("B2/S/C3"), file);
+			throw new AssertionError("A Generations rule was saved");
+		}
+		catch(IllegalArgumentException e) {
+			System.out.println("The Rule is kept, and a Generations rule is refused: " + e.getMessage());
+		}
+
+		Files.delete(file);
+		Files.delete(periodic);
+	}
+}
@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * This class is a GenerationListener that saves a Checkpoint of a GameOfLife every
+ * given number of generations without slowing down the thread that steps the game
+ * When a checkpoint is due, the stepping thread only copies the packed rows into a
+ * snapshot BitBoard, which is one array copy; a background thread then writes the
+ * snapshot to disk while the game keeps running
+ * If the previous checkpoint is still being written when the next one is due, the new
+ * one is skipped rather than making the game wait, and the skip is counted
+ * Closing a Checkpointer waits for the last checkpoint to be written
+ */
+public class Checkpointer implements GenerationListener, AutoCloseable {
+
+	// instance data
+	private Path file;
+	private int interval;
+	private ExecutorService writer;
+	private BitBoard snapshot;
+	private Future<?> pendingWrite;
+	private volatile IOException lastError;
+	private int started;
+	private int skipped;
+
+	/*
+	 * Constructs a Checkpointer that saves to the given file every interval generations
+	 */
+	public Checkpointer(Path file, int interval) {
+		if(interval < 1) {
+			throw new IllegalArgumentException("The checkpoint interval must be at least 1 generation");
+		}
+
+		this.file = file;
+		this.interval = interval;
+		this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "checkpoint writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+
+		});
+	}
+
+	/*
+	 * Copies the game's packed rows and hands them to the background thread when a
+	 * checkpoint is due
+	 */
+	public void generationComputed(GameOfLife game) {
+		if(game.getGenNumber() % interval != 0) {
+			return;
+		}
+
+		if(pendingWrite != null && !pendingWrite.isDone()) {
+			skipped++;
+			return;
+		}
+
+		BitBoard board = game.getBoard();
+		if(snapshot == null || snapshot.getWidth() != board.getWidth() || snapshot.getHeight() != board.getHeight()) {
+			snapshot = new BitBoard(board.getWidth(), board.getHeight());
+		}
+		snapshot.copyFrom(board);
+
+		BitBoard rows = snapshot;
+		long generation = game.getGenNumber();
+		Topology topology = game.getTopology();
+		Rule rule = game.getRule();
+		pendingWrite = writer.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					Checkpoint.save(rows, generation, topology, rule, file);
+				}
+				catch(IOException e) {
+					lastError = e;
+				}
+			}
+
+		});
+		started++;
+	}
+
+	/*
+	 * Returns the number of checkpoints handed to the background thread
+	 */
+	public int getStartedCount() {
+		return started;
+	}
+
+	/*
+	 * Returns the number of checkpoints skipped because the previous one was still being written
+	 */
+	public int getSkippedCount() {
+		return skipped;
+	}
+
+	/*
+	 * Returns the error of the most recent failed checkpoint, or null
+	 */
+	public IOException getLastError() {
+		return lastError;
+	}
+
+	/*
+	 * Waits for the last checkpoint to be written and stops the background thread,
+	 * reporting the error of the most recent failed checkpoint
+	 */
+	public void close() throws IOException {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if(lastError != null) {
+			throw lastError;
+		}
+	}
+}
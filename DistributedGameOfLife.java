@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * This class is the coordinator of a GameOfLife whose board is split into horizontal
+ * strips of whole rows, each computed by a StripWorker, usually in a process of its
+ * own, so a board can use the memory and processors of several JVMs
+ * The coordinator listens for the workers, hands each one its strip along with the
+ * address of the worker above it, and from then on only sends small messages: the
+ * workers exchange their one-row halos with each other directly, so no rows pass
+ * through the coordinator while the game runs
+ * The coordinator keeps the generation number and checks that every worker reports
+ * the same one after each run of generations; the population is the sum of the
+ * workers' counts, and gather copies the rows back into a GameOfLife
+ * Every strip is computed exactly as the same rows of the whole board would be, so the
+ * result matches nextGen on one GameOfLife bit for bit; only the bounded plane is
+ * supported, since the workers have no ghost columns to wrap
+ */
+public class DistributedGameOfLife implements AutoCloseable {
+
+	// instance data
+	private ServerSocketChannel server;
+	private SocketChannel[] workers = new SocketChannel[0];
+	private int[] firstRows;
+	private int width;
+	private int height;
+	private int generationNumber;
+	private int population;
+	private long[] exchangeNanos;
+	private long[] stepNanos;
+	private ByteBuffer message = ByteBuffer.allocate(64);
+
+	/*
+	 * Constructs a DistributedGameOfLife listening for workers at the given address;
+	 * port 0 picks any free port, which getAddress then returns
+	 */
+	public DistributedGameOfLife(InetSocketAddress address) throws IOException {
+		this.server = ServerSocketChannel.open();
+		server.bind(address);
+	}
+
+	/*
+	 * Returns the address the workers should connect to
+	 */
+	public InetSocketAddress getAddress() throws IOException {
+		return (InetSocketAddress) server.getLocalAddress();
+	}
+
+	/*
+	 * Waits for the given number of workers to connect and hands each of them a strip
+	 * of the game's current generation, in the order they connected; the strips differ
+	 * in height by at most one row
+	 */
+	public void distribute(GameOfLife game, int workerCount) throws IOException {
+		if(workerCount < 1 || workerCount > game.getHeight()) {
+			throw new IllegalArgumentException("Cannot split " + game.getHeight() + " rows between " + workerCount + " workers");
+		}
+		if(game.getTopology() != Topology.PLANE) {
+			throw new IllegalArgumentException("A DistributedGameOfLife only runs on a PLANE, not a " + game.getTopology());
+		}
+
+		this.width = game.getWidth();
+		this.height = game.getHeight();
+		this.generationNumber = game.getGenNumber();
+		this.population = game.aliveCount();
+		this.workers = new SocketChannel[workerCount];
+		this.exchangeNanos = new long[workerCount];
+		this.stepNanos = new long[workerCount];
+		this.firstRows = new int[workerCount + 1];
+		for(int i = 0; i <= workerCount; i++) {
+			firstRows[i] = (int) ((long) height * i / workerCount);
+		}
+
+		int[] ports = new int[workerCount];
+		for(int i = 0; i < workerCount; i++) {
+			workers[i] = server.accept();
+			workers[i].socket().setTcpNoDelay(true);
+			if(readInt(workers[i]) != StripWorker.HELLO) {
+				throw new IOException("Worker " + i + " did not say hello");
+			}
+			ports[i] = readInt(workers[i]);
+		}
+
+		byte[] rule = game.getRule().toString().getBytes(StandardCharsets.UTF_8);
+		for(int i = 0; i < workerCount; i++) {
+			byte[] aboveHost = new byte[0];
+			if(i > 0) {
+				InetSocketAddress above = (InetSocketAddress) workers[i - 1].getRemoteAddress();
+				aboveHost = above.getAddress().getHostAddress().getBytes(StandardCharsets.UTF_8);
+			}
+
+			ByteBuffer assignment = ByteBuffer.allocate(8 * Integer.BYTES + aboveHost.length + rule.length);
+			assignment.putInt(StripWorker.ASSIGN).putInt(width).putInt(firstRows[i + 1] - firstRows[i])
+					.putInt(generationNumber).putInt((i > 0) ? ports[i - 1] : -1).putInt((i + 1 < workerCount) ? 1 : 0)
+					.putInt(aboveHost.length).put(aboveHost).putInt(rule.length).put(rule).flip();
+			StripWorker.writeFully(workers[i], assignment);
+			StripWorker.writeRows(workers[i], game.getBoard(), firstRows[i], firstRows[i + 1]);
+		}
+	}
+
+	/*
+	 * Reads an int from a worker
+	 */
+	private int readInt(SocketChannel worker) throws IOException {
+		message.clear().limit(Integer.BYTES);
+		StripWorker.readFully(worker, message);
+		return message.getInt(0);
+	}
+
+	/*
+	 * Advances every strip from one generation to the next
+	 */
+	public void nextGen() throws IOException {
+		advance(1);
+	}
+
+	/*
+	 * Advances every strip the given number of generations; the workers run them
+	 * without waiting for the coordinator, which then checks they all reached the
+	 * same generation and adds up their populations
+	 */
+	public void advance(int generations) throws IOException {
+		if(generations < 0 || (long) generationNumber + generations > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Cannot advance " + generations + " generations from generation "
+					+ generationNumber);
+		}
+
+		for(SocketChannel worker: workers) {
+			message.clear();
+			message.putInt(StripWorker.STEP).putInt(generations).flip();
+			StripWorker.writeFully(worker, message);
+		}
+
+		int living = 0;
+		for(int i = 0; i < workers.length; i++) {
+			message.clear().limit(3 * Integer.BYTES + 2 * Long.BYTES);
+			StripWorker.readFully(workers[i], message);
+			message.flip();
+			int type = message.getInt();
+			int generation = message.getInt();
+			if(type != StripWorker.DONE || generation != generationNumber + generations) {
+				throw new IOException("Worker " + i + " reached generation " + generation + " instead of "
+						+ (generationNumber + generations));
+			}
+			living += message.getInt();
+			exchangeNanos[i] = message.getLong();
+			stepNanos[i] = message.getLong();
+		}
+
+		this.generationNumber += generations;
+		this.population = living;
+	}
+
+	/*
+	 * Copies the current generation of every strip into a GameOfLife of the same size
+	 * and sets its generation number to match
+	 */
+	public void gather(GameOfLife game) throws IOException {
+		if(game.getWidth() != width || game.getHeight() != height) {
+			throw new IllegalArgumentException("Cannot gather a " + width + "x" + height + " board into a "
+					+ game.getWidth() + "x" + game.getHeight() + " game");
+		}
+
+		for(int i = 0; i < workers.length; i++) {
+			message.clear();
+			message.putInt(StripWorker.GATHER).flip();
+			StripWorker.writeFully(workers[i], message);
+			if(readInt(workers[i]) != StripWorker.ROWS) {
+				throw new IOException("Worker " + i + " did not send its rows");
+			}
+			StripWorker.readRows(workers[i], game.getBoard(), firstRows[i], firstRows[i + 1]);
+		}
+		game.setGenNumber(generationNumber);
+	}
+
+	/*
+	 * Returns how many Cells are alive, as the workers last reported
+	 */
+	public int aliveCount() {
+		return population;
+	}
+
+	/*
+	 * Returns the generation number every strip is on
+	 */
+	public int getGenNumber() {
+		return generationNumber;
+	}
+
+	/*
+	 * Returns the number of workers the board is split between
+	 */
+	public int getWorkerCount() {
+		return workers.length;
+	}
+
+	/*
+	 * Returns how many nanoseconds the given worker spent exchanging halos, including
+	 * waiting for its neighbors, during the last call to advance
+	 */
+	public long getExchangeNanos(int worker) {
+		return exchangeNanos[worker];
+	}
+
+	/*
+	 * Returns how many nanoseconds the given worker spent computing its strip during
+	 * the last call to advance
+	 */
+	public long getStepNanos(int worker) {
+		return stepNanos[worker];
+	}
+
+	/*
+	 * Tells every worker to stop and closes the connections
+	 */
+	public void close() throws IOException {
+		for(SocketChannel worker: workers) {
+			if(worker.isOpen()) {
+				message.clear();
+				message.putInt(StripWorker.STOP).flip();
+				StripWorker.writeFully(worker, message);
+				worker.close();
+			}
+		}
+		server.close();
+	}
+
+	/*
+	 * Starts the given number of StripWorker processes on this machine, with the same
+	 * Java and class path as this one, connecting to the given address
+	 */
+	public static List<Process> launchLocalWorkers(int count, InetSocketAddress address) throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		List<Process> processes = new ArrayList<Process>();
+		for(int i = 0; i < count; i++) {
+			ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "StripWorker",
+					address.getAddress().getHostAddress(), Integer.toString(address.getPort()));
+			processes.add(builder.inheritIO().start());
+		}
+		return processes;
+	}
+
+	/*
+	 * Runs a copy of the game on the given number of local worker processes for the
+	 * given number of generations, checks it against the expected result, and returns
+	 * the nanoseconds the generations took
+	 */
+	private static long runOnWorkers(GameOfLife game, int workerCount, int generations, GameOfLife expected)
+			throws IOException, InterruptedException {
+		DistributedGameOfLife distributed = new DistributedGameOfLife(new InetSocketAddress("127.0.0.1", 0));
+		List<Process> processes = launchLocalWorkers(workerCount, distributed.getAddress());
+		long elapsed;
+		long slowestExchange = 0;
+		try {
+			distributed.distribute(game, workerCount);
+
+			// the first generation also waits for the workers to connect to each other
+			distributed.nextGen();
+			long start = System.nanoTime();
+			distributed.advance(generations - 1);
+			elapsed = System.nanoTime() - start;
+
+			GameOfLife result = new GameOfLife(game.getWidth(), game.getHeight());
+			distributed.gather(result);
+			if(!result.getBoard().hasSameCells(expected.getBoard()) || result.aliveCount() != expected.aliveCount()
+					|| distributed.aliveCount() != expected.aliveCount() || result.getGenNumber() != expected.getGenNumber()) {
+				throw new AssertionError(workerCount + " workers differ from nextGen at generation " + result.getGenNumber());
+			}
+
+			for(int i = 0; i < workerCount; i++) {
+				slowestExchange = Math.max(slowestExchange, distributed.getExchangeNanos(i));
+			}
+		}
+		finally {
+			distributed.close();
+		}
+		for(Process process: processes) {
+			process.waitFor();
+		}
+
+		System.out.println(String.format("%d workers: %.1f ms for %d generations, at most %.1f ms exchanging halos",
+				workerCount, elapsed / 1e6, generations - 1, slowestExchange / 1e6));
+		return elapsed;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		// odd sizes and strips of a single row must match nextGen exactly, with Conway's and another rule
+		String[] rules = {"B3/S23", "B36/S23"};
+		int[][] splits = {{301, 257, 3}, {70, 5, 5}, {130, 40, 1}};
+		for(String text: rules) {
+			for(int[] split: splits) {
+				GameOfLife game = new GameOfLife(split[0], split[1]);
+				game.setRule(Rule.parse(text));
+				Random random = new Random(split[0]);
+				for(int x = 0; x < split[0]; x++) {
+					for(int y = 0; y < split[1]; y++) {
+						if(random.nextInt(100) < 35) {
+							game.revive(x, y);
+						}
+					}
+				}
+
+				GameOfLife expected = new GameOfLife(split[0], split[1]);
+				expected.getBoard().copyFrom(game.getBoard());
+				expected.setRule(game.getRule());
+				expected.setStepper(new LutStepper(game.getRule()));
+				for(int i = 0; i < 60; i++) {
+					expected.nextGen();
+				}
+				runOnWorkers(game, split[2], 60, expected);
+			}
+		}
+		System.out.println("Every split matches nextGen");
+
+		// scaling as workers are added, against one process stepping the same board
+		int side = (args.length > 0) ? Integer.parseInt(args[0]) : 4096;
+		int generations = 200;
+		GameOfLife game = LifeBenchmark.randomGame(side, 30, 21);
+		GameOfLife expected = LifeBenchmark.randomGame(side, 30, 21);
+		expected.setStepper(new SwarStepper());
+		expected.nextGen();
+		long start = System.nanoTime();
+		for(int i = 1; i < generations; i++) {
+			expected.nextGen();
+		}
+		long single = System.nanoTime() - start;
+		System.out.println(String.format("1 process: %.1f ms for %d generations of %dx%d", single / 1e6, generations - 1,
+				side, side));
+
+		for(int workerCount = 1; workerCount <= 8; workerCount *= 2) {
+			long elapsed = runOnWorkers(game, workerCount, generations, expected);
+			System.out.println(String.format("    speedup over 1 process: %.2f", (double) single / elapsed));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * This class is an immutable snapshot of one generation of a GameOfLife, made by a
+ * SimulationLoop for the user interface to draw
+ * It holds its own copy of the packed rows, so it can be read on any thread while the
+ * game goes on changing, along with the generation number and the number of living Cells
+ */
+public final class Frame {
+
+	// instance data
+	private final BitBoard board;
+	private final int generation;
+	private final int population;
+
+	/*
+	 * Constructs a Frame by copying the current generation of a GameOfLife
+	 */
+	public Frame(GameOfLife game) {
+		BitBoard current = game.getBoard();
+		this.board = new BitBoard(current.getWidth(), current.getHeight());
+		this.board.copyFrom(current);
+		this.generation = game.getGenNumber();
+		this.population = game.aliveCount();
+	}
+
+	/*
+	 * Checks to see if the Cell at (x, y) was alive in this Frame
+	 */
+	public boolean isAlive(int x, int y) {
+		return board.isAlive(x, y);
+	}
+
+	/*
+	 * Returns the generation number of this Frame (getter)
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	/*
+	 * Returns the number of living Cells in this Frame (getter)
+	 */
+	public int getPopulation() {
+		return population;
+	}
+
+	/*
+	 * Returns the width of the board as an integer
+	 */
+	public int getWidth() {
+		return board.getWidth();
+	}
+
+	/*
+	 * Returns the height of the board as an integer
+	 */
+	public int getHeight() {
+		return board.getHeight();
+	}
+
+	/*
+	 * Returns the copied BitBoard for drawing; it must not be changed
+	 */
+	BitBoard getBoard() {
+		return board;
+	}
+}
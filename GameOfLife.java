@@ -1,7 +1,9 @@
+import java.util.Arrays;
+
 /*
  * This class is the engine for a simulation of John Conway's Game of Life
- * It stores the game board as a Board object and the generation number
- * the game is on as an integer
+ * It stores the game board as a BitBoard object, which packs every Cell into
+ * a single bit, and the generation number the game is on as an integer
  * A GameOfLife object can be constructed by either entering the Board's 
  * dimensions as integers, entering the Board's side length as an integer 
  * if it as a square game board, or entering the Board's initial setup as a
@@ -16,26 +18,46 @@
  * of living Cells and dead Cells; clear the board by killing all the Cells; advance 
  * the game to the next generation; and find the Board's dimensions and the game's 
  * current generation number
+ * The next generation is computed into a second, preallocated BitBoard, and the
+ * two BitBoards swap roles after every generation, so nextGen never allocates
+ * A Stepper, such as the word-parallel SwarStepper, can be chosen to compute whole
+ * generations in place of calling willBeAlive for every Cell
+ * GenerationListeners can be added to hear about every generation once it is computed;
+ * nextGen times itself with two calls to System.nanoTime, which a LifeMetrics listener
+ * reads along with the previous generation to report on every step
+ * The game follows Conway's rules unless setRule chooses another two-state Rule of
+ * range 1, such as HighLife; willBeAlive then looks each Cell's 3x3 neighborhood up
+ * in the Rule's compiled table
+ * advance and runUntilStable run many generations at once; they hash every generation
+ * and compare it with a saved earlier one, so once the game settles into a still life
+ * or a cycle, advance jumps over the whole repeats of the cycle without computing them
+ * The Board is a bounded plane unless setTopology makes its edges wrap around as a
+ * torus or a Klein bottle; neighbors across an edge are then found in the ghost rows
+ * and columns of the BitBoard, which are filled once at the start of every generation
  */
 public class GameOfLife {
 	
 	// instance data
-	private Board board;
+	private BitBoard board;
+	private BitBoard nextBoard;
+	private Stepper stepper;
+	private boolean stepperRunsRule;
+	private Rule rule = Rule.CONWAY;
+	private Topology topology = Topology.PLANE;
+	private GenerationListener[] listeners = new GenerationListener[0];
 	private int generationNumber;
+	private long lastStepNanos;
+	
+	// the generation saved to compare later ones with when looking for a cycle
+	private BitBoard cycleStart;
 
 	/*
-	 * Constructs a GameOfLife object given integer Board dimensions and sets the
-	 * GamePieces at all locations to dead Cells
+	 * Constructs a GameOfLife object given integer Board dimensions with the Cells
+	 * at all locations dead (a new BitBoard starts with every bit cleared)
 	 */
 	public GameOfLife(int width, int height) {
-		this.board = new Board(width, height);
-		
-		for(int i = 0; i <= width; i++) {
-			for(int j = 0; j <= height; j++) {
-				board.setPiece(i, j, new Cell(0));
-			}
-		}
-		
+		this.board = new BitBoard(width, height);
+		this.nextBoard = new BitBoard(width, height);
 		this.generationNumber = 0;
 	}
 	
@@ -51,13 +73,14 @@ public class GameOfLife {
 	 * Constructs a GameOfLife object given a two-dimensional array of Cells
 	 */
 	public GameOfLife(Cell[][] initialState) {
-		this.board = new Board(initialState);
+		this.board = new BitBoard(initialState);
+		this.nextBoard = new BitBoard(board.getWidth(), board.getHeight());
 		this.generationNumber = 0;
 	}
 	
 	// Checks to see if the Cell at integer coordinates (x, y) is alive
 	public boolean isAlive(int x, int y) {
-		return (board.getPiece(x, y) != null && board.getPiece(x, y).getType() == 1);
+		return board.isAlive(x, y);
 	}
 	
 	// Calculates how many of a Cells neighbors are alive
@@ -66,7 +89,7 @@ public class GameOfLife {
 		
 		for(int i = x-1; i <= x+1; i++) {
 			for(int j = y-1; j <= y+1; j++) {
-				if(!(i == x && j == y) && this.board.inBounds(i, j) && isAlive(i, j)) {
+				if(!(i == x && j == y) && isAliveWrapped(i, j)) {
 					liveCellCount++;
 				}
 			}
@@ -75,20 +98,48 @@ public class GameOfLife {
 		return liveCellCount;
 	}
 	
+	/*
+	 * Checks to see if the Cell at (x, y) is alive, where a location past an edge is
+	 * dead on a PLANE and wraps around to the opposite edge otherwise
+	 */
+	private boolean isAliveWrapped(int x, int y) {
+		if(topology != Topology.PLANE && !board.inBounds(x, y)) {
+			if(y < 0 || y >= getHeight()) {
+				y = Math.floorMod(y, getHeight());
+				if(topology == Topology.KLEIN_BOTTLE) {
+					x = getWidth() - 1 - x;
+				}
+			}
+			x = Math.floorMod(x, getWidth());
+		}
+		
+		return isAlive(x, y);
+	}
+	
 	/*
 	 * Checks to see if the Cell at the given integer coordinates (x,y) has the 
 	 * correct number of neighbors to be alive in the next generation according to 
-	 * the rules of John Conway's Game of Life
+	 * the game's Rule, John Conway's Game of Life unless another was chosen
+	 * The 3x3 neighborhood is packed into a 9-bit index, bit (j + 1) * 3 + (i + 1)
+	 * holding the Cell at (x + i, y + j), and looked up in the Rule's table
 	 */
 	public boolean willBeAlive(int x, int y) {
-		return (countLivingNeighbors(x, y) == 3 || isAlive(x, y) && countLivingNeighbors(x, y) == 2);
+		int neighborhood = 0;
+		
+		for(int j = 1; j >= -1; j--) {
+			for(int i = 1; i >= -1; i--) {
+				neighborhood = (neighborhood << 1) | (isAliveWrapped(x + i, y + j) ? 1 : 0);
+			}
+		}
+		
+		return rule.nextState(neighborhood);
 	}
 	
 	/*
 	 * Updates an individual Cell's state for the following generation
 	 */
 	public void setCell(int x, int y, int state) {
-		board.getPiece(x, y).setType(state);
+		board.setAlive(x, y, state == Cell.ALIVE);
 	}
 
 	/*
@@ -111,33 +162,34 @@ public class GameOfLife {
 	 */
 	
 		public void swapStatus(int x, int y) {
-			if(isAlive(x, y)) {
-				board.getPiece(x, y).setType(0);
-			}
-			else {
-				board.getPiece(x, y).setType(1);
-			}
+			board.setAlive(x, y, !isAlive(x, y));
 		}
 	
 	/*
-	 * Counts how many total Cells are alive
+	 * Returns how many total Cells are alive; the BitBoard keeps a running count, so
+	 * this does not scan the Board
 	 */
 	public int aliveCount() {
-		int aliveCellCount = 0;
-		
-		for(int x = 0; x < this.getWidth(); x++) {
-			for(int y = 0; y < this.getHeight(); y++) {
-				if(this.isAlive(x, y)) {
-					aliveCellCount++;
-				}
-			}
-		}
-
-		 return aliveCellCount;
+		return board.aliveCount();
+	}
+	
+	/*
+	 * Returns how many Cells of row y are alive, from the row's running count
+	 */
+	public int rowAliveCount(int y) {
+		return board.rowAliveCount(y);
 	}
 	
 	/*
-	 * Counts how many total Cells are dead
+	 * Counts how many Cells are alive in the region of columns by rows Cells whose top
+	 * left Cell is (left, top)
+	 */
+	public int aliveCount(int left, int top, int columns, int rows) {
+		return board.aliveCount(left, top, columns, rows);
+	}
+	
+	/*
+	 * Returns how many total Cells are dead
 	 */
 	public int deadCount() {
 		int deadCellCount = (this.getWidth() * this.getHeight()) - this.aliveCount();		
@@ -148,32 +200,199 @@ public class GameOfLife {
 	 * Clears the Board by setting all the Cells to "dead"
 	 */
 	public void clear() {
-		for(int x = 0; x < this.getWidth(); x++) {
-			for(int y = 0; y < this.getHeight(); y++) {
-				this.setCell(x, y, 0);
-			}
-		}
+		board.clear();
 	}
 	
 	/*
-	 * Advances from one generation to the next
+	 * Advances from one generation to the next by writing every Cell's next state
+	 * into the back BitBoard and then swapping it with the current one; the old
+	 * generation becomes the back BitBoard and is overwritten by the following call
 	 */
 	public void nextGen() {
-		Board newBoard = new Board(this.getWidth(), this.getHeight());
+		long start = System.nanoTime();
+		if(topology != Topology.PLANE) {
+			board.fillGhosts(topology);
+		}
 		
-		for(int x = 0; x < this.getWidth(); x++) {
-			for(int y = 0; y < this.getHeight(); y++) {
-				if(this.willBeAlive(x, y)) {
-					newBoard.setPiece(x, y, new Cell(1));
-				}
-				else {
-					newBoard.setPiece(x, y, new Cell(0));
+		if(stepperRunsRule) {
+			stepper.step(board, nextBoard);
+		}
+		else {
+			nextBoard.clearBirths();
+			for(int x = 0; x < this.getWidth(); x++) {
+				for(int y = 0; y < this.getHeight(); y++) {
+					boolean alive = this.willBeAlive(x, y);
+					nextBoard.setAlive(x, y, alive);
+					if(alive && !board.isAlive(x, y)) {
+						nextBoard.addRowBirths(y, 1);
+					}
 				}
 			}
 		}
 
-		this.board = newBoard;
+		BitBoard previousBoard = this.board;
+		this.board = nextBoard;
+		this.nextBoard = previousBoard;
 		this.generationNumber++;
+		this.lastStepNanos = System.nanoTime() - start;
+		
+		for(GenerationListener listener: listeners) {
+			listener.generationComputed(this);
+		}
+	}
+	
+	/*
+	 * Advances the given number of generations; once the game is found to repeat a
+	 * cycle, the whole repeats of the cycle are skipped and only the generations left
+	 * over are computed, so GenerationListeners are not told about the skipped ones
+	 * The generation number cannot go past Integer.MAX_VALUE
+	 */
+	public void advance(long generations) {
+		if(generations < 0 || generationNumber + generations > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Cannot advance " + generations + " generations from generation "
+					+ generationNumber);
+		}
+		
+		long target = generationNumber + generations;
+		int period = findCycle(generations);
+		if(period > 0) {
+			long leftOver = (target - generationNumber) % period;
+			this.generationNumber = (int) (target - leftOver);
+			for(long i = 0; i < leftOver; i++) {
+				nextGen();
+			}
+		}
+	}
+	
+	/*
+	 * Runs generations until the game repeats itself or limit generations have passed,
+	 * and returns the period of the cycle it reached: 1 for a still life (including an
+	 * empty Board), 2 for a blinker and so on, or 0 when no cycle was found in time
+	 * The game is left at the generation where the repeat was found
+	 */
+	public int runUntilStable(long limit) {
+		return findCycle(limit);
+	}
+	
+	/*
+	 * Computes up to limit generations, looking for a cycle with Brent's method: the
+	 * current generation is saved, each following one is compared with it, and the save
+	 * is moved forward whenever the number of generations since it reaches the next
+	 * power of two; a matching hash is confirmed by comparing every Cell, so a hash
+	 * collision cannot give a wrong period
+	 * Returns the period of the cycle found, or 0 if there was none within limit
+	 */
+	private int findCycle(long limit) {
+		if(cycleStart == null || cycleStart.getWidth() != getWidth() || cycleStart.getHeight() != getHeight()) {
+			cycleStart = new BitBoard(getWidth(), getHeight());
+		}
+		
+		cycleStart.copyFrom(board);
+		long startHash = board.contentHash();
+		long power = 1;
+		long sinceStart = 0;
+		
+		for(long generation = 0; generation < limit; generation++) {
+			nextGen();
+			sinceStart++;
+			
+			long hash = board.contentHash();
+			if(hash == startHash && board.hasSameCells(cycleStart)) {
+				return (int) sinceStart;
+			}
+			
+			if(sinceStart == power) {
+				cycleStart.copyFrom(board);
+				startHash = hash;
+				power <<= 1;
+				sinceStart = 0;
+			}
+		}
+		
+		return 0;
+	}
+	
+	/*
+	 * Adds a GenerationListener to be told about every following generation
+	 */
+	public void addGenerationListener(GenerationListener listener) {
+		GenerationListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+		newListeners[listeners.length] = listener;
+		this.listeners = newListeners;
+	}
+	
+	/*
+	 * Removes a GenerationListener that was added before
+	 */
+	public void removeGenerationListener(GenerationListener listener) {
+		for(int i = 0; i < listeners.length; i++) {
+			if(listeners[i] == listener) {
+				GenerationListener[] newListeners = new GenerationListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, newListeners, 0, i);
+				System.arraycopy(listeners, i + 1, newListeners, i, listeners.length - i - 1);
+				this.listeners = newListeners;
+				return;
+			}
+		}
+	}
+	
+	/*
+	 * Chooses the Stepper that computes each following generation; null restores
+	 * the default of calling willBeAlive for every Cell, which is also used while the
+	 * Stepper does not support the game's Rule
+	 */
+	public void setStepper(Stepper stepper) {
+		this.stepper = stepper;
+		this.stepperRunsRule = stepper != null && stepper.supports(rule);
+	}
+	
+	/*
+	 * Returns the Stepper that computes each following generation, or null when
+	 * willBeAlive is called for every Cell (getter)
+	 */
+	public Stepper getStepper() {
+		return stepper;
+	}
+	
+	/*
+	 * Chooses the Rule for each following generation; it must be a two-state Rule of
+	 * range 1, since a BitBoard only holds dead and living Cells
+	 */
+	public void setRule(Rule rule) {
+		if(!rule.isTwoStateRangeOne()) {
+			throw new IllegalArgumentException("A GameOfLife cannot run " + rule
+					+ "; use a MultiStateGameOfLife for Generations and Larger than Life rules");
+		}
+		
+		this.rule = rule;
+		this.stepperRunsRule = stepper != null && stepper.supports(rule);
+	}
+	
+	/*
+	 * Chooses how the edges of the Board meet for each following generation; the
+	 * ghost rows and columns of both BitBoards are refilled for it, and a stateful
+	 * Stepper starts over
+	 */
+	public void setTopology(Topology topology) {
+		this.topology = topology;
+		board.fillGhosts(topology);
+		nextBoard.fillGhosts(topology);
+		board.markModified();
+		nextBoard.markModified();
+	}
+	
+	/*
+	 * Returns how the edges of the Board meet (getter)
+	 */
+	public Topology getTopology() {
+		return topology;
+	}
+	
+	/*
+	 * Returns the Rule the game follows (getter)
+	 */
+	public Rule getRule() {
+		return rule;
 	}
 	
 	/*
@@ -183,6 +402,13 @@ public class GameOfLife {
 		return this.generationNumber;
 	}
 	
+	/*
+	 * Changes the generation number, for restoring a saved game (setter)
+	 */
+	void setGenNumber(int generationNumber) {
+		this.generationNumber = generationNumber;
+	}
+	
 	/*
 	 * Returns the width of the Board as an integer
 	 */
@@ -197,6 +423,31 @@ public class GameOfLife {
 		return board.getHeight();
 	}
 	
+	/*
+	 * Returns the BitBoard holding the current generation, for the classes that
+	 * read or write the packed rows directly
+	 */
+	BitBoard getBoard() {
+		return board;
+	}
+	
+	/*
+	 * Returns the BitBoard holding the generation before the current one, which stays
+	 * there until the next call to nextGen overwrites it, so a GenerationListener can
+	 * compare the two
+	 */
+	BitBoard getPreviousBoard() {
+		return nextBoard;
+	}
+	
+	/*
+	 * Returns how many nanoseconds the last call to nextGen took to compute its
+	 * generation, not counting the GenerationListeners (getter)
+	 */
+	public long getLastStepNanos() {
+		return lastStepNanos;
+	}
+	
 	public static void main(String[] args) {
 		Cell[][] test = {{new Cell(0), new Cell(1), new Cell(0), new Cell(1), new Cell(0), new Cell(1)},
 				{new Cell(1), new Cell(0), new Cell(1), new Cell(0), new Cell(1), new Cell(0)}};
@@ -209,6 +460,128 @@ public class GameOfLife {
 				System.out.println("Will be alive in the next generation: " + g.willBeAlive(i, j));
 			}
 		}
+		
+		// checks that the double-buffered nextGen allocates nothing once it is warmed up
+		GameOfLife soup = new GameOfLife(64, 64);
+		for(int x = 0; x < soup.getWidth(); x++) {
+			for(int y = 0; y < soup.getHeight(); y++) {
+				if((x * 31 + y * 17) % 7 < 3) {
+					soup.revive(x, y);
+				}
+			}
+		}
+		
+		for(int i = 0; i < 100; i++) {
+			soup.nextGen();
+		}
+		
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+		for(int i = 0; i < 100; i++) {
+			soup.nextGen();
+		}
+		long bytesAllocated = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+		
+		System.out.println("Bytes allocated by 100 calls to nextGen: " + bytesAllocated);
+		if(bytesAllocated > 0) {
+			throw new AssertionError("nextGen allocated " + bytesAllocated + " bytes");
+		}
+		
+		// checks the running counts against counting every Cell
+		soup.swapStatus(10, 10);
+		soup.kill(11, 10);
+		soup.revive(12, 10);
+		int scanned = 0;
+		for(int x = 0; x < soup.getWidth(); x++) {
+			for(int y = 0; y < soup.getHeight(); y++) {
+				if(soup.isAlive(x, y)) {
+					scanned++;
+				}
+			}
+		}
+		System.out.println("Living Cells: " + soup.aliveCount() + ", counted one by one: " + scanned
+				+ ", dead Cells: " + soup.deadCount() + ", living in row 10: " + soup.rowAliveCount(10)
+				+ ", living in the top left quarter: " + soup.aliveCount(0, 0, 32, 32));
+		if(soup.aliveCount() != scanned) {
+			throw new AssertionError("The running count is " + soup.aliveCount() + " instead of " + scanned);
+		}
+		
+		// a blinker has period 2, and advancing a billion generations skips the repeats
+		GameOfLife blinker = new GameOfLife(5, 5);
+		blinker.revive(1, 2);
+		blinker.revive(2, 2);
+		blinker.revive(3, 2);
+		System.out.println("The blinker's period: " + blinker.runUntilStable(100));
+		blinker.advance(1000000001L - blinker.getGenNumber());
+		System.out.println("At generation " + blinker.getGenNumber() + " the blinker is vertical: " + blinker.isAlive(2, 1));
+		
+		// a settled soup gives the same board by jumping as by computing every generation
+		GameOfLife jumped = new GameOfLife(48, 48);
+		GameOfLife stepped = new GameOfLife(48, 48);
+		for(int x = 0; x < 48; x++) {
+			for(int y = 0; y < 48; y++) {
+				if((x * 7 + y * 13 + x * y) % 5 < 2) {
+					jumped.revive(x, y);
+					stepped.revive(x, y);
+				}
+			}
+		}
+		jumped.setStepper(new SwarStepper());
+		stepped.setStepper(new SwarStepper());
+		jumped.advance(20000);
+		for(int i = 0; i < 20000; i++) {
+			stepped.nextGen();
+		}
+		boolean match = jumped.getBoard().hasSameCells(stepped.getBoard()) && jumped.getGenNumber() == stepped.getGenNumber();
+		System.out.println("After 20000 generations the jumped and computed boards match: " + match
+				+ ", the soup's period is " + jumped.runUntilStable(1000));
+		if(!match) {
+			throw new AssertionError("advance gave a different board than nextGen");
+		}
+		
+		// every Stepper must agree with willBeAlive when the edges wrap around
+		int[][] sizes = {{70, 40}, {64, 30}, {126, 67}};
+		for(Topology topology: Topology.values()) {
+			for(int[] size: sizes) {
+				Stepper[] steppers = {new SwarStepper(), new LutStepper(), new ActiveSetStepper(), new TiledStepper()};
+				GameOfLife expected = new GameOfLife(size[0], size[1]);
+				GameOfLife[] games = new GameOfLife[steppers.length];
+				for(int i = 0; i < games.length; i++) {
+					games[i] = new GameOfLife(size[0], size[1]);
+					games[i].setStepper(steppers[i]);
+					games[i].setTopology(topology);
+				}
+				expected.setTopology(topology);
+				
+				// a few gliders heading off every edge, and a block straddling a corner
+				for(int x = 0; x < size[0]; x++) {
+					for(int y = 0; y < size[1]; y++) {
+						boolean alive = (x * 5 + y * 3) % 11 == 0 && (x / 8 + y / 8) % 3 == 0
+								|| (x == 0 || x == size[0] - 1) && (y == 0 || y == size[1] - 1);
+						if(alive) {
+							expected.revive(x, y);
+							for(GameOfLife game: games) {
+								game.revive(x, y);
+							}
+						}
+					}
+				}
+				
+				for(int generation = 1; generation <= 150; generation++) {
+					expected.nextGen();
+					for(int i = 0; i < games.length; i++) {
+						games[i].nextGen();
+						if(!games[i].getBoard().hasSameCells(expected.getBoard()) || games[i].aliveCount() != expected.aliveCount()) {
+							throw new AssertionError(steppers[i].getClass().getName() + " differs from willBeAlive on a "
+									+ topology + " in generation " + generation);
+						}
+					}
+				}
+			}
+			System.out.println("Every Stepper matches willBeAlive on a " + topology);
+		}
 	}
 
 }
\ No newline at end of file
@@ -10,17 +10,35 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.border.EmptyBorder;
 import javax.swing.JButton;
-import javax.swing.Timer;
+import javax.swing.JSlider;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.management.JMException;
 
 /*
  * Displays generations of John Conway's Game of Life.
  * Allows a user of the program to step through one generation
- * at a time or to run the generations based on a timer.
+ * at a time or to run the generations as fast as possible.
+ * The generations are computed by a SimulationLoop on its own
+ * thread, so the window stays responsive however slow they are;
+ * the board panel and the generation label show the loop's
+ * latest Frame.
+ * A LifeMetrics listener measures every generation; the
+ * throughput label beside the generation shows how many Cells
+ * are computed per second, and the same figures are published
+ * over JMX.
+ * Every generation is also kept in a GenerationHistory; the
+ * rewind slider below the board scrubs back through them, and
+ * starting again from an earlier generation replaces the later
+ * ones.
  */
 public class GameOfLifeDisplay extends JFrame {
 
 	private JPanel contentPane;
 	private JLabel txtGeneration = new JLabel();
+	private JLabel txtThroughput = new JLabel();
+	private JSlider rewindSlider = new JSlider(0, 0, 0);
+	private boolean updatingSlider;
 
 	/**
 	 * Launch the application.
@@ -53,6 +71,17 @@ public class GameOfLifeDisplay extends JFrame {
 				{new Cell(0), new Cell(0), new Cell(0), new Cell(0), new Cell(0), new Cell(0), new Cell(0), new Cell(0)}};
 
 		GameOfLife g = new GameOfLife(glider); // call an appropriate constructor
+		SimulationLoop loop = new SimulationLoop(g);
+		LifeMetrics metrics = new LifeMetrics();
+		g.addGenerationListener(metrics);
+		try {
+			metrics.register("display");
+		} catch (JMException e) {
+			// the window works without JMX, only the MBean is missing
+			e.printStackTrace();
+		}
+		GenerationHistory history = new GenerationHistory(32, 100000, 64L << 20);
+		loop.setHistory(history);
 		
 
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -63,19 +92,34 @@ public class GameOfLifeDisplay extends JFrame {
 		setContentPane(contentPane);
 		
 		/*
-		 * creates a Timer and defines what will occur when
-		 * it is run when the user clicks the "start" button
+		 * defines what will occur each time the loop publishes a
+		 * new Frame; the loop calls this on its own thread, so the
+		 * label and the board are updated on the Event Dispatch Thread
 		 */
-		Timer timer = new Timer(1000, new ActionListener(){
+		Runnable showFrame = new Runnable(){
 
 			@Override
-			public void actionPerformed(ActionEvent arg0) {
-				// what should happen each time the Timer is fired off
-				g.nextGen();
-				txtGeneration.setText("Generation " + g.getGenNumber());
+			public void run() {
+				txtGeneration.setText("Generation " + loop.getLatestFrame().getGeneration());
+				txtThroughput.setText(String.format("%.3g cells/s", metrics.getCellsPerSecond()));
+				
+				// moves the slider without treating the move as a rewind
+				updatingSlider = true;
+				rewindSlider.setMinimum(Math.max(history.getFirstGeneration(), 0));
+				rewindSlider.setMaximum(Math.max(history.getLastGeneration(), 0));
+				rewindSlider.setValue(loop.getLatestFrame().getGeneration());
+				updatingSlider = false;
 				repaint();
 			}
 			
+		};
+		loop.setFrameListener(new Runnable(){
+
+			@Override
+			public void run() {
+				EventQueue.invokeLater(showFrame);
+			}
+			
 		});
 		
 		/*
@@ -97,12 +141,12 @@ public class GameOfLifeDisplay extends JFrame {
 				if(startStopButton.getText().equals("Start")){
 					startStopButton.setText("Stop");
 					// start the generations
-					timer.start();
+					loop.start();
 				}
 				else{
 					startStopButton.setText("Start");
 					// stop the generations
-					timer.stop();
+					loop.pause();
 				}
 				
 			}
@@ -119,10 +163,8 @@ public class GameOfLifeDisplay extends JFrame {
 
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				// generate and display the next generation
-				g.nextGen();
-				txtGeneration.setText("Generation " + g.getGenNumber());
-				repaint();
+				// generate the next generation; it is shown once its Frame is published
+				loop.step();
 			}
 			
 		});
@@ -133,14 +175,37 @@ public class GameOfLifeDisplay extends JFrame {
 		txtGeneration.setText("Generation 0");
 		buttonPanel.add(txtGeneration);
 		
+		/*
+		 * displays how many Cells are computed per second
+		 */
+		txtThroughput.setText("0 cells/s");
+		buttonPanel.add(txtThroughput);
+		
 		JPanel panel = new JPanel();
 		buttonPanel.add(panel);
+		
+		/*
+		 * adds a slider which rewinds the game to any stored
+		 * generation, pausing it first
+		 */
+		contentPane.add(rewindSlider, BorderLayout.SOUTH);
+		rewindSlider.addChangeListener(new ChangeListener(){
+
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				if(!updatingSlider){
+					startStopButton.setText("Start");
+					loop.rewind(rewindSlider.getValue());
+				}
+			}
+			
+		});
 
 		/*
 		 * adds the panel which displays the Game of Life
 		 * board. See the BoardPanel class for details.
 		 */
-		JPanel boardPanel = new BoardPanel(g);
+		JPanel boardPanel = new BoardPanel(loop);
 		contentPane.add(boardPanel, BorderLayout.CENTER);
 	}
 
@@ -0,0 +1,433 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * This class is a GenerationListener that remembers past generations of a GameOfLife
+ * in a bounded amount of memory, so the game can be rewound to any of them
+ * Every keyframeInterval generations the whole board is stored as a keyframe, and the
+ * generations in between are stored as deltas: the XOR of each long of the packed rows
+ * with the same long of the generation before, which is zero wherever nothing changed
+ * Keyframes and deltas are both compressed the same way, as runs of zero longs and
+ * runs of literal longs, with the run lengths written as variable-length integers and
+ * each literal long as a mask of its nonzero bytes followed by those bytes, so a quiet
+ * board costs a few bytes per generation
+ * The records are kept in a ring buffer with a limit on their number and their total
+ * size; when either is reached, the oldest keyframe is evicted together with the
+ * deltas that depend on it, so every generation still stored can be decoded
+ * Restoring a generation decodes the nearest keyframe at or before it and applies at
+ * most keyframeInterval - 1 deltas; recording a generation older than the newest one
+ * stored, after the game was rewound and run again, first drops the generations after
+ * it, like an undo history
+ * The methods are synchronized, so the game's thread can record while another thread
+ * asks which generations are stored
+ */
+public class GenerationHistory implements GenerationListener {
+
+	// instance data
+	private int keyframeInterval;
+	private long maxBytes;
+	private byte[][] records;
+	private int[] generations;
+	private boolean[] keyframes;
+	private int head;
+	private int size;
+	private long storedBytes;
+	private boolean forceKeyframe;
+	private int sinceKeyframe;
+
+	// the board size being recorded and the interior longs of the newest generation stored
+	private int width;
+	private int height;
+	private long[] lastWords;
+	private byte[] scratch;
+
+	/*
+	 * Constructs a GenerationHistory storing a keyframe every keyframeInterval
+	 * generations and at most maxRecords generations taking at most maxBytes bytes
+	 */
+	public GenerationHistory(int keyframeInterval, int maxRecords, long maxBytes) {
+		if(keyframeInterval < 1 || maxRecords < 2 * keyframeInterval) {
+			throw new IllegalArgumentException("A GenerationHistory needs room for at least two keyframes and their deltas");
+		}
+
+		this.keyframeInterval = keyframeInterval;
+		this.maxBytes = maxBytes;
+		this.records = new byte[maxRecords][];
+		this.generations = new int[maxRecords];
+		this.keyframes = new boolean[maxRecords];
+	}
+
+	/*
+	 * Records the generation the given game just computed
+	 */
+	public void generationComputed(GameOfLife game) {
+		record(game);
+	}
+
+	/*
+	 * Records the current generation of a game, such as its first one before any
+	 * generation is computed
+	 */
+	public synchronized void record(GameOfLife game) {
+		BitBoard board = game.getBoard();
+		int generation = game.getGenNumber();
+		if(board.getWidth() != width || board.getHeight() != height) {
+			clear();
+			this.width = board.getWidth();
+			this.height = board.getHeight();
+			this.lastWords = new long[height * board.getWordsPerRow()];
+			this.scratch = new byte[lastWords.length * (Long.BYTES + 3) + 16];
+		}
+
+		// a rewound game that runs again replaces the generations after it
+		if(size > 0 && generation <= generations[slot(size - 1)]) {
+			while(size > 0 && generations[slot(size - 1)] >= generation) {
+				size--;
+				storedBytes -= records[slot(size)].length;
+				records[slot(size)] = null;
+			}
+			forceKeyframe = true;
+		}
+
+		boolean keyframe = size == 0 || forceKeyframe || sinceKeyframe + 1 >= keyframeInterval;
+		int length = encode(board, keyframe);
+		byte[] record = Arrays.copyOf(scratch, length);
+
+		if(size == records.length) {
+			evictOldestKeyframe();
+		}
+		int slot = slot(size);
+		records[slot] = record;
+		generations[slot] = generation;
+		keyframes[slot] = keyframe;
+		size++;
+		storedBytes += length;
+		sinceKeyframe = keyframe ? 0 : sinceKeyframe + 1;
+		forceKeyframe = false;
+
+		while(storedBytes > maxBytes) {
+			if(!evictOldestKeyframe()) {
+				// the only keyframe left is still needed, so the next record starts another
+				forceKeyframe = true;
+				break;
+			}
+		}
+	}
+
+	/*
+	 * Returns the index in the ring buffer of the record at the given position, counted
+	 * from the oldest
+	 */
+	private int slot(int position) {
+		return (head + position) % records.length;
+	}
+
+	/*
+	 * Evicts the oldest keyframe and the deltas after it, as long as another keyframe
+	 * follows them; returns whether anything was evicted
+	 */
+	private boolean evictOldestKeyframe() {
+		int next = 1;
+		while(next < size && !keyframes[slot(next)]) {
+			next++;
+		}
+		if(next == size) {
+			return false;
+		}
+
+		for(int i = 0; i < next; i++) {
+			storedBytes -= records[head].length;
+			records[head] = null;
+			head = (head + 1) % records.length;
+		}
+		size -= next;
+		return true;
+	}
+
+	/*
+	 * Writes the interior longs of the board, XORed with the newest stored generation
+	 * for a delta, into scratch as runs of zeros and literals, updating lastWords to the
+	 * board, and returns the number of bytes written
+	 */
+	private int encode(BitBoard board, boolean keyframe) {
+		long[] words = board.getWords();
+		long[] interiorMask = board.getInteriorMask();
+		int wordsPerRow = board.getWordsPerRow();
+		int length = 0;
+		int position = 0;
+
+		while(position < lastWords.length) {
+			int zeros = 0;
+			while(position + zeros < lastWords.length && xorAt(words, interiorMask, wordsPerRow, position + zeros, keyframe) == 0) {
+				if(keyframe) {
+					lastWords[position + zeros] = 0;
+				}
+				zeros++;
+			}
+			int literalStart = position + zeros;
+			int literals = 0;
+			while(literalStart + literals < lastWords.length
+					&& xorAt(words, interiorMask, wordsPerRow, literalStart + literals, keyframe) != 0) {
+				literals++;
+			}
+
+			length = writeVarint(length, zeros);
+			length = writeVarint(length, literals);
+			for(int i = literalStart; i < literalStart + literals; i++) {
+				long value = xorAt(words, interiorMask, wordsPerRow, i, keyframe);
+				lastWords[i] = words[wordsPerRow + i] & interiorMask[i % wordsPerRow];
+
+				// a mask of the long's nonzero bytes, followed by just those bytes
+				int maskIndex = length++;
+				int mask = 0;
+				for(int b = 0; b < Long.BYTES; b++) {
+					byte part = (byte) (value >>> (8 * b));
+					if(part != 0) {
+						mask |= 1 << b;
+						scratch[length++] = part;
+					}
+				}
+				scratch[maskIndex] = (byte) mask;
+			}
+			position = literalStart + literals;
+		}
+
+		return length;
+	}
+
+	/*
+	 * Returns interior long number position of the board, XORed with the same long of
+	 * the newest stored generation unless it is for a keyframe; the interior rows are
+	 * contiguous in the packed array, starting after the ghost row
+	 */
+	private long xorAt(long[] words, long[] interiorMask, int wordsPerRow, int position, boolean keyframe) {
+		long word = words[wordsPerRow + position] & interiorMask[position % wordsPerRow];
+		return keyframe ? word : word ^ lastWords[position];
+	}
+
+	/*
+	 * Writes an int into scratch seven bits at a time and returns the new length
+	 */
+	private int writeVarint(int length, int value) {
+		while((value & ~0x7F) != 0) {
+			scratch[length++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		scratch[length++] = (byte) value;
+		return length;
+	}
+
+	/*
+	 * Applies a record to the interior longs of a board: a keyframe replaces them and a
+	 * delta is XORed into them
+	 */
+	private static void decode(byte[] record, BitBoard board, boolean keyframe) {
+		long[] words = board.getWords();
+		int wordsPerRow = board.getWordsPerRow();
+		int interior = board.getHeight() * wordsPerRow;
+		int position = 0;
+		int index = 0;
+
+		while(index < record.length) {
+			int zeros = 0;
+			for(int shift = 0; ; shift += 7) {
+				byte b = record[index++];
+				zeros |= (b & 0x7F) << shift;
+				if(b >= 0) {
+					break;
+				}
+			}
+			int literals = 0;
+			for(int shift = 0; ; shift += 7) {
+				byte b = record[index++];
+				literals |= (b & 0x7F) << shift;
+				if(b >= 0) {
+					break;
+				}
+			}
+
+			if(keyframe) {
+				Arrays.fill(words, wordsPerRow + position, wordsPerRow + position + zeros, 0L);
+			}
+			position += zeros;
+			for(int i = 0; i < literals; i++, position++) {
+				long value = 0;
+				int mask = record[index++];
+				for(int b = 0; b < Long.BYTES; b++) {
+					if((mask & (1 << b)) != 0) {
+						value |= (record[index++] & 0xFFL) << (8 * b);
+					}
+				}
+				words[wordsPerRow + position] = keyframe ? value : words[wordsPerRow + position] ^ value;
+			}
+		}
+
+		if(keyframe && position < interior) {
+			Arrays.fill(words, wordsPerRow + position, wordsPerRow + interior, 0L);
+		}
+	}
+
+	/*
+	 * Puts the given stored generation back into the game, decoding the nearest keyframe
+	 * before it and the deltas after that; the game then goes on from that generation
+	 */
+	public synchronized void restore(GameOfLife game, int generation) {
+		BitBoard board = game.getBoard();
+		if(board.getWidth() != width || board.getHeight() != height) {
+			throw new IllegalArgumentException("The history is of a " + width + "x" + height + " board");
+		}
+
+		int position = find(generation);
+		if(position < 0) {
+			throw new IllegalArgumentException("Generation " + generation + " is not stored");
+		}
+
+		int keyframe = position;
+		while(!keyframes[slot(keyframe)]) {
+			keyframe--;
+		}
+		for(int i = keyframe; i <= position; i++) {
+			decode(records[slot(i)], board, i == keyframe);
+		}
+
+		board.recountPopulations();
+		board.markModified();
+		game.setGenNumber(generation);
+	}
+
+	/*
+	 * Returns the position of the record of the given generation, counted from the
+	 * oldest, or -1 if it is not stored; the generations increase along the ring
+	 */
+	private int find(int generation) {
+		int low = 0;
+		int high = size - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			int found = generations[slot(middle)];
+			if(found < generation) {
+				low = middle + 1;
+			}
+			else if(found > generation) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+
+		return -1;
+	}
+
+	/*
+	 * Checks if the given generation is stored and can be restored
+	 */
+	public synchronized boolean contains(int generation) {
+		return find(generation) >= 0;
+	}
+
+	/*
+	 * Returns the oldest generation stored, or -1 if there is none
+	 */
+	public synchronized int getFirstGeneration() {
+		return (size == 0) ? -1 : generations[head];
+	}
+
+	/*
+	 * Returns the newest generation stored, or -1 if there is none
+	 */
+	public synchronized int getLastGeneration() {
+		return (size == 0) ? -1 : generations[slot(size - 1)];
+	}
+
+	/*
+	 * Returns how many generations are stored
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/*
+	 * Returns how many bytes the stored records take
+	 */
+	public synchronized long getStoredBytes() {
+		return storedBytes;
+	}
+
+	/*
+	 * Forgets every stored generation
+	 */
+	public synchronized void clear() {
+		Arrays.fill(records, null);
+		head = 0;
+		size = 0;
+		storedBytes = 0;
+		sinceKeyframe = 0;
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(24);
+		GameOfLife game = LifeBenchmark.randomGame(256, 30, 24);
+		game.setStepper(new ActiveSetStepper());
+		GenerationHistory history = new GenerationHistory(32, 4096, 64L << 20);
+		history.record(game);
+		game.addGenerationListener(history);
+
+		// keeps full copies of every generation to check the history against
+		BitBoard[] copies = new BitBoard[1001];
+		copies[0] = new BitBoard(256, 256);
+		copies[0].copyFrom(game.getBoard());
+		for(int generation = 1; generation <= 1000; generation++) {
+			game.nextGen();
+			copies[generation] = new BitBoard(256, 256);
+			copies[generation].copyFrom(game.getBoard());
+		}
+
+		long fullBytes = 1001L * 256 * game.getBoard().getWordsPerRow() * Long.BYTES;
+		System.out.println(String.format("1001 generations of 256x256 take %d bytes instead of %d (%.1f%%)",
+				history.getStoredBytes(), fullBytes, 100.0 * history.getStoredBytes() / fullBytes));
+
+		GameOfLife replay = new GameOfLife(256, 256);
+		for(int i = 0; i < 300; i++) {
+			int generation = random.nextInt(1001);
+			history.restore(replay, generation);
+			if(!replay.getBoard().hasSameCells(copies[generation]) || replay.aliveCount() != copies[generation].aliveCount()
+					|| replay.getGenNumber() != generation) {
+				throw new AssertionError("Generation " + generation + " was not restored");
+			}
+		}
+
+		// rewinding and running again replaces the later generations
+		history.restore(game, 500);
+		for(int i = 0; i < 10; i++) {
+			game.nextGen();
+		}
+		history.restore(replay, 505);
+		if(history.getLastGeneration() != 510 || !replay.getBoard().hasSameCells(copies[505])) {
+			throw new AssertionError("The rerun from generation 500 was not recorded in place of the old one");
+		}
+		System.out.println("300 random restores and a rerun from generation 500 match the full copies");
+
+		// a small budget evicts whole keyframe groups from the oldest, and every generation left decodes
+		GameOfLife busy = LifeBenchmark.randomGame(256, 30, 24);
+		busy.setStepper(new SwarStepper());
+		GenerationHistory bounded = new GenerationHistory(16, 4096, 200000);
+		bounded.record(busy);
+		busy.addGenerationListener(bounded);
+		for(int generation = 1; generation <= 1000; generation++) {
+			busy.nextGen();
+		}
+		if(bounded.getStoredBytes() > 200000 || bounded.contains(0) || bounded.getLastGeneration() != 1000) {
+			throw new AssertionError("The bounded history kept " + bounded.getStoredBytes() + " bytes from generation "
+					+ bounded.getFirstGeneration());
+		}
+		for(int generation = bounded.getFirstGeneration(); generation <= 1000; generation++) {
+			bounded.restore(replay, generation);
+			if(!replay.getBoard().hasSameCells(copies[generation])) {
+				throw new AssertionError("Generation " + generation + " of the bounded history was not restored");
+			}
+		}
+		System.out.println("The bounded history keeps generations " + bounded.getFirstGeneration() + " to "
+				+ bounded.getLastGeneration() + " in " + bounded.getStoredBytes() + " bytes");
+	}
+}
@@ -0,0 +1,13 @@
+/*
+ * This interface is implemented by the classes that want to hear about every
+ * generation a GameOfLife object computes, such as a Checkpointer
+ * The listener is called on the thread that called nextGen, right after the new
+ * generation became current, so it should hand any slow work to another thread
+ */
+public interface GenerationListener {
+
+	/*
+	 * Called after the given GameOfLife has advanced to its next generation
+	 */
+	void generationComputed(GameOfLife game);
+}
@@ -0,0 +1,560 @@
+import java.util.Random;
+
+/*
+ * This class is a second engine for John Conway's Game of Life, built on Bill Gosper's
+ * Hashlife algorithm, for huge, sparse and long-lived patterns
+ * The universe is a quadtree of Nodes whose corners are Nodes one level smaller; a Node
+ * of level k covers a square of 2^k by 2^k Cells, and a level 0 Node is a single Cell
+ * Every Node is hash-consed, so two regions with the same contents share one Node, and
+ * each Node remembers the center of itself advanced 2^j generations once that has been
+ * computed, which lets a repeating pattern be advanced billions of generations at once
+ * The universe grows whenever the pattern needs room, so it is effectively unbounded,
+ * and Cell coordinates are longs that may be negative
+ * A HashLife object can be constructed either empty or from the current generation
+ * of a GameOfLife object, in which case the GameOfLife's (0, 0) stays at (0, 0)
+ * This class contains methods to: check if a Cell is alive; set, revive or kill a Cell;
+ * count the living Cells; advance one generation, 2^k generations or any number of
+ * generations; and find the generation number as a long
+ */
+public class HashLife {
+
+	/*
+	 * A square region of Cells, made of four Nodes one level smaller
+	 * Nodes are never changed once they are built, except for the remembered result
+	 */
+	static final class Node {
+		final int level;
+		final Node nw;
+		final Node ne;
+		final Node sw;
+		final Node se;
+		final long population;
+		final int id;
+
+		// the center of this Node advanced 2^resultStep generations, once computed
+		Node result;
+		int resultStep;
+
+		// the next Node in the same bucket of the hash table
+		Node next;
+
+		Node(int level, Node nw, Node ne, Node sw, Node se, long population, int id) {
+			this.level = level;
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			this.population = population;
+			this.id = id;
+		}
+	}
+
+	// the two level 0 Nodes
+	private static final Node DEAD = new Node(0, null, null, null, null, 0, 0);
+	private static final Node ALIVE = new Node(0, null, null, null, null, 1, 1);
+
+	// the hash table of every Node that has been built, chained through Node.next
+	private Node[] table;
+	private int tableSize;
+	private int nextId;
+	private int maximumNodes;
+
+	// the empty Node of each level, built as needed
+	private Node[] emptyNodes;
+
+	// instance data
+	private Node root;
+	private long generationNumber;
+
+	/*
+	 * Constructs an empty HashLife universe that keeps at most about 4 million Nodes
+	 * before discarding the ones the current generation no longer uses
+	 */
+	public HashLife() {
+		this(1 << 22);
+	}
+
+	/*
+	 * Constructs an empty HashLife universe that keeps at most about maximumNodes Nodes
+	 * before discarding the ones the current generation no longer uses
+	 */
+	public HashLife(int maximumNodes) {
+		this.table = new Node[1 << 16];
+		this.tableSize = 0;
+		this.nextId = 2;
+		this.maximumNodes = maximumNodes;
+		this.emptyNodes = new Node[64];
+		this.emptyNodes[0] = DEAD;
+		this.root = emptyNode(3);
+		this.generationNumber = 0;
+	}
+
+	/*
+	 * Constructs a HashLife universe holding the current generation of a GameOfLife,
+	 * continuing from its generation number; HashLife only runs Conway's rules
+	 */
+	public HashLife(GameOfLife game) {
+		this();
+
+		if(!game.getRule().isConway()) {
+			throw new IllegalArgumentException("HashLife only runs B3/S23, not " + game.getRule());
+		}
+
+		for(int y = 0; y < game.getHeight(); y++) {
+			for(int x = 0; x < game.getWidth(); x++) {
+				if(game.isAlive(x, y)) {
+					setCell(x, y, true);
+				}
+			}
+		}
+
+		this.generationNumber = game.getGenNumber();
+	}
+
+	/*
+	 * Checks to see if the Cell at coordinates (x, y) is alive
+	 */
+	public boolean isAlive(long x, long y) {
+		long half = 1L << (root.level - 1);
+		if(x < -half || x >= half || y < -half || y >= half) {
+			return false;
+		}
+
+		Node node = root;
+		x += half;
+		y += half;
+
+		while(node.level > 0) {
+			if(node.population == 0) {
+				return false;
+			}
+
+			half = 1L << (node.level - 1);
+			if(y < half) {
+				node = (x < half) ? node.nw : node.ne;
+			}
+			else {
+				node = (x < half) ? node.sw : node.se;
+			}
+			x &= half - 1;
+			y &= half - 1;
+		}
+
+		return node == ALIVE;
+	}
+
+	/*
+	 * Sets the Cell at coordinates (x, y) to alive or dead, growing the universe if needed
+	 */
+	public void setCell(long x, long y, boolean alive) {
+		while(!contains(x, y)) {
+			root = expand(root);
+		}
+
+		long half = 1L << (root.level - 1);
+		root = set(root, x + half, y + half, alive);
+	}
+
+	/*
+	 * Sets the Cell at coordinates (x, y) to alive
+	 */
+	public void revive(long x, long y) {
+		setCell(x, y, true);
+	}
+
+	/*
+	 * Sets the Cell at coordinates (x, y) to dead
+	 */
+	public void kill(long x, long y) {
+		setCell(x, y, false);
+	}
+
+	/*
+	 * Counts how many total Cells are alive; every Node knows its own population,
+	 * so no Cells are visited
+	 */
+	public long aliveCount() {
+		return root.population;
+	}
+
+	/*
+	 * Advances from one generation to the next
+	 */
+	public void nextGen() {
+		step(0);
+	}
+
+	/*
+	 * Advances the universe by 2^k generations in a single call
+	 */
+	public void step(int k) {
+		if(k < 0 || k > 60) {
+			throw new IllegalArgumentException("Cannot advance 2^" + k + " generations");
+		}
+
+		// the pattern must sit in the middle quarter, and the universe must be big
+		// enough that light from the edge cannot reach the middle half in 2^k generations
+		while(root.level < k + 3 || !isPadded(root)) {
+			root = expand(root);
+		}
+
+		root = successor(root, k);
+		generationNumber += 1L << k;
+
+		if(tableSize > maximumNodes) {
+			collectGarbage();
+		}
+	}
+
+	/*
+	 * Advances the universe by any number of generations, as a sum of powers of two
+	 */
+	public void advance(long generations) {
+		if(generations < 0) {
+			throw new IllegalArgumentException("Cannot advance a negative number of generations");
+		}
+
+		for(int k = 0; generations != 0; k++, generations >>>= 1) {
+			if((generations & 1) != 0) {
+				step(k);
+			}
+		}
+	}
+
+	/*
+	 * Returns the generation number the universe is currently on as a long
+	 */
+	public long getGenNumber() {
+		return generationNumber;
+	}
+
+	/*
+	 * Returns the number of Nodes currently kept in the hash table
+	 */
+	public int getNodeCount() {
+		return tableSize;
+	}
+
+	/*
+	 * Checks if the root covers the Cell at coordinates (x, y)
+	 */
+	private boolean contains(long x, long y) {
+		long half = 1L << (root.level - 1);
+		return (x >= -half && x < half && y >= -half && y < half);
+	}
+
+	/*
+	 * Returns a copy of node with the Cell at (x, y), measured from its top left corner,
+	 * set to alive or dead
+	 */
+	private Node set(Node node, long x, long y, boolean alive) {
+		if(node.level == 0) {
+			return alive ? ALIVE : DEAD;
+		}
+
+		long half = 1L << (node.level - 1);
+		long innerX = x & (half - 1);
+		long innerY = y & (half - 1);
+
+		if(y < half) {
+			if(x < half) {
+				return join(set(node.nw, innerX, innerY, alive), node.ne, node.sw, node.se);
+			}
+			return join(node.nw, set(node.ne, innerX, innerY, alive), node.sw, node.se);
+		}
+		if(x < half) {
+			return join(node.nw, node.ne, set(node.sw, innerX, innerY, alive), node.se);
+		}
+		return join(node.nw, node.ne, node.sw, set(node.se, innerX, innerY, alive));
+	}
+
+	/*
+	 * Returns the one Node made of the four given corners, building it only if it
+	 * does not already exist
+	 */
+	private Node join(Node nw, Node ne, Node sw, Node se) {
+		int hash = hash(nw, ne, sw, se);
+		int bucket = hash & (table.length - 1);
+
+		for(Node node = table[bucket]; node != null; node = node.next) {
+			if(node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) {
+				return node;
+			}
+		}
+
+		Node node = new Node(nw.level + 1, nw, ne, sw, se,
+				nw.population + ne.population + sw.population + se.population, nextId++);
+		insert(node, hash);
+		return node;
+	}
+
+	/*
+	 * Adds a Node to the hash table, doubling the table when it gets crowded
+	 */
+	private void insert(Node node, int hash) {
+		if(tableSize >= table.length - (table.length >>> 2)) {
+			Node[] oldTable = table;
+			table = new Node[oldTable.length * 2];
+			for(Node chain: oldTable) {
+				while(chain != null) {
+					Node following = chain.next;
+					int bucket = hash(chain.nw, chain.ne, chain.sw, chain.se) & (table.length - 1);
+					chain.next = table[bucket];
+					table[bucket] = chain;
+					chain = following;
+				}
+			}
+		}
+
+		int bucket = hash & (table.length - 1);
+		node.next = table[bucket];
+		table[bucket] = node;
+		tableSize++;
+	}
+
+	/*
+	 * Mixes the ids of four corner Nodes into a hash code
+	 */
+	private static int hash(Node nw, Node ne, Node sw, Node se) {
+		long h = nw.id * 0x9E3779B97F4A7C15L;
+		h = (h ^ ne.id) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ sw.id) * 0x94D049BB133111EBL;
+		h = (h ^ se.id) * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/*
+	 * Returns the empty Node of the given level
+	 */
+	private Node emptyNode(int level) {
+		if(emptyNodes[level] == null) {
+			Node smaller = emptyNode(level - 1);
+			emptyNodes[level] = join(smaller, smaller, smaller, smaller);
+		}
+
+		return emptyNodes[level];
+	}
+
+	/*
+	 * Returns a Node one level bigger with node in its middle and empty space around it
+	 */
+	private Node expand(Node node) {
+		Node border = emptyNode(node.level - 1);
+		return join(join(border, border, border, node.nw),
+				join(border, border, node.ne, border),
+				join(border, node.sw, border, border),
+				join(node.se, border, border, border));
+	}
+
+	/*
+	 * Checks if every living Cell of node is inside its middle quarter
+	 */
+	private static boolean isPadded(Node node) {
+		return node.nw.population == node.nw.se.se.population
+				&& node.ne.population == node.ne.sw.sw.population
+				&& node.sw.population == node.sw.ne.ne.population
+				&& node.se.population == node.se.nw.nw.population;
+	}
+
+	/*
+	 * Returns the Node one level smaller at the center of node
+	 */
+	private Node center(Node node) {
+		return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+	}
+
+	/*
+	 * Returns the Node of the same level centered on the line between west and east
+	 */
+	private Node centerHorizontal(Node west, Node east) {
+		return join(west.ne, east.nw, west.se, east.sw);
+	}
+
+	/*
+	 * Returns the Node of the same level centered on the line between north and south
+	 */
+	private Node centerVertical(Node north, Node south) {
+		return join(north.sw, north.se, south.nw, south.ne);
+	}
+
+	/*
+	 * Returns the center of node, one level smaller, advanced 2^j generations, where
+	 * j is at most node.level - 2; results are remembered on the Node
+	 */
+	private Node successor(Node node, int j) {
+		if(node.population == 0) {
+			return emptyNode(node.level - 1);
+		}
+		if(node.result != null && node.resultStep == j) {
+			return node.result;
+		}
+
+		Node result;
+		if(node.level == 2) {
+			result = baseSuccessor(node);
+		}
+		else {
+			Node n00 = node.nw;
+			Node n01 = centerHorizontal(node.nw, node.ne);
+			Node n02 = node.ne;
+			Node n10 = centerVertical(node.nw, node.sw);
+			Node n11 = center(node);
+			Node n12 = centerVertical(node.ne, node.se);
+			Node n20 = node.sw;
+			Node n21 = centerHorizontal(node.sw, node.se);
+			Node n22 = node.se;
+
+			if(j == node.level - 2) {
+				// advances 2^(level - 3) generations twice
+				n00 = successor(n00, j - 1);
+				n01 = successor(n01, j - 1);
+				n02 = successor(n02, j - 1);
+				n10 = successor(n10, j - 1);
+				n11 = successor(n11, j - 1);
+				n12 = successor(n12, j - 1);
+				n20 = successor(n20, j - 1);
+				n21 = successor(n21, j - 1);
+				n22 = successor(n22, j - 1);
+			}
+			else {
+				// takes the centers without advancing, then advances 2^j generations once
+				n00 = center(n00);
+				n01 = center(n01);
+				n02 = center(n02);
+				n10 = center(n10);
+				n11 = center(n11);
+				n12 = center(n12);
+				n20 = center(n20);
+				n21 = center(n21);
+				n22 = center(n22);
+			}
+
+			int innerStep = (j == node.level - 2) ? j - 1 : j;
+			result = join(successor(join(n00, n01, n10, n11), innerStep),
+					successor(join(n01, n02, n11, n12), innerStep),
+					successor(join(n10, n11, n20, n21), innerStep),
+					successor(join(n11, n12, n21, n22), innerStep));
+		}
+
+		node.result = result;
+		node.resultStep = j;
+		return result;
+	}
+
+	/*
+	 * Returns the center 2x2 of a 4x4 Node advanced one generation
+	 */
+	private Node baseSuccessor(Node node) {
+		// packs the 16 Cells into bits, row by row from the top left
+		int cells = 0;
+		for(int y = 0; y < 4; y++) {
+			for(int x = 0; x < 4; x++) {
+				Node quadrant = (y < 2) ? ((x < 2) ? node.nw : node.ne) : ((x < 2) ? node.sw : node.se);
+				Node leaf = ((y & 1) == 0) ? (((x & 1) == 0) ? quadrant.nw : quadrant.ne)
+						: (((x & 1) == 0) ? quadrant.sw : quadrant.se);
+				if(leaf == ALIVE) {
+					cells |= 1 << (y * 4 + x);
+				}
+			}
+		}
+
+		return join(nextCell(cells, 1, 1), nextCell(cells, 2, 1), nextCell(cells, 1, 2), nextCell(cells, 2, 2));
+	}
+
+	/*
+	 * Returns the level 0 Node for the next state of Cell (x, y) of a packed 4x4 square
+	 */
+	private static Node nextCell(int cells, int x, int y) {
+		int neighbors = 0;
+		for(int j = y - 1; j <= y + 1; j++) {
+			for(int i = x - 1; i <= x + 1; i++) {
+				if(!(i == x && j == y)) {
+					neighbors += (cells >>> (j * 4 + i)) & 1;
+				}
+			}
+		}
+
+		boolean alive = ((cells >>> (y * 4 + x)) & 1) != 0;
+		return (neighbors == 3 || alive && neighbors == 2) ? ALIVE : DEAD;
+	}
+
+	/*
+	 * Rebuilds the hash table with only the Nodes the current generation uses,
+	 * forgetting every remembered result
+	 */
+	private void collectGarbage() {
+		table = new Node[table.length];
+		tableSize = 0;
+		emptyNodes = new Node[64];
+		emptyNodes[0] = DEAD;
+		keep(root);
+	}
+
+	/*
+	 * Puts node and all the Nodes inside it back into the hash table
+	 */
+	private void keep(Node node) {
+		if(node.level == 0) {
+			return;
+		}
+
+		int hash = hash(node.nw, node.ne, node.sw, node.se);
+		for(Node kept = table[hash & (table.length - 1)]; kept != null; kept = kept.next) {
+			if(kept == node) {
+				return;
+			}
+		}
+
+		node.result = null;
+		keep(node.nw);
+		keep(node.ne);
+		keep(node.sw);
+		keep(node.se);
+		insert(node, hash);
+	}
+
+	public static void main(String[] args) {
+		// compares HashLife with GameOfLife on a soup far enough from the board's edges
+		Random random = new Random(11);
+		GameOfLife game = new GameOfLife(256, 256);
+		for(int x = 112; x < 144; x++) {
+			for(int y = 112; y < 144; y++) {
+				if(random.nextBoolean()) {
+					game.revive(x, y);
+				}
+			}
+		}
+
+		HashLife life = new HashLife(game);
+		game.setStepper(new SwarStepper());
+		for(int generation = 0; generation < 64; generation++) {
+			game.nextGen();
+		}
+		life.advance(64);
+
+		for(int x = 0; x < game.getWidth(); x++) {
+			for(int y = 0; y < game.getHeight(); y++) {
+				if(game.isAlive(x, y) != life.isAlive(x, y)) {
+					throw new AssertionError("HashLife and GameOfLife differ at (" + x + ", " + y + ")");
+				}
+			}
+		}
+		System.out.println("After " + life.getGenNumber() + " generations both engines have "
+				+ life.aliveCount() + " living Cells");
+
+		// a glider moves one Cell diagonally every 4 generations, for ever
+		HashLife glider = new HashLife();
+		glider.revive(1, 0);
+		glider.revive(2, 1);
+		glider.revive(0, 2);
+		glider.revive(1, 2);
+		glider.revive(2, 2);
+		glider.step(40);
+
+		long moved = (1L << 40) / 4;
+		System.out.println("After 2^40 generations the glider has " + glider.aliveCount()
+				+ " Cells and is at its expected place: " + (glider.isAlive(1 + moved, moved)
+				&& glider.isAlive(2 + moved, 1 + moved) && glider.isAlive(moved, 2 + moved)));
+		System.out.println("Nodes in the hash table: " + glider.getNodeCount());
+	}
+}
@@ -0,0 +1,203 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * This class records a distribution of non-negative long values, such as the number
+ * of nanoseconds each generation took, in the style of an HdrHistogram: every value is
+ * counted in a bucket whose width grows with the value, so any value up to
+ * Long.MAX_VALUE is kept to within 1 part in 128 using a fixed array of counts
+ * Values below 256 get a bucket each; above that, every power of two is split into
+ * 128 equal buckets, found from the value's leading zeros and its next 7 bits, so
+ * recording a value is a few shifts and one increment and never allocates
+ * Percentiles are read back by walking the counts, and two LatencyHistograms can be
+ * added together, for example to combine the ones recorded on several threads
+ * A LatencyHistogram is not thread-safe; its owner must lock around it if it is read
+ * while it is being recorded to
+ */
+public class LatencyHistogram {
+
+	// every power of two above 2 * SUB_BUCKETS is split into SUB_BUCKETS buckets
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// instance data
+	private long[] counts = new long[(64 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+	private long count;
+	private long min = Long.MAX_VALUE;
+	private long max;
+	private double sum;
+
+	/*
+	 * Returns the bucket a value is counted in; a value below 2 * SUB_BUCKETS is its
+	 * own bucket, and a larger one keeps its top SUB_BUCKET_BITS + 1 bits
+	 */
+	private static int bucketOf(long value) {
+		int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/*
+	 * Returns the smallest value counted in a bucket
+	 */
+	private static long lowestIn(int bucket) {
+		int shift = Math.max(0, bucket / SUB_BUCKETS - 1);
+		return (long) (bucket - shift * SUB_BUCKETS) << shift;
+	}
+
+	/*
+	 * Returns the largest value counted in a bucket
+	 */
+	private static long highestIn(int bucket) {
+		int shift = Math.max(0, bucket / SUB_BUCKETS - 1);
+		return lowestIn(bucket) + (1L << shift) - 1;
+	}
+
+	/*
+	 * Counts one more occurrence of a value
+	 */
+	public void record(long value) {
+		if(value < 0) {
+			throw new IllegalArgumentException("A LatencyHistogram cannot record the negative value " + value);
+		}
+
+		counts[bucketOf(value)]++;
+		count++;
+		sum += value;
+		if(value < min) {
+			min = value;
+		}
+		if(value > max) {
+			max = value;
+		}
+	}
+
+	/*
+	 * Adds every value recorded in another LatencyHistogram to this one
+	 */
+	public void add(LatencyHistogram other) {
+		for(int bucket = 0; bucket < counts.length; bucket++) {
+			counts[bucket] += other.counts[bucket];
+		}
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/*
+	 * Forgets every value recorded so far
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0L);
+		count = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	/*
+	 * Returns a value that at least the given percentage of the recorded values are at
+	 * or below, accurate to the width of its bucket; 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if(percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("A percentile must be between 0 and 100, not " + percentile);
+		}
+		if(count == 0) {
+			return 0;
+		}
+
+		long wanted = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for(int bucket = 0; bucket < counts.length; bucket++) {
+			seen += counts[bucket];
+			if(seen >= wanted) {
+				return Math.min(highestIn(bucket), max);
+			}
+		}
+
+		return max;
+	}
+
+	/*
+	 * Returns how many values were recorded (getter)
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/*
+	 * Returns the smallest value recorded, or 0 if nothing was recorded
+	 */
+	public long getMin() {
+		return (count == 0) ? 0 : min;
+	}
+
+	/*
+	 * Returns the largest value recorded, or 0 if nothing was recorded
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/*
+	 * Returns the mean of the values recorded, or 0 if nothing was recorded
+	 */
+	public double getMean() {
+		return (count == 0) ? 0 : sum / count;
+	}
+
+	/*
+	 * Returns the count, mean and a few percentiles as a single line of text
+	 */
+	public String toString() {
+		return String.format("count %d, mean %.1f, min %d, p50 %d, p90 %d, p99 %d, p99.9 %d, max %d", count, getMean(),
+				getMin(), getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99),
+				getValueAtPercentile(99.9), getMax());
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(19);
+
+		// every value must fall in a bucket that holds it and is no wider than 1/128 of it
+		for(int i = 0; i < 1000000; i++) {
+			long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+			int bucket = bucketOf(value);
+			long lowest = lowestIn(bucket);
+			long highest = highestIn(bucket);
+			if(value < lowest || value > highest || (highest - lowest) * SUB_BUCKETS > Math.max(value, SUB_BUCKETS)) {
+				throw new AssertionError(value + " was counted in the bucket from " + lowest + " to " + highest);
+			}
+		}
+
+		// the percentiles of a log-normal spread of latencies must be within 1% of the exact ones
+		LatencyHistogram histogram = new LatencyHistogram();
+		LatencyHistogram firstHalf = new LatencyHistogram();
+		LatencyHistogram secondHalf = new LatencyHistogram();
+		long[] values = new long[200000];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.exp(10 + 2 * random.nextGaussian());
+			histogram.record(values[i]);
+			(i % 2 == 0 ? firstHalf : secondHalf).record(values[i]);
+		}
+		Arrays.sort(values);
+
+		firstHalf.add(secondHalf);
+		double[] percentiles = {0, 1, 25, 50, 90, 99, 99.9, 99.99, 100};
+		for(double percentile: percentiles) {
+			long exact = values[Math.max(0, (int) Math.ceil(percentile / 100 * values.length) - 1)];
+			long recorded = histogram.getValueAtPercentile(percentile);
+			if(Math.abs(recorded - exact) > exact / SUB_BUCKETS + 1) {
+				throw new AssertionError("p" + percentile + " is " + recorded + " instead of " + exact);
+			}
+			if(firstHalf.getValueAtPercentile(percentile) != recorded) {
+				throw new AssertionError("The added halves give a different p" + percentile);
+			}
+		}
+		if(histogram.getMax() != values[values.length - 1] || histogram.getMin() != values[0]) {
+			throw new AssertionError("The minimum or maximum was lost");
+		}
+
+		System.out.println(histogram);
+	}
+}
@@ -0,0 +1,328 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/*
+ * This class measures the hot paths of the Game of Life classes so that a slowdown
+ * shows up before it reaches a long run: GameOfLife.nextGen with every Stepper,
+ * countLivingNeighbors, aliveCount, Board.clear and BoardPanel.paintComponent drawn
+ * onto an offscreen image
+ * Every measurement runs on square boards from 64x64 up to a maximum side length
+ * (8192 by default) at several densities of living Cells, first warming up the code
+ * and then timing repeated calls until a minimum amount of time has passed
+ * Each line reports the time per call, the Cells handled per second, and the bytes
+ * allocated per call by the measuring thread
+ * Usage: java LifeBenchmark [maximum side length] [milliseconds per measurement]
+ * This quick harness needs no build; the same Operations are measured under JMH, with
+ * forked JVMs, Blackholes and the GC profiler, by jmh/benchmarks/LifeBenchmarks.java,
+ * built by mvn package into target/benchmarks.jar
+ */
+public class LifeBenchmark {
+
+	// the densities of living Cells, in percent, that every board is seeded with
+	private static final int[] DENSITIES = {5, 25, 50};
+
+	// the Steppers nextGen is measured with, where "cell" is the per-Cell path
+	private static final String[] ENGINES = {"cell", "swar", "parallel", "activeset", "tiled", "lut"};
+
+	// the number of Cells countLivingNeighbors is called on per Operation
+	private static final int NEIGHBOR_SAMPLES = 1 << 16;
+
+	// the largest Board of GamePiece objects that is measured
+	private static final int MAXIMUM_BOARD_SIZE = 4096;
+
+	// results are added up here so the measured work cannot be optimized away
+	private static volatile long sink;
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	// instance data
+	private long measureNanos;
+
+	/*
+	 * Constructs a LifeBenchmark that spends at least the given number of milliseconds
+	 * on every measurement
+	 */
+	public LifeBenchmark(long measureMillis) {
+		this.measureNanos = measureMillis * 1000000L;
+	}
+
+	/*
+	 * Something to measure, repeated as many times as the benchmark asks for; it is a
+	 * LongSupplier so the JMH benchmarks, which cannot name classes in the default
+	 * package, can call it too
+	 */
+	public interface Operation extends LongSupplier, AutoCloseable {
+
+		/*
+		 * Releases anything the Operation holds on to, such as threads
+		 */
+		@Override
+		default void close() {
+		}
+	}
+
+	/*
+	 * Warms up and then times an Operation, printing one line with the time per call,
+	 * the Cells handled per second and the bytes allocated per call
+	 */
+	public void measure(String name, int size, int density, long cellsPerCall, Operation operation) {
+		long deadline = System.nanoTime() + measureNanos / 2;
+		do {
+			sink += operation.getAsLong();
+		} while(System.nanoTime() < deadline);
+
+		long threadId = Thread.currentThread().getId();
+		long calls = 0;
+		long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			sink += operation.getAsLong();
+			calls++;
+			elapsed = System.nanoTime() - start;
+		} while(elapsed < measureNanos);
+		long bytes = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+		double nanosPerCall = (double) elapsed / calls;
+		System.out.printf("%-28s %6d^2 %3d%% %14.0f ns/op %10.3e cells/s %12d B/op%n", name, size, density,
+				nanosPerCall, cellsPerCall * 1e9 / nanosPerCall, bytes / calls);
+	}
+
+	/*
+	 * Returns a GameOfLife of the given size with about density percent of its Cells alive
+	 */
+	static GameOfLife randomGame(int size, int density, long seed) {
+		Random random = new Random(seed);
+		GameOfLife game = new GameOfLife(size, size);
+		for(int y = 0; y < size; y++) {
+			for(int x = 0; x < size; x++) {
+				if(random.nextInt(100) < density) {
+					game.revive(x, y);
+				}
+			}
+		}
+
+		return game;
+	}
+
+	/*
+	 * Returns an Operation that computes a generation of a random game with the named
+	 * Stepper, one of ENGINES; closing it shuts down a ParallelStepper
+	 */
+	public static Operation nextGen(int size, int density, String engine) {
+		GameOfLife game = randomGame(size, density, 1);
+		switch(engine) {
+		case "cell":
+			break;
+		case "swar":
+			game.setStepper(new SwarStepper());
+			break;
+		case "parallel":
+			game.setStepper(new ParallelStepper(Runtime.getRuntime().availableProcessors()));
+			break;
+		case "activeset":
+			game.setStepper(new ActiveSetStepper());
+			break;
+		case "tiled":
+			game.setStepper(new TiledStepper());
+			break;
+		case "lut":
+			game.setStepper(new LutStepper());
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown engine " + engine);
+		}
+
+		return new Operation() {
+
+			@Override
+			public long getAsLong() {
+				game.nextGen();
+				return game.getGenNumber();
+			}
+
+			@Override
+			public void close() {
+				if(game.getStepper() instanceof ParallelStepper) {
+					((ParallelStepper) game.getStepper()).shutdown();
+				}
+			}
+
+		};
+	}
+
+	/*
+	 * Returns an Operation that calls countLivingNeighbors on a fixed sample of Cells
+	 * spread over a random board
+	 */
+	public static Operation countLivingNeighbors(int size, int density, int samples) {
+		GameOfLife game = randomGame(size, density, 2);
+		int[] xs = new int[samples];
+		int[] ys = new int[samples];
+		Random random = new Random(3);
+		for(int i = 0; i < samples; i++) {
+			xs[i] = random.nextInt(size);
+			ys[i] = random.nextInt(size);
+		}
+
+		return new Operation() {
+
+			@Override
+			public long getAsLong() {
+				long total = 0;
+				for(int i = 0; i < samples; i++) {
+					total += game.countLivingNeighbors(xs[i], ys[i]);
+				}
+				return total;
+			}
+
+		};
+	}
+
+	/*
+	 * Returns an Operation that calls aliveCount on a random board
+	 */
+	public static Operation aliveCount(int size, int density) {
+		GameOfLife game = randomGame(size, density, 4);
+		return new Operation() {
+
+			@Override
+			public long getAsLong() {
+				return game.aliveCount();
+			}
+
+		};
+	}
+
+	/*
+	 * Returns an Operation that puts density percent of a Board's squares back, then
+	 * calls Board.clear if asked to, so the refill alone can be timed and subtracted
+	 */
+	public static Operation boardRefill(int size, int density, boolean clear) {
+		Board board = new Board(size);
+		Cell alive = new Cell(Cell.ALIVE);
+		Random random = new Random(5);
+		int pieces = (int) ((long) size * size * density / 100);
+		int[] xs = new int[pieces];
+		int[] ys = new int[pieces];
+		for(int i = 0; i < pieces; i++) {
+			xs[i] = random.nextInt(size);
+			ys[i] = random.nextInt(size);
+		}
+
+		return new Operation() {
+
+			@Override
+			public long getAsLong() {
+				for(int i = 0; i < pieces; i++) {
+					board.setPiece(xs[i], ys[i], alive);
+				}
+				if(clear) {
+					board.clear();
+				}
+				return pieces;
+			}
+
+		};
+	}
+
+	/*
+	 * Returns an Operation that draws a BoardPanel of a random board onto an offscreen
+	 * image of up to 2048x2048 pixels
+	 */
+	public static Operation paint(int size, int density) {
+		GameOfLife game = randomGame(size, density, 6);
+		BoardPanel panel = new BoardPanel(game);
+		int pixels = Math.min(2048, Math.max(size, 512));
+		panel.setSize(pixels, pixels);
+		BufferedImage image = new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_RGB);
+
+		return new Operation() {
+
+			@Override
+			public long getAsLong() {
+				Graphics2D g2 = image.createGraphics();
+				panel.paintComponent(g2);
+				g2.dispose();
+				return image.getRGB(0, 0);
+			}
+
+		};
+	}
+
+	/*
+	 * Measures nextGen with the per-Cell path and with each Stepper
+	 */
+	public void benchmarkNextGen(int size, int density) {
+		String[] names = {"nextGen per Cell", "nextGen SWAR", "nextGen parallel SWAR", "nextGen active set", "nextGen tiled", "nextGen lookup table"};
+		for(int i = 0; i < ENGINES.length; i++) {
+			// the per-Cell path takes seconds a generation on the biggest boards
+			if(ENGINES[i].equals("cell") && size > 2048) {
+				continue;
+			}
+
+			Operation operation = nextGen(size, density, ENGINES[i]);
+			measure(names[i], size, density, (long) size * size, operation);
+			operation.close();
+		}
+	}
+
+	/*
+	 * Measures countLivingNeighbors over a fixed sample of Cells spread over the board
+	 */
+	public void benchmarkCountLivingNeighbors(int size, int density) {
+		measure("countLivingNeighbors", size, density, NEIGHBOR_SAMPLES, countLivingNeighbors(size, density, NEIGHBOR_SAMPLES));
+	}
+
+	/*
+	 * Measures aliveCount
+	 */
+	public void benchmarkAliveCount(int size, int density) {
+		measure("aliveCount", size, density, (long) size * size, aliveCount(size, density));
+	}
+
+	/*
+	 * Measures Board.clear on a Board of GamePiece objects that is refilled each time,
+	 * timing the refill separately so it can be subtracted
+	 */
+	public void benchmarkBoardClear(int size, int density) {
+		// a Board of GamePiece objects needs gigabytes beyond this size
+		if(size > MAXIMUM_BOARD_SIZE) {
+			return;
+		}
+
+		measure("Board refill only", size, density, (long) size * size * density / 100, boardRefill(size, density, false));
+		measure("Board refill + clear", size, density, (long) size * size, boardRefill(size, density, true));
+	}
+
+	/*
+	 * Measures BoardPanel.paintComponent drawing onto an offscreen image of up to
+	 * 2048x2048 pixels
+	 */
+	public void benchmarkPaint(int size, int density) {
+		measure("BoardPanel.paintComponent", size, density, (long) size * size, paint(size, density));
+	}
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		int maximumSize = (args.length > 0) ? Integer.parseInt(args[0]) : 8192;
+		long measureMillis = (args.length > 1) ? Long.parseLong(args[1]) : 1000;
+		LifeBenchmark benchmark = new LifeBenchmark(measureMillis);
+
+		for(int size = 64; size <= maximumSize; size *= 2) {
+			for(int density: DENSITIES) {
+				benchmark.benchmarkNextGen(size, density);
+				benchmark.benchmarkCountLivingNeighbors(size, density);
+				benchmark.benchmarkAliveCount(size, density);
+				benchmark.benchmarkBoardClear(size, density);
+				benchmark.benchmarkPaint(size, density);
+			}
+		}
+
+		System.out.println("(ignore) " + sink);
+	}
+}
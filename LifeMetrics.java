@@ -0,0 +1,352 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+ * This class is a GenerationListener that measures every generation a GameOfLife
+ * computes: how long nextGen took, kept in a LatencyHistogram, how many Cells were
+ * computed per second, how many were born and how many died, the population, and how
+ * many bytes the stepping thread allocated since the previous generation
+ * The time comes from the game, which reads System.nanoTime before and after each
+ * step, and the population is the game's running count; the births are counted by the
+ * Stepper as it writes each long, from the new and old states it already holds, and
+ * the deaths follow from the births and the change in population, so none of the
+ * figures takes another pass over the board
+ * The figures are updated on the thread that steps the game under the LifeMetrics'
+ * own lock, which is only ever contended while another thread is reading them, so a
+ * display or a JMX client can read them at any time
+ * register publishes the figures as an MBean, which JConsole and other JMX clients
+ * can read while the game runs
+ */
+public class LifeMetrics implements GenerationListener, LifeMetricsMBean {
+
+	// instance data
+	private LatencyHistogram stepNanos = new LatencyHistogram();
+	private long generations;
+	private long totalStepNanos;
+	private long totalCells;
+	private long lastStepNanos;
+	private int population;
+	private int births;
+	private int deaths;
+	private ObjectName registeredName;
+
+	// the stepping thread's allocation counter, when the JVM offers one
+	private com.sun.management.ThreadMXBean allocations;
+	private long steppingThread = -1;
+	private long allocatedBefore;
+	private long allocatedBytes = -1;
+
+	/*
+	 * Constructs a LifeMetrics with nothing measured yet
+	 */
+	public LifeMetrics() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean allocationCounter = (com.sun.management.ThreadMXBean) threads;
+			if(allocationCounter.isThreadAllocatedMemorySupported() && allocationCounter.isThreadAllocatedMemoryEnabled()) {
+				this.allocations = allocationCounter;
+			}
+		}
+	}
+
+	/*
+	 * Records the generation the given game just computed
+	 */
+	public void generationComputed(GameOfLife game) {
+		long stepped = game.getLastStepNanos();
+		int living = game.aliveCount();
+		int born = game.getBoard().getBirths();
+		int previousLiving = game.getPreviousBoard().aliveCount();
+		long allocated = -1;
+		if(allocations != null) {
+			allocated = allocations.getCurrentThreadAllocatedBytes();
+		}
+
+		synchronized(this) {
+			births = born;
+			deaths = born - (living - previousLiving);
+
+			// the first generation seen on a thread only sets where its allocations start
+			long thread = Thread.currentThread().getId();
+			if(allocated >= 0 && thread == steppingThread) {
+				allocatedBytes = allocated - allocatedBefore;
+			}
+			steppingThread = thread;
+			allocatedBefore = allocated;
+
+			stepNanos.record(stepped);
+			generations++;
+			totalStepNanos += stepped;
+			totalCells += (long) game.getWidth() * game.getHeight();
+			lastStepNanos = stepped;
+			population = living;
+		}
+	}
+
+	/*
+	 * Registers this LifeMetrics with the platform MBean server under the given name,
+	 * as GameOfLife:type=LifeMetrics,name=<name>, and returns the name it was given
+	 */
+	public synchronized ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("GameOfLife:type=LifeMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.registeredName = objectName;
+		return objectName;
+	}
+
+	/*
+	 * Removes this LifeMetrics from the platform MBean server if it was registered
+	 */
+	public synchronized void unregister() throws JMException {
+		if(registeredName != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+			registeredName = null;
+		}
+	}
+
+	/*
+	 * Forgets every generation measured so far
+	 */
+	public synchronized void reset() {
+		stepNanos.reset();
+		generations = 0;
+		totalStepNanos = 0;
+		totalCells = 0;
+		lastStepNanos = 0;
+		births = 0;
+		deaths = 0;
+		allocatedBytes = -1;
+		steppingThread = -1;
+	}
+
+	/*
+	 * Returns a copy of the distribution of step times in nanoseconds
+	 */
+	public synchronized LatencyHistogram getStepHistogram() {
+		LatencyHistogram copy = new LatencyHistogram();
+		copy.add(stepNanos);
+		return copy;
+	}
+
+	/*
+	 * Returns how many generations were measured
+	 */
+	public synchronized long getGenerations() {
+		return generations;
+	}
+
+	/*
+	 * Returns how many nanoseconds the last generation took
+	 */
+	public synchronized long getLastStepNanos() {
+		return lastStepNanos;
+	}
+
+	/*
+	 * Returns the mean number of nanoseconds a generation took
+	 */
+	public synchronized double getMeanStepNanos() {
+		return stepNanos.getMean();
+	}
+
+	/*
+	 * Returns the median number of nanoseconds a generation took
+	 */
+	public synchronized long getMedianStepNanos() {
+		return stepNanos.getValueAtPercentile(50);
+	}
+
+	/*
+	 * Returns the number of nanoseconds 99% of the generations took at most
+	 */
+	public synchronized long getStepNanos99() {
+		return stepNanos.getValueAtPercentile(99);
+	}
+
+	/*
+	 * Returns the number of nanoseconds 99.9% of the generations took at most
+	 */
+	public synchronized long getStepNanos999() {
+		return stepNanos.getValueAtPercentile(99.9);
+	}
+
+	/*
+	 * Returns the number of nanoseconds the slowest generation took
+	 */
+	public synchronized long getMaxStepNanos() {
+		return stepNanos.getMax();
+	}
+
+	/*
+	 * Returns how many Cells were computed per second of stepping, over every
+	 * generation measured
+	 */
+	public synchronized double getCellsPerSecond() {
+		return (totalStepNanos == 0) ? 0 : totalCells * 1e9 / totalStepNanos;
+	}
+
+	/*
+	 * Returns how many Cells were alive after the last generation
+	 */
+	public synchronized int getPopulation() {
+		return population;
+	}
+
+	/*
+	 * Returns how many Cells were born in the last generation
+	 */
+	public synchronized int getBirths() {
+		return births;
+	}
+
+	/*
+	 * Returns how many Cells died in the last generation
+	 */
+	public synchronized int getDeaths() {
+		return deaths;
+	}
+
+	/*
+	 * Returns how many bytes the stepping thread allocated between the last two
+	 * generations, listeners included, or -1 if the JVM cannot tell
+	 */
+	public synchronized long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/*
+	 * Times the given number of generations of a copy of the game, with or without
+	 * a LifeMetrics listening, and returns the nanoseconds they took
+	 */
+	private static long timeGenerations(int generations, boolean measured) {
+		GameOfLife game = LifeBenchmark.randomGame(512, 30, 19);
+		game.setStepper(new SwarStepper());
+		if(measured) {
+			game.addGenerationListener(new LifeMetrics());
+		}
+
+		long start = System.nanoTime();
+		for(int i = 0; i < generations; i++) {
+			game.nextGen();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/*
+	 * Returns a listener that checks the births, deaths and population the given
+	 * LifeMetrics recorded against the two generations compared Cell by Cell
+	 */
+	private static GenerationListener changeChecker(LifeMetrics metrics) {
+		return new GenerationListener() {
+
+			@Override
+			public void generationComputed(GameOfLife game) {
+				BitBoard previous = game.getPreviousBoard();
+				int born = 0;
+				int died = 0;
+				for(int x = 0; x < game.getWidth(); x++) {
+					for(int y = 0; y < game.getHeight(); y++) {
+						if(game.isAlive(x, y) && !previous.isAlive(x, y)) {
+							born++;
+						}
+						else if(!game.isAlive(x, y) && previous.isAlive(x, y)) {
+							died++;
+						}
+					}
+				}
+				if(born != metrics.getBirths() || died != metrics.getDeaths() || game.aliveCount() != metrics.getPopulation()) {
+					throw new AssertionError("Generation " + game.getGenNumber() + " had " + born + " births and " + died
+							+ " deaths, not " + metrics.getBirths() + " and " + metrics.getDeaths());
+				}
+			}
+
+		};
+	}
+
+	public static void main(String[] args) throws JMException {
+		// every Stepper, and willBeAlive, must count the births as it writes the generation
+		ParallelStepper parallel = new ParallelStepper(new SwarStepper(), 3);
+		Stepper[] steppers = {null, new SwarStepper(), new LutStepper(), new ActiveSetStepper(), new TiledStepper(), parallel};
+		for(Topology topology: Topology.values()) {
+			for(Stepper stepper: steppers) {
+				GameOfLife checked = LifeBenchmark.randomGame(130, 35, 19);
+				checked.setTopology(topology);
+				checked.setStepper(stepper);
+				LifeMetrics counted = new LifeMetrics();
+				checked.addGenerationListener(counted);
+				checked.addGenerationListener(changeChecker(counted));
+				for(int i = 0; i < 60; i++) {
+					checked.nextGen();
+				}
+			}
+		}
+		parallel.shutdown();
+		System.out.println("Every Stepper counts the births and deaths on every Topology");
+
+		GameOfLife game = LifeBenchmark.randomGame(200, 35, 19);
+		game.setStepper(new SwarStepper());
+		LifeMetrics metrics = new LifeMetrics();
+		game.addGenerationListener(metrics);
+		game.addGenerationListener(changeChecker(metrics));
+
+		for(int i = 0; i < 300; i++) {
+			game.nextGen();
+		}
+		if(metrics.getGenerations() != 300 || metrics.getStepHistogram().getCount() != 300) {
+			throw new AssertionError("Measured " + metrics.getGenerations() + " generations instead of 300");
+		}
+		if(metrics.getMedianStepNanos() > metrics.getStepNanos99() || metrics.getStepNanos99() > metrics.getMaxStepNanos()) {
+			throw new AssertionError("The step time percentiles are out of order");
+		}
+
+		System.out.println(String.format("%.3g Cells per second, %d allocated bytes per generation, step times: %s",
+				metrics.getCellsPerSecond(), metrics.getAllocatedBytes(), metrics.getStepHistogram()));
+
+		// a JMX client must see the same figures
+		ObjectName name = metrics.register("test");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if(!server.getAttribute(name, "Generations").equals(300L) || !server.getAttribute(name, "Population").equals(game.aliveCount())) {
+			throw new AssertionError("The MBean does not show the metrics");
+		}
+		server.invoke(name, "reset", null, null);
+		if(metrics.getGenerations() != 0) {
+			throw new AssertionError("Resetting over JMX did not reset the metrics");
+		}
+		metrics.unregister();
+
+		// warms up, then compares stepping with and without the metrics
+		timeGenerations(3000, true);
+		timeGenerations(3000, false);
+		long measured = Long.MAX_VALUE;
+		long unmeasured = Long.MAX_VALUE;
+		for(int run = 0; run < 5; run++) {
+			measured = Math.min(measured, timeGenerations(2000, true));
+			unmeasured = Math.min(unmeasured, timeGenerations(2000, false));
+		}
+		System.out.println(String.format("2000 generations of 512x512: %.1f ms measured, %.1f ms unmeasured",
+				measured / 1e6, unmeasured / 1e6));
+
+		// the whole runs differ by more noise than the listener costs, so it is timed on its own
+		GameOfLife timed = LifeBenchmark.randomGame(512, 30, 19);
+		timed.setStepper(new SwarStepper());
+		timed.nextGen();
+		LifeMetrics listener = new LifeMetrics();
+		long listenerNanos = Long.MAX_VALUE;
+		for(int run = 0; run < 5; run++) {
+			long start = System.nanoTime();
+			for(int i = 0; i < 100000; i++) {
+				listener.generationComputed(timed);
+			}
+			listenerNanos = Math.min(listenerNanos, (System.nanoTime() - start) / 100000);
+		}
+		double overhead = 100.0 * listenerNanos / (unmeasured / 2000.0);
+		System.out.println(String.format("The listener takes %d ns, %.2f%% of a generation", listenerNanos, overhead));
+		if(overhead > 1) {
+			throw new AssertionError(String.format("The metrics add %.2f%% to every generation", overhead));
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ * This interface is the management interface of a LifeMetrics object, the attributes
+ * and operations a JMX client such as JConsole sees once the LifeMetrics is registered
+ * All the times are in nanoseconds
+ */
+public interface LifeMetricsMBean {
+
+	long getGenerations();
+
+	long getLastStepNanos();
+
+	double getMeanStepNanos();
+
+	long getMedianStepNanos();
+
+	long getStepNanos99();
+
+	long getStepNanos999();
+
+	long getMaxStepNanos();
+
+	double getCellsPerSecond();
+
+	int getPopulation();
+
+	int getBirths();
+
+	int getDeaths();
+
+	long getAllocatedBytes();
+
+	void reset();
+}
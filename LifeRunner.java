@@ -0,0 +1,347 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/*
+ * This class runs a GameOfLife from the command line without Swing, as fast as the
+ * chosen engine can go, so it works on a server with no display and lets scripts
+ * compare the engines on the same pattern
+ * The pattern is read from an RLE file, or a Life 1.06 file when the name ends in
+ * .lif or .life, and centered on a board of the given size; without a size, an RLE
+ * pattern keeps the size in its header and a Life 1.06 pattern gets 1024x1024
+ * After the run it prints one "name: value" line for each figure: the final
+ * generation, population and content hash, which must agree between engines, and the
+ * wall time, generations per second, Cells per second and the distribution of step
+ * times measured by a LifeMetrics; with --census it also prints how many objects are
+ * left and the most common of them, found by a Census that joins Cells up to two
+ * squares apart, as the known patterns are named, so that spaceships and oscillators
+ * whose Cells do not all touch are counted whole
+ * The engines are cell (willBeAlive for every Cell), swar, lut, activeset, tiled and
+ * hashlife; swar and lut can be split over several threads by a ParallelStepper, and
+ * hashlife runs the pattern on an unbounded plane, so it only agrees with the others
+ * while the pattern stays clear of the edges
+ * Usage: java LifeRunner <pattern file> [--size WIDTHxHEIGHT] [--generations N]
+ *        [--engine NAME] [--threads N] [--rule RULE] [--topology plane|torus|klein]
+ *        [--census N] [--output FILE|-]
+ */
+public class LifeRunner {
+
+	private static final String USAGE = "Usage: java LifeRunner <pattern file> [--size WIDTHxHEIGHT] [--generations N]\n"
+			+ "       [--engine cell|swar|lut|activeset|tiled|hashlife] [--threads N] [--rule RULE]\n"
+			+ "       [--topology plane|torus|klein] [--census N] [--output FILE|-]";
+
+	// the side length of the board a Life 1.06 pattern is put on when no size is given
+	private static final int DEFAULT_SIDE = 1024;
+
+	// instance data
+	private Path patternFile;
+	private int width = -1;
+	private int height = -1;
+	private long generations = 1000;
+	private String engine = "swar";
+	private int threads = 1;
+	private Rule rule;
+	private Topology topology = Topology.PLANE;
+	private int census;
+	private String output;
+
+	/*
+	 * Constructs a LifeRunner from the command line arguments, throwing an
+	 * IllegalArgumentException that explains the first one that is wrong
+	 */
+	public LifeRunner(String[] args) {
+		for(int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if(!arg.startsWith("--")) {
+				if(patternFile != null) {
+					throw new IllegalArgumentException("Only one pattern file can be run, not " + arg);
+				}
+				patternFile = Paths.get(arg);
+				continue;
+			}
+			if(i + 1 == args.length) {
+				throw new IllegalArgumentException(arg + " needs a value");
+			}
+
+			String value = args[++i];
+			switch(arg) {
+			case "--size":
+				int times = value.indexOf('x');
+				if(times < 0) {
+					throw new IllegalArgumentException("The size must look like 1024x768, not " + value);
+				}
+				width = parsePositive(arg, value.substring(0, times));
+				height = parsePositive(arg, value.substring(times + 1));
+				break;
+			case "--generations":
+				generations = parsePositive(arg, value);
+				break;
+			case "--engine":
+				engine = value;
+				break;
+			case "--threads":
+				threads = parsePositive(arg, value);
+				break;
+			case "--rule":
+				rule = Rule.parse(value);
+				break;
+			case "--topology":
+				topology = parseTopology(value);
+				break;
+			case "--census":
+				census = parsePositive(arg, value);
+				break;
+			case "--output":
+				output = value;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + arg);
+			}
+		}
+
+		if(patternFile == null) {
+			throw new IllegalArgumentException("No pattern file was given");
+		}
+		if(threads > 1 && !engine.equals("swar") && !engine.equals("lut")) {
+			throw new IllegalArgumentException("Only the swar and lut engines run on several threads");
+		}
+		if(engine.equals("hashlife") && topology != Topology.PLANE) {
+			throw new IllegalArgumentException("The hashlife engine only runs on an unbounded plane");
+		}
+		if(engine.equals("hashlife") && census > 0) {
+			throw new IllegalArgumentException("The hashlife engine has no board to take a census of");
+		}
+	}
+
+	/*
+	 * Reads a positive whole number given for an option
+	 */
+	private static int parsePositive(String option, String value) {
+		try {
+			int number = Integer.parseInt(value.trim());
+			if(number > 0) {
+				return number;
+			}
+		}
+		catch(NumberFormatException e) {
+			// reported below with the other bad values
+		}
+
+		throw new IllegalArgumentException(option + " needs a positive whole number, not " + value);
+	}
+
+	/*
+	 * Reads the name of a Topology
+	 */
+	private static Topology parseTopology(String value) {
+		switch(value.toLowerCase()) {
+		case "plane":
+			return Topology.PLANE;
+		case "torus":
+			return Topology.TORUS;
+		case "klein":
+		case "klein_bottle":
+			return Topology.KLEIN_BOTTLE;
+		default:
+			throw new IllegalArgumentException("Unknown topology " + value);
+		}
+	}
+
+	/*
+	 * Returns the Stepper for the chosen engine, or null for the cell engine
+	 */
+	private Stepper createStepper(Rule rule) {
+		Stepper stepper;
+		switch(engine) {
+		case "cell":
+			return null;
+		case "swar":
+			stepper = new SwarStepper();
+			break;
+		case "lut":
+			stepper = new LutStepper(rule);
+			break;
+		case "activeset":
+			stepper = new ActiveSetStepper();
+			break;
+		case "tiled":
+			stepper = new TiledStepper();
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown engine " + engine);
+		}
+
+		if(!stepper.supports(rule)) {
+			throw new IllegalArgumentException("The " + engine + " engine cannot run " + rule + "; try lut or cell");
+		}
+		if(threads > 1) {
+			stepper = new ParallelStepper(stepper, threads);
+		}
+		return stepper;
+	}
+
+	/*
+	 * Reads the pattern file onto a new GameOfLife of the chosen size, centering it
+	 */
+	private GameOfLife readPattern() throws IOException {
+		String name = patternFile.getFileName().toString().toLowerCase();
+		try(InputStream in = new BufferedInputStream(Files.newInputStream(patternFile))) {
+			if(name.endsWith(".lif") || name.endsWith(".life")) {
+				GameOfLife game = new GameOfLife(width > 0 ? width : DEFAULT_SIDE, height > 0 ? height : DEFAULT_SIDE);
+				PatternIO.readLife106(in, game, game.getWidth() / 2, game.getHeight() / 2);
+				return game;
+			}
+
+			GameOfLife pattern = PatternIO.readRle(in);
+			if(width < 0) {
+				return pattern;
+			}
+
+			GameOfLife game = new GameOfLife(width, height);
+			game.setRule(pattern.getRule());
+			int left = (width - pattern.getWidth()) / 2;
+			int top = (height - pattern.getHeight()) / 2;
+			for(int y = 0; y < pattern.getHeight(); y++) {
+				for(int x = 0; x < pattern.getWidth(); x++) {
+					if(pattern.isAlive(x, y)) {
+						game.revive(left + x, top + y);
+					}
+				}
+			}
+			return game;
+		}
+	}
+
+	/*
+	 * Runs the pattern and prints the figures to standard output
+	 */
+	public void run() throws IOException {
+		GameOfLife game = readPattern();
+		if(rule != null) {
+			game.setRule(rule);
+		}
+		game.setTopology(topology);
+		if(game.getGenNumber() + generations > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Cannot run past generation " + Integer.MAX_VALUE);
+		}
+
+		System.out.println("engine: " + engine + ((threads > 1) ? " on " + threads + " threads" : ""));
+		System.out.println("board: " + game.getWidth() + "x" + game.getHeight() + " " + topology.toString().toLowerCase()
+				+ ", rule " + game.getRule());
+
+		if(engine.equals("hashlife")) {
+			runHashLife(game);
+			return;
+		}
+
+		Stepper stepper = createStepper(game.getRule());
+		game.setStepper(stepper);
+		LifeMetrics metrics = new LifeMetrics();
+		game.addGenerationListener(metrics);
+
+		long start = System.nanoTime();
+		for(long i = 0; i < generations; i++) {
+			game.nextGen();
+		}
+		long elapsed = System.nanoTime() - start;
+		if(stepper instanceof ParallelStepper) {
+			((ParallelStepper) stepper).shutdown();
+		}
+
+		System.out.println("generation: " + game.getGenNumber());
+		System.out.println("population: " + game.aliveCount());
+		System.out.println("content hash: " + Long.toHexString(game.getBoard().contentHash()));
+		printSpeed(elapsed, (double) game.getWidth() * game.getHeight());
+		System.out.println("step nanoseconds: " + metrics.getStepHistogram());
+		if(census > 0) {
+			printCensus(game);
+		}
+
+		if(output != null) {
+			writeOutput(game);
+		}
+	}
+
+	/*
+	 * Advances the pattern on an unbounded plane with HashLife, which has no board to
+	 * hash or write out, so only the population and the speed are printed
+	 */
+	private void runHashLife(GameOfLife game) {
+		HashLife life = new HashLife(game);
+		long start = System.nanoTime();
+		life.advance(generations);
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println("generation: " + life.getGenNumber());
+		System.out.println("population: " + life.aliveCount());
+		printSpeed(elapsed, (double) game.getWidth() * game.getHeight());
+		System.out.println("hash table nodes: " + life.getNodeCount());
+	}
+
+	/*
+	 * Prints the wall time and the speed of the run, counting the Cells of the board
+	 * for every generation
+	 */
+	private void printSpeed(long elapsedNanos, double cellsPerGeneration) {
+		double seconds = Math.max(elapsedNanos, 1) / 1e9;
+		System.out.println(String.format("wall milliseconds: %.1f", seconds * 1000));
+		System.out.println(String.format("generations per second: %.1f", generations / seconds));
+		System.out.println(String.format("cells per second: %.4g", generations * cellsPerGeneration / seconds));
+	}
+
+	/*
+	 * Prints how many objects are on the board and how many there are of the most
+	 * common shapes
+	 */
+	private void printCensus(GameOfLife game) {
+		Census taker = new Census(2);
+		Map<String, Integer> objects = taker.take(game);
+		System.out.println("objects: " + taker.getObjectCount());
+
+		int printed = 0;
+		for(Map.Entry<String, Integer> entry: objects.entrySet()) {
+			if(printed++ == census) {
+				break;
+			}
+			System.out.println("object " + entry.getKey() + ": " + entry.getValue());
+		}
+	}
+
+	/*
+	 * Writes the final generation as RLE to the output file, or to standard output
+	 * when the file is "-"
+	 */
+	private void writeOutput(GameOfLife game) throws IOException {
+		if(output.equals("-")) {
+			OutputStream out = new BufferedOutputStream(System.out);
+			PatternIO.writeRle(game, out);
+			out.flush();
+			return;
+		}
+
+		try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(output)))) {
+			PatternIO.writeRle(game, out);
+		}
+	}
+
+	public static void main(String[] args) {
+		try {
+			new LifeRunner(args).run();
+		}
+		catch(IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		catch(IOException e) {
+			System.err.println("Could not run the pattern: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+import java.util.Arrays;
+
+/*
+ * This class stores a set of long values in a single long array using open addressing
+ * with linear probing, so adding, removing and finding a value creates no objects
+ * The value Long.MIN_VALUE marks an empty slot and cannot be stored in the set
+ * The array doubles whenever it becomes more than half full, and removing a value
+ * shifts the values after it back into place instead of leaving a marker behind
+ * The values can be visited without creating an iterator by looping over the slots
+ * from 0 to getSlotCount(), skipping the slots for which isUsed returns false
+ */
+public class LongHashSet {
+
+	// the value that marks an empty slot
+	public static final long EMPTY = Long.MIN_VALUE;
+
+	// instance data
+	private long[] keys;
+	private int size;
+	private int mask;
+
+	/*
+	 * Constructs an empty LongHashSet with room for a few values
+	 */
+	public LongHashSet() {
+		this(16);
+	}
+
+	/*
+	 * Constructs an empty LongHashSet with room for the given number of values before
+	 * it needs to grow
+	 */
+	public LongHashSet(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+		this.keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		this.mask = capacity - 1;
+		this.size = 0;
+	}
+
+	/*
+	 * Adds a value to the set and returns true if it was not already there
+	 */
+	public boolean add(long key) {
+		if(key == EMPTY) {
+			throw new IllegalArgumentException("Long.MIN_VALUE cannot be stored in a LongHashSet");
+		}
+
+		int slot = slotOf(key);
+		while(keys[slot] != EMPTY) {
+			if(keys[slot] == key) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		size++;
+		if(size * 2 > keys.length) {
+			grow();
+		}
+
+		return true;
+	}
+
+	/*
+	 * Removes a value from the set and returns true if it was there
+	 */
+	public boolean remove(long key) {
+		int slot = slotOf(key);
+		while(keys[slot] != EMPTY) {
+			if(keys[slot] == key) {
+				shiftBack(slot);
+				size--;
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		return false;
+	}
+
+	/*
+	 * Checks if the set contains a value
+	 */
+	public boolean contains(long key) {
+		int slot = slotOf(key);
+		while(keys[slot] != EMPTY) {
+			if(keys[slot] == key) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		return false;
+	}
+
+	/*
+	 * Removes every value from the set, keeping its array for reuse
+	 */
+	public void clear() {
+		if(size > 0) {
+			Arrays.fill(keys, EMPTY);
+			size = 0;
+		}
+	}
+
+	/*
+	 * Returns the number of values in the set
+	 */
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * Returns the number of slots, used or not, for looping over the values
+	 */
+	public int getSlotCount() {
+		return keys.length;
+	}
+
+	/*
+	 * Checks if the given slot holds a value
+	 */
+	public boolean isUsed(int slot) {
+		return keys[slot] != EMPTY;
+	}
+
+	/*
+	 * Returns the value held in the given slot, or EMPTY
+	 */
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/*
+	 * Returns the slot where the search for a value starts
+	 */
+	private int slotOf(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	/*
+	 * Empties a slot and moves the values that probed past it back toward their own slots
+	 */
+	private void shiftBack(int slot) {
+		int hole = slot;
+		int next = (slot + 1) & mask;
+
+		while(keys[next] != EMPTY) {
+			int home = slotOf(keys[next]);
+			// the value may move into the hole unless its home lies between the hole and it
+			boolean canMove = (next > hole) ? (home <= hole || home > next) : (home <= hole && home > next);
+			if(canMove) {
+				keys[hole] = keys[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+
+		keys[hole] = EMPTY;
+	}
+
+	/*
+	 * Doubles the array and puts every value back into its new slot
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		mask = keys.length - 1;
+
+		for(long key: oldKeys) {
+			if(key != EMPTY) {
+				int slot = slotOf(key);
+				while(keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+			}
+		}
+	}
+}
@@ -0,0 +1,159 @@
+import java.util.Random;
+
+/*
+ * This class computes generations of any two-state Rule of range 1 by looking every
+ * Cell's 3x3 neighborhood up in a table of 512 precomputed next states
+ * Each row is swept from left to right keeping the neighborhood as a rolling 9-bit
+ * index, three bits for each of the rows above, at and below the Cell: moving one Cell
+ * to the right shifts the index one bit down, drops the column that fell off the left,
+ * and brings in the three bits of the new column on the right, so a Cell costs a few
+ * shifts and one table load instead of counting its neighbors
+ * The bits are read from the packed rows of the BitBoard a long at a time, and the
+ * next states are gathered into a long before being written back
+ */
+public class LutStepper implements Stepper {
+
+	// keeps the two left columns of each row of the index after it is shifted down
+	private static final int KEEP_MASK = 0b011011011;
+
+	// instance data
+	private Rule rule;
+	private long[] nextBits = new long[512];
+
+	/*
+	 * Constructs a LutStepper for Conway's Game of Life
+	 */
+	public LutStepper() {
+		this(Rule.CONWAY);
+	}
+
+	/*
+	 * Constructs a LutStepper for a two-state Rule of range 1
+	 */
+	public LutStepper(Rule rule) {
+		if(!rule.isTwoStateRangeOne()) {
+			throw new IllegalArgumentException("A LutStepper cannot run " + rule);
+		}
+
+		this.rule = rule;
+		for(int index = 0; index < 512; index++) {
+			nextBits[index] = rule.nextState(index) ? 1L : 0L;
+		}
+	}
+
+	/*
+	 * Checks if the given Rule is the one this LutStepper's table was built for
+	 */
+	public boolean supports(Rule rule) {
+		return this.rule.equals(rule);
+	}
+
+	/*
+	 * Writes rows fromRow (inclusive) to toRow (exclusive) of the generation after
+	 * current into next
+	 */
+	public void stepRows(BitBoard current, BitBoard next, int fromRow, int toRow) {
+		long[] source = current.getWords();
+		long[] target = next.getWords();
+		int wordsPerRow = current.getWordsPerRow();
+		int width = current.getWidth();
+
+		for(int y = fromRow; y < toRow; y++) {
+			int above = current.rowOffset(y - 1);
+			int middle = current.rowOffset(y);
+			int below = current.rowOffset(y + 1);
+			long aboveWord = source[above];
+			long middleWord = source[middle];
+			long belowWord = source[below];
+
+			// starts the index with the ghost column and the first column of the row
+			int index = 0;
+			for(int column = 0; column < 2; column++) {
+				index = ((index >>> 1) & KEEP_MASK)
+						| (int) ((aboveWord >>> column) & 1L) << 2
+						| (int) ((middleWord >>> column) & 1L) << 5
+						| (int) ((belowWord >>> column) & 1L) << 8;
+			}
+
+			long out = 0L;
+			int rowPopulation = 0;
+			int rowBirths = 0;
+			for(int column = 2; column <= width + 1; column++) {
+				if((column & 63) == 0) {
+					int word = column >>> 6;
+					aboveWord = source[above + word];
+					middleWord = source[middle + word];
+					belowWord = source[below + word];
+				}
+
+				index = ((index >>> 1) & KEEP_MASK)
+						| (int) ((aboveWord >>> column) & 1L) << 2
+						| (int) ((middleWord >>> column) & 1L) << 5
+						| (int) ((belowWord >>> column) & 1L) << 8;
+
+				// the Cell whose neighborhood is now complete sits one column to the left
+				int cellColumn = column - 1;
+				if((cellColumn & 63) == 0) {
+					target[middle + (cellColumn >>> 6) - 1] = out;
+					rowPopulation += Long.bitCount(out);
+					rowBirths += Long.bitCount(out & ~source[middle + (cellColumn >>> 6) - 1]);
+					out = 0L;
+				}
+				out |= nextBits[index] << cellColumn;
+			}
+
+			target[middle + (width >>> 6)] = out;
+			rowPopulation += Long.bitCount(out);
+			rowBirths += Long.bitCount(out & ~source[middle + (width >>> 6)]);
+			for(int word = (width >>> 6) + 1; word < wordsPerRow; word++) {
+				target[middle + word] = 0L;
+			}
+			next.setRowPopulation(y, rowPopulation);
+			next.setRowBirths(y, rowBirths);
+		}
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(16);
+		int[] widths = {1, 2, 62, 63, 64, 65, 126, 127, 128, 200};
+		String[] rules = {"B3/S23", "B36/S23", "B3678/S34678", "B1357/S1357", "B2/S"};
+
+		// compares the lookup table stepper with willBeAlive for several rules on awkward widths
+		for(String text: rules) {
+			Rule rule = Rule.parse(text);
+			LutStepper lut = new LutStepper(rule);
+			for(int width: widths) {
+				int height = 1 + random.nextInt(40);
+				GameOfLife game = new GameOfLife(width, height);
+				game.setRule(rule);
+				for(int x = 0; x < width; x++) {
+					for(int y = 0; y < height; y++) {
+						if(random.nextInt(100) < 35) {
+							game.revive(x, y);
+						}
+					}
+				}
+
+				BitBoard next = new BitBoard(width, height);
+				next.setAlive(0, 0, true);
+				lut.step(game.getBoard(), next);
+
+				int living = 0;
+				for(int x = 0; x < width; x++) {
+					for(int y = 0; y < height; y++) {
+						if(next.isAlive(x, y) != game.willBeAlive(x, y)) {
+							throw new AssertionError(text + " differs at (" + x + ", " + y + ") on a " + width + "x" + height + " board");
+						}
+						living += game.willBeAlive(x, y) ? 1 : 0;
+					}
+				}
+				if(next.aliveCount() != living) {
+					throw new AssertionError(text + " counts " + next.aliveCount() + " living Cells instead of " + living);
+				}
+			}
+		}
+
+		System.out.println("The lookup table stepper matches willBeAlive for " + rules.length + " rules on "
+				+ widths.length + " widths each");
+	}
+}
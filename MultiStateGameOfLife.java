@@ -0,0 +1,381 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * This class runs the rules a GameOfLife cannot: Generations rules, where a Cell that
+ * dies goes through dying states first, and Larger than Life rules, whose neighborhood
+ * reaches more than one Cell away
+ * Every Cell holds a state as a byte: 0 is dead, 1 is alive, and 2 up to one less than
+ * the Rule's number of states are dying; only living Cells count as neighbors
+ * The states are kept in two preallocated byte arrays that swap roles every generation,
+ * padded by the Rule's range on every side with dead Cells so no count needs a bounds
+ * check
+ * For a Moore neighborhood the living Cells are counted with a sliding window: the
+ * count of every column of the window is kept as the window moves down a row, and
+ * the count of the window is kept as it moves right a Cell, so a Cell costs the same
+ * whatever the range; a von Neumann neighborhood is counted Cell by Cell
+ * The next state is then read from the Rule's compiled transitions table, indexed by
+ * the state and the count, with no branching on the Rule
+ */
+public class MultiStateGameOfLife {
+
+	// 1 for the living state and 0 for every other state
+	private static final int[] LIVING = new int[256];
+	static {
+		LIVING[1] = 1;
+	}
+
+	// instance data
+	private Rule rule;
+	private int width;
+	private int height;
+	private int range;
+	private int stride;
+	private byte[] states;
+	private byte[] nextStates;
+	private int[] columnCounts;
+	private int population;
+	private int generationNumber;
+
+	/*
+	 * Constructs a MultiStateGameOfLife of the given dimensions with every Cell dead
+	 */
+	public MultiStateGameOfLife(int width, int height, Rule rule) {
+		if(width < 1 || height < 1) {
+			throw new IllegalArgumentException("A MultiStateGameOfLife must have a positive width and height");
+		}
+
+		this.rule = rule;
+		this.width = width;
+		this.height = height;
+		this.range = rule.getRange();
+		this.stride = width + 2 * range;
+		this.states = new byte[stride * (height + 2 * range)];
+		this.nextStates = new byte[states.length];
+		this.columnCounts = new int[stride];
+	}
+
+	/*
+	 * Constructs a MultiStateGameOfLife holding the living Cells of a GameOfLife, to be
+	 * run with another Rule
+	 */
+	public MultiStateGameOfLife(GameOfLife game, Rule rule) {
+		this(game.getWidth(), game.getHeight(), rule);
+
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				if(game.isAlive(x, y)) {
+					revive(x, y);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Returns the index of (x, y) in the padded state arrays
+	 */
+	private int index(int x, int y) {
+		return (y + range) * stride + x + range;
+	}
+
+	/*
+	 * Returns the state of the Cell at (x, y); Cells outside the board are dead
+	 */
+	public int getState(int x, int y) {
+		if(inBounds(x, y)) {
+			return states[index(x, y)] & 0xFF;
+		}
+
+		return 0;
+	}
+
+	/*
+	 * Sets the state of the Cell at (x, y), from 0 (dead) up to one less than the
+	 * Rule's number of states; locations outside the board are ignored
+	 */
+	public void setState(int x, int y, int state) {
+		if(state < 0 || state >= rule.getStates()) {
+			throw new IllegalArgumentException("The rule " + rule + " has no state " + state);
+		}
+		if(!inBounds(x, y)) {
+			return;
+		}
+
+		int index = index(x, y);
+		population += LIVING[state] - LIVING[states[index] & 0xFF];
+		states[index] = (byte) state;
+	}
+
+	/*
+	 * Checks to see if the Cell at (x, y) is alive, as opposed to dead or dying
+	 */
+	public boolean isAlive(int x, int y) {
+		return getState(x, y) == 1;
+	}
+
+	/*
+	 * Sets a Cell's state to alive at (x, y)
+	 */
+	public void revive(int x, int y) {
+		setState(x, y, 1);
+	}
+
+	/*
+	 * Sets a Cell's state to dead at (x, y)
+	 */
+	public void kill(int x, int y) {
+		setState(x, y, 0);
+	}
+
+	/*
+	 * Clears the board by setting every Cell to dead
+	 */
+	public void clear() {
+		Arrays.fill(states, (byte) 0);
+		population = 0;
+	}
+
+	/*
+	 * Checks if a location (x, y) is on the board
+	 */
+	public boolean inBounds(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/*
+	 * Advances from one generation to the next, writing every Cell's next state into
+	 * the back array and then swapping it with the current one
+	 */
+	public void nextGen() {
+		if(rule.getNeighborhood() == Rule.MOORE) {
+			stepMoore();
+		}
+		else {
+			stepVonNeumann();
+		}
+
+		byte[] previousStates = states;
+		states = nextStates;
+		nextStates = previousStates;
+		generationNumber++;
+	}
+
+	/*
+	 * Computes the next generation, counting the square neighborhoods with a window
+	 * that slides down the columns and along the rows
+	 */
+	private void stepMoore() {
+		byte[] transitions = rule.getTransitions();
+		int counts = rule.getMaximumCount() + 1;
+		int side = 2 * range + 1;
+		int self = rule.countsSelf() ? 0 : 1;
+		int living = 0;
+
+		// the window of the first row covers padded rows 0 to 2 * range
+		Arrays.fill(columnCounts, 0);
+		for(int row = 0; row < side; row++) {
+			for(int column = 0; column < stride; column++) {
+				columnCounts[column] += LIVING[states[row * stride + column] & 0xFF];
+			}
+		}
+
+		for(int y = 0; y < height; y++) {
+			if(y > 0) {
+				int added = (y + 2 * range) * stride;
+				int removed = (y - 1) * stride;
+				for(int column = 0; column < stride; column++) {
+					columnCounts[column] += LIVING[states[added + column] & 0xFF] - LIVING[states[removed + column] & 0xFF];
+				}
+			}
+
+			int window = 0;
+			for(int column = 0; column < side - 1; column++) {
+				window += columnCounts[column];
+			}
+
+			int index = (y + range) * stride + range;
+			for(int x = 0; x < width; x++, index++) {
+				window += columnCounts[x + side - 1];
+				int state = states[index] & 0xFF;
+				int next = transitions[state * counts + window - self * LIVING[state]] & 0xFF;
+				nextStates[index] = (byte) next;
+				living += LIVING[next];
+				window -= columnCounts[x];
+			}
+		}
+
+		population = living;
+	}
+
+	/*
+	 * Computes the next generation, counting each diamond neighborhood Cell by Cell
+	 */
+	private void stepVonNeumann() {
+		byte[] transitions = rule.getTransitions();
+		int counts = rule.getMaximumCount() + 1;
+		int self = rule.countsSelf() ? 0 : 1;
+		int living = 0;
+
+		for(int y = 0; y < height; y++) {
+			int index = (y + range) * stride + range;
+			for(int x = 0; x < width; x++, index++) {
+				int count = 0;
+				for(int dy = -range; dy <= range; dy++) {
+					int reach = range - Math.abs(dy);
+					int row = index + dy * stride;
+					for(int dx = -reach; dx <= reach; dx++) {
+						count += LIVING[states[row + dx] & 0xFF];
+					}
+				}
+
+				int state = states[index] & 0xFF;
+				int next = transitions[state * counts + count - self * LIVING[state]] & 0xFF;
+				nextStates[index] = (byte) next;
+				living += LIVING[next];
+			}
+		}
+
+		population = living;
+	}
+
+	/*
+	 * Returns how many Cells are alive, from the count kept by nextGen and setState
+	 */
+	public int aliveCount() {
+		return population;
+	}
+
+	/*
+	 * Returns the Rule the game follows (getter)
+	 */
+	public Rule getRule() {
+		return rule;
+	}
+
+	/*
+	 * Returns the generation number the game is currently on as an integer
+	 */
+	public int getGenNumber() {
+		return generationNumber;
+	}
+
+	/*
+	 * Returns the width of the board as an integer
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/*
+	 * Returns the height of the board as an integer
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/*
+	 * Works out the next state of the Cell at (x, y) the slow way, by counting every
+	 * neighbor, to check nextGen against
+	 */
+	private static int slowNextState(MultiStateGameOfLife game, int x, int y) {
+		Rule rule = game.getRule();
+		int range = rule.getRange();
+		int count = 0;
+
+		for(int dy = -range; dy <= range; dy++) {
+			for(int dx = -range; dx <= range; dx++) {
+				boolean inside = rule.getNeighborhood() == Rule.MOORE || Math.abs(dx) + Math.abs(dy) <= range;
+				boolean self = dx == 0 && dy == 0;
+				if(inside && (!self || rule.countsSelf()) && game.isAlive(x + dx, y + dy)) {
+					count++;
+				}
+			}
+		}
+
+		return rule.getTransitions()[game.getState(x, y) * (rule.getMaximumCount() + 1) + count] & 0xFF;
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(15);
+
+		// Conway's rules must give the same generations as a GameOfLife
+		GameOfLife conway = new GameOfLife(90, 70);
+		for(int x = 0; x < 90; x++) {
+			for(int y = 0; y < 70; y++) {
+				if(random.nextInt(3) == 0) {
+					conway.revive(x, y);
+				}
+			}
+		}
+		MultiStateGameOfLife multi = new MultiStateGameOfLife(conway, Rule.CONWAY);
+		conway.setStepper(new SwarStepper());
+		for(int generation = 1; generation <= 100; generation++) {
+			conway.nextGen();
+			multi.nextGen();
+			for(int x = 0; x < 90; x++) {
+				for(int y = 0; y < 70; y++) {
+					if(conway.isAlive(x, y) != multi.isAlive(x, y)) {
+						throw new AssertionError("B3/S23 generation " + generation + " differs at (" + x + ", " + y + ")");
+					}
+				}
+			}
+		}
+		System.out.println("B3/S23 matches GameOfLife for 100 generations, " + multi.aliveCount() + " Cells alive");
+
+		// a GameOfLife running HighLife skips its Conway-only Stepper for the rule table
+		Rule highLife = Rule.parse("B36/S23");
+		multi = new MultiStateGameOfLife(conway, highLife);
+		conway.setRule(highLife);
+		for(int generation = 1; generation <= 50; generation++) {
+			conway.nextGen();
+			multi.nextGen();
+			for(int x = 0; x < 90; x++) {
+				for(int y = 0; y < 70; y++) {
+					if(conway.isAlive(x, y) != multi.isAlive(x, y)) {
+						throw new AssertionError("B36/S23 generation " + generation + " differs at (" + x + ", " + y + ")");
+					}
+				}
+			}
+		}
+		System.out.println("B36/S23 matches GameOfLife for 50 generations, " + multi.aliveCount() + " Cells alive");
+
+		// the other rules are checked against counting every neighbor
+		String[] rules = {"B2/S/C3", "B2/S/C200", "B3678/S34678", "R5,C2,M1,S34..58,B34..45,NM", "R3,C4,M0,S6..14,B7..10,NN"};
+		for(String text: rules) {
+			MultiStateGameOfLife game = new MultiStateGameOfLife(60, 50, Rule.parse(text));
+			for(int x = 0; x < 60; x++) {
+				for(int y = 0; y < 50; y++) {
+					if(random.nextInt(2) == 0) {
+						game.revive(x, y);
+					}
+				}
+			}
+
+			// dying Cells need more generations than that to reach the states above 127
+			int generations = Math.max(30, game.getRule().getStates() - 50);
+			for(int generation = 1; generation <= generations; generation++) {
+				int[] expected = new int[60 * 50];
+				for(int x = 0; x < 60; x++) {
+					for(int y = 0; y < 50; y++) {
+						expected[y * 60 + x] = slowNextState(game, x, y);
+					}
+				}
+
+				game.nextGen();
+				int living = 0;
+				for(int x = 0; x < 60; x++) {
+					for(int y = 0; y < 50; y++) {
+						if(game.getState(x, y) != expected[y * 60 + x]) {
+							throw new AssertionError(text + " generation " + generation + " differs at (" + x + ", " + y + ")");
+						}
+						living += (expected[y * 60 + x] == 1) ? 1 : 0;
+					}
+				}
+				if(living != game.aliveCount()) {
+					throw new AssertionError(text + " counts " + game.aliveCount() + " living Cells instead of " + living);
+				}
+			}
+			System.out.println(text + " matches the Cell by Cell count for " + generations + " generations, " + game.aliveCount() + " Cells alive");
+		}
+	}
+}
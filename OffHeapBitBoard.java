@@ -0,0 +1,253 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * This class stores a board too big for a BitBoard: the width and height are longs,
+ * and the packed rows are kept outside the Java heap in direct ByteBuffers, so a board
+ * of tens of billions of Cells costs the garbage collector nothing to scan
+ * The layout is the same as a BitBoard's: every row is packed into longs with a ghost
+ * square on either side, and a dead ghost row lies above and below the board, so the
+ * square at (x, y) is bit x + 1 of row y + 1
+ * A ByteBuffer holds at most 2 GB, so the rows are split between chunks of whole rows,
+ * 1 GB each unless another size is given; a single row can therefore be up to 1 GB,
+ * or about 8.5 billion Cells, wide
+ * The memory is given back as soon as close is called, through the JDK's buffer
+ * cleaner, rather than whenever the garbage collector notices the buffers are gone;
+ * direct memory is limited by -XX:MaxDirectMemorySize, which must be raised to the
+ * size of the board for the largest ones
+ */
+public class OffHeapBitBoard implements AutoCloseable {
+
+	// the size of the chunks the rows are split between unless another is given
+	static final long DEFAULT_CHUNK_BYTES = 1L << 30;
+
+	// frees a direct ByteBuffer at once, or is null if the JDK does not allow it
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafe = theUnsafe.get(null);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		}
+		catch(ReflectiveOperationException | RuntimeException e) {
+			// the buffers are then freed by the garbage collector after close drops them
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	// instance data
+	private long width;
+	private long height;
+	private int wordsPerRow;
+	private int rowBytes;
+	private long rowsPerChunk;
+	private ByteBuffer[] chunks;
+	private long population;
+
+	/*
+	 * Constructs an OffHeapBitBoard given long dimensions with every square dead
+	 */
+	public OffHeapBitBoard(long width, long height) {
+		this(width, height, DEFAULT_CHUNK_BYTES);
+	}
+
+	/*
+	 * Constructs an OffHeapBitBoard whose rows are split between chunks of about the
+	 * given number of bytes
+	 */
+	OffHeapBitBoard(long width, long height, long chunkBytes) {
+		if(width < 1 || height < 1) {
+			throw new IllegalArgumentException("An OffHeapBitBoard must have a positive width and height");
+		}
+
+		long words = (width + 2 + 63) >>> 6;
+		if(words * Long.BYTES > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("A row of " + width + " Cells does not fit in one ByteBuffer");
+		}
+
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (int) words;
+		this.rowBytes = wordsPerRow * Long.BYTES;
+		this.rowsPerChunk = Math.max(1, Math.min(chunkBytes, Integer.MAX_VALUE) / rowBytes);
+
+		long rows = height + 2;
+		long chunkCount = (rows + rowsPerChunk - 1) / rowsPerChunk;
+		if(chunkCount > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("A " + width + "x" + height + " board needs too many chunks");
+		}
+
+		// a new direct ByteBuffer is filled with zeros, so every square starts dead
+		this.chunks = new ByteBuffer[(int) chunkCount];
+		for(int i = 0; i < chunks.length; i++) {
+			long chunkRows = Math.min(rowsPerChunk, rows - i * rowsPerChunk);
+			chunks[i] = ByteBuffer.allocateDirect((int) (chunkRows * rowBytes)).order(ByteOrder.nativeOrder());
+		}
+	}
+
+	/*
+	 * Throws an IllegalStateException once the memory has been freed
+	 */
+	public void checkOpen() {
+		if(chunks == null) {
+			throw new IllegalStateException("The OffHeapBitBoard was closed");
+		}
+	}
+
+	/*
+	 * Returns the chunk holding row y, where row -1 and row height are the ghost rows
+	 */
+	ByteBuffer chunkOf(long y) {
+		return chunks[(int) ((y + 1) / rowsPerChunk)];
+	}
+
+	/*
+	 * Returns the byte offset of row y in its chunk
+	 */
+	int offsetOf(long y) {
+		return (int) ((y + 1) % rowsPerChunk) * rowBytes;
+	}
+
+	/*
+	 * Returns the bits of long i of a row that hold real squares rather than ghosts
+	 */
+	long interiorMask(int i) {
+		long start = (long) i << 6;
+		if(start > width) {
+			return 0L;
+		}
+
+		long mask = (i == 0) ? ~1L : -1L;
+		long end = width - start;
+		if(end < 63) {
+			mask &= -1L >>> (63 - end);
+		}
+		return mask;
+	}
+
+	/*
+	 * Checks to see if the square at (x, y) is alive; squares outside the board are dead
+	 */
+	public boolean isAlive(long x, long y) {
+		checkOpen();
+		if(!inBounds(x, y)) {
+			return false;
+		}
+
+		long column = x + 1;
+		long word = chunkOf(y).getLong(offsetOf(y) + (int) (column >>> 6) * Long.BYTES);
+		return ((word >>> column) & 1L) != 0;
+	}
+
+	/*
+	 * Sets the square at (x, y) to alive or dead; locations outside the board are ignored
+	 */
+	public void setAlive(long x, long y, boolean alive) {
+		checkOpen();
+		if(!inBounds(x, y)) {
+			return;
+		}
+
+		long column = x + 1;
+		ByteBuffer chunk = chunkOf(y);
+		int index = offsetOf(y) + (int) (column >>> 6) * Long.BYTES;
+		long word = chunk.getLong(index);
+		long bit = 1L << column;
+		if(((word & bit) != 0) != alive) {
+			chunk.putLong(index, word ^ bit);
+			population += alive ? 1 : -1;
+		}
+	}
+
+	/*
+	 * Checks if a location (x, y) is on the board
+	 */
+	public boolean inBounds(long x, long y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/*
+	 * Kills every square, ghosts included
+	 */
+	public void clear() {
+		checkOpen();
+		for(ByteBuffer chunk: chunks) {
+			for(int index = 0; index < chunk.capacity(); index += Long.BYTES) {
+				chunk.putLong(index, 0L);
+			}
+		}
+		population = 0;
+	}
+
+	/*
+	 * Returns how many squares are alive, from the count kept as squares are set
+	 */
+	public long aliveCount() {
+		return population;
+	}
+
+	/*
+	 * Sets the count of living squares, for a stepper that has just written every row
+	 */
+	void setPopulation(long population) {
+		this.population = population;
+	}
+
+	/*
+	 * Returns the width of the board as a long (getter)
+	 */
+	public long getWidth() {
+		return width;
+	}
+
+	/*
+	 * Returns the height of the board as a long (getter)
+	 */
+	public long getHeight() {
+		return height;
+	}
+
+	/*
+	 * Returns the number of longs in each packed row, ghost squares included
+	 */
+	int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	/*
+	 * Returns how many bytes of direct memory the board holds
+	 */
+	public long getMemoryBytes() {
+		return (height + 2) * rowBytes;
+	}
+
+	/*
+	 * Frees the direct memory at once; the board cannot be used afterwards
+	 */
+	public void close() {
+		if(chunks == null) {
+			return;
+		}
+
+		ByteBuffer[] freed = chunks;
+		chunks = null;
+		if(INVOKE_CLEANER != null) {
+			for(ByteBuffer chunk: freed) {
+				try {
+					INVOKE_CLEANER.invoke(UNSAFE, chunk);
+				}
+				catch(ReflectiveOperationException e) {
+					// the garbage collector frees this chunk instead
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,335 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+ * This class runs John Conway's Game of Life on a board held in two OffHeapBitBoards,
+ * for boards with more Cells than a GameOfLife can address: the coordinates and the
+ * population are longs, and only a few objects of each board live on the Java heap
+ * Each generation is computed with the SwarStepper's kernel, 64 Cells per long, into
+ * the back board, and the two boards then swap roles, as in a GameOfLife
+ * Large boards are split into bands of rows computed on the common ForkJoinPool; every
+ * band reads only the current board and writes only its own rows of the next one
+ * The off-heap memory of both boards is freed when the game is closed, so it should be
+ * used in a try-with-resources statement
+ */
+public class OffHeapGameOfLife implements AutoCloseable {
+
+	// boards with fewer longs than this are computed as a single band
+	private static final long PARALLEL_WORDS = 1L << 16;
+
+	// instance data
+	private OffHeapBitBoard board;
+	private OffHeapBitBoard nextBoard;
+	private long generationNumber;
+
+	/*
+	 * Constructs an OffHeapGameOfLife given long board dimensions with every Cell dead
+	 */
+	public OffHeapGameOfLife(long width, long height) {
+		this(width, height, OffHeapBitBoard.DEFAULT_CHUNK_BYTES);
+	}
+
+	/*
+	 * Constructs an OffHeapGameOfLife whose boards are split into chunks of about the
+	 * given number of bytes
+	 */
+	OffHeapGameOfLife(long width, long height, long chunkBytes) {
+		this.board = new OffHeapBitBoard(width, height, chunkBytes);
+		try {
+			this.nextBoard = new OffHeapBitBoard(width, height, chunkBytes);
+		}
+		catch(RuntimeException | OutOfMemoryError e) {
+			board.close();
+			throw e;
+		}
+	}
+
+	/*
+	 * Constructs an OffHeapGameOfLife holding the current generation of a GameOfLife,
+	 * continuing from its generation number; only Conway's rules can be run off the heap
+	 */
+	public OffHeapGameOfLife(GameOfLife game) {
+		this(game.getWidth(), game.getHeight());
+
+		if(!game.getRule().isConway() || game.getTopology() != Topology.PLANE) {
+			close();
+			throw new IllegalArgumentException("An OffHeapGameOfLife only runs B3/S23 on a PLANE");
+		}
+
+		for(int y = 0; y < game.getHeight(); y++) {
+			for(int x = 0; x < game.getWidth(); x++) {
+				if(game.isAlive(x, y)) {
+					revive(x, y);
+				}
+			}
+		}
+		this.generationNumber = game.getGenNumber();
+	}
+
+	/*
+	 * Checks to see if the Cell at (x, y) is alive
+	 */
+	public boolean isAlive(long x, long y) {
+		return board.isAlive(x, y);
+	}
+
+	/*
+	 * Sets a Cell's state to alive at (x, y)
+	 */
+	public void revive(long x, long y) {
+		board.setAlive(x, y, true);
+	}
+
+	/*
+	 * Sets a Cell's state to dead at (x, y)
+	 */
+	public void kill(long x, long y) {
+		board.setAlive(x, y, false);
+	}
+
+	/*
+	 * Clears the board by setting every Cell to dead
+	 */
+	public void clear() {
+		board.clear();
+	}
+
+	/*
+	 * Returns how many Cells are alive
+	 */
+	public long aliveCount() {
+		return board.aliveCount();
+	}
+
+	/*
+	 * Advances from one generation to the next by computing every row into the back
+	 * board, in bands on the common ForkJoinPool when the board is large, and then
+	 * swapping the two boards
+	 */
+	public void nextGen() {
+		board.checkOpen();
+		long height = board.getHeight();
+		long words = height * board.getWordsPerRow();
+		int bands = 1;
+		if(words >= PARALLEL_WORDS) {
+			bands = (int) Math.min(height, 4L * ForkJoinPool.getCommonPoolParallelism());
+		}
+
+		long living = 0;
+		if(bands == 1) {
+			living = stepRows(0, height);
+		}
+		else {
+			List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+			for(int band = 0; band < bands; band++) {
+				long fromRow = height * band / bands;
+				long toRow = height * (band + 1) / bands;
+				tasks.add(new Callable<Long>() {
+
+					@Override
+					public Long call() {
+						return stepRows(fromRow, toRow);
+					}
+
+				});
+			}
+
+			try {
+				for(Future<Long> result: ForkJoinPool.commonPool().invokeAll(tasks)) {
+					living += result.get();
+				}
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while computing a generation", e);
+			}
+			catch(ExecutionException e) {
+				throw new IllegalStateException("A band of rows failed", e.getCause());
+			}
+		}
+
+		nextBoard.setPopulation(living);
+		OffHeapBitBoard previousBoard = board;
+		this.board = nextBoard;
+		this.nextBoard = previousBoard;
+		this.generationNumber++;
+	}
+
+	/*
+	 * Writes rows fromRow (inclusive) to toRow (exclusive) of the next generation into
+	 * the back board and returns how many Cells are alive in them
+	 */
+	private long stepRows(long fromRow, long toRow) {
+		int wordsPerRow = board.getWordsPerRow();
+		long living = 0;
+
+		for(long y = fromRow; y < toRow; y++) {
+			ByteBuffer aboveChunk = board.chunkOf(y - 1);
+			ByteBuffer middleChunk = board.chunkOf(y);
+			ByteBuffer belowChunk = board.chunkOf(y + 1);
+			ByteBuffer targetChunk = nextBoard.chunkOf(y);
+			int above = board.offsetOf(y - 1);
+			int middle = board.offsetOf(y);
+			int below = board.offsetOf(y + 1);
+			int target = nextBoard.offsetOf(y);
+
+			// the longs to the west of, at, and to the east of position i in each row
+			long abovePrevious = 0L, aboveWord = aboveChunk.getLong(above), aboveNext;
+			long middlePrevious = 0L, middleWord = middleChunk.getLong(middle), middleNext;
+			long belowPrevious = 0L, belowWord = belowChunk.getLong(below), belowNext;
+
+			for(int i = 0; i < wordsPerRow; i++) {
+				if(i + 1 < wordsPerRow) {
+					int next = (i + 1) * Long.BYTES;
+					aboveNext = aboveChunk.getLong(above + next);
+					middleNext = middleChunk.getLong(middle + next);
+					belowNext = belowChunk.getLong(below + next);
+				}
+				else {
+					aboveNext = 0L;
+					middleNext = 0L;
+					belowNext = 0L;
+				}
+
+				long word = SwarStepper.nextWord(abovePrevious, aboveWord, aboveNext,
+						middlePrevious, middleWord, middleNext,
+						belowPrevious, belowWord, belowNext) & board.interiorMask(i);
+				targetChunk.putLong(target + i * Long.BYTES, word);
+				living += Long.bitCount(word);
+
+				abovePrevious = aboveWord;
+				aboveWord = aboveNext;
+				middlePrevious = middleWord;
+				middleWord = middleNext;
+				belowPrevious = belowWord;
+				belowWord = belowNext;
+			}
+		}
+
+		return living;
+	}
+
+	/*
+	 * Returns the generation number the game is currently on as a long
+	 */
+	public long getGenNumber() {
+		return generationNumber;
+	}
+
+	/*
+	 * Returns the width of the board as a long
+	 */
+	public long getWidth() {
+		return board.getWidth();
+	}
+
+	/*
+	 * Returns the height of the board as a long
+	 */
+	public long getHeight() {
+		return board.getHeight();
+	}
+
+	/*
+	 * Returns how many bytes of direct memory the two boards hold
+	 */
+	public long getMemoryBytes() {
+		return board.getMemoryBytes() + nextBoard.getMemoryBytes();
+	}
+
+	/*
+	 * Frees the off-heap memory of both boards; the game cannot be used afterwards
+	 */
+	public void close() {
+		board.close();
+		nextBoard.close();
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(22);
+
+		// small chunks put chunk boundaries between the rows of many neighborhoods
+		int[] widths = {1, 62, 63, 64, 65, 127, 300};
+		for(int width: widths) {
+			GameOfLife expected = new GameOfLife(width, 257);
+			for(int x = 0; x < width; x++) {
+				for(int y = 0; y < 257; y++) {
+					if(random.nextInt(100) < 35) {
+						expected.revive(x, y);
+					}
+				}
+			}
+
+			try(OffHeapGameOfLife game = new OffHeapGameOfLife(width, 257, 1000)) {
+				for(int x = 0; x < width; x++) {
+					for(int y = 0; y < 257; y++) {
+						if(expected.isAlive(x, y)) {
+							game.revive(x, y);
+						}
+					}
+				}
+
+				expected.setStepper(new SwarStepper());
+				for(int generation = 1; generation <= 100; generation++) {
+					expected.nextGen();
+					game.nextGen();
+				}
+				for(int x = 0; x < width; x++) {
+					for(int y = 0; y < 257; y++) {
+						if(game.isAlive(x, y) != expected.isAlive(x, y)) {
+							throw new AssertionError("Width " + width + " differs at (" + x + ", " + y + ")");
+						}
+					}
+				}
+				if(game.aliveCount() != expected.aliveCount()) {
+					throw new AssertionError("Width " + width + " counts " + game.aliveCount() + " instead of "
+							+ expected.aliveCount());
+				}
+			}
+		}
+		System.out.println("OffHeapGameOfLife matches GameOfLife for " + widths.length + " widths over 100 generations");
+
+		// a board of more than 2^31 Cells, seeded with R-pentominoes far apart
+		long side = (args.length > 0) ? Long.parseLong(args[0]) : 65536;
+		OffHeapGameOfLife big = new OffHeapGameOfLife(side, side);
+		for(long corner = 100; corner + 3 < side; corner += side / 16) {
+			big.revive(corner + 1, corner);
+			big.revive(corner + 2, corner);
+			big.revive(corner, corner + 1);
+			big.revive(corner + 1, corner + 1);
+			big.revive(corner + 1, corner + 2);
+		}
+
+		Runtime runtime = Runtime.getRuntime();
+		long start = System.nanoTime();
+		for(int generation = 0; generation < 10; generation++) {
+			big.nextGen();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%dx%d: %d Cells alive after 10 generations, %.3g Cells per second, "
+				+ "%d MB off the heap, %d MB used on it", side, side, big.aliveCount(), 10.0 * side * side * 1e9 / elapsed,
+				big.getMemoryBytes() >> 20, (runtime.totalMemory() - runtime.freeMemory()) >> 20));
+
+		big.close();
+		try {
+			big.isAlive(0, 0);
+			throw new AssertionError("A closed board could still be read");
+		}
+		catch(IllegalStateException e) {
+			System.out.println("The closed board's memory was freed");
+		}
+		try {
+			big.nextGen();
+			throw new AssertionError("A closed board could still compute a generation");
+		}
+		catch(IllegalStateException e) {
+			System.out.println("A closed board refuses to compute a generation");
+		}
+	}
+}
@@ -0,0 +1,159 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+ * This class computes generations on several threads by splitting the BitBoard into
+ * horizontal bands of rows and handing each band to another Stepper, called the kernel
+ * Every band reads only the current generation and writes only its own rows of the
+ * next one, so the bands need no locks and the result is the same, bit for bit, as
+ * stepping the whole board on one thread
+ * A ParallelStepper can be constructed with a thread count, in which case it runs on
+ * its own ForkJoinPool, or with any ExecutorService and a number of bands
+ * This class contains methods to compute the rows of a generation, find the number of
+ * bands, and shut down the pool it created
+ */
+public class ParallelStepper implements Stepper {
+
+	// instance data
+	private Stepper kernel;
+	private ExecutorService executor;
+	private boolean ownsExecutor;
+	private int bandCount;
+
+	/*
+	 * Constructs a ParallelStepper that runs the SWAR kernel on its own ForkJoinPool
+	 * with the given number of threads
+	 */
+	public ParallelStepper(int threads) {
+		this(new SwarStepper(), threads);
+	}
+
+	/*
+	 * Constructs a ParallelStepper that runs the given kernel on its own ForkJoinPool
+	 * with the given number of threads, using a few bands per thread to even out the load
+	 */
+	public ParallelStepper(Stepper kernel, int threads) {
+		this(kernel, new ForkJoinPool(threads), threads * 4);
+		this.ownsExecutor = true;
+	}
+
+	/*
+	 * Constructs a ParallelStepper that runs the given kernel on the given executor,
+	 * splitting every generation into the given number of bands
+	 */
+	public ParallelStepper(Stepper kernel, ExecutorService executor, int bandCount) {
+		if(bandCount < 1) {
+			throw new IllegalArgumentException("A ParallelStepper needs at least one band");
+		}
+
+		this.kernel = kernel;
+		this.executor = executor;
+		this.ownsExecutor = false;
+		this.bandCount = bandCount;
+	}
+
+	/*
+	 * Writes rows fromRow (inclusive) to toRow (exclusive) of the generation after
+	 * current into next, computing the bands in parallel and waiting for all of them
+	 */
+	public void stepRows(BitBoard current, BitBoard next, int fromRow, int toRow) {
+		int rows = toRow - fromRow;
+		int bands = Math.min(bandCount, rows);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bands);
+
+		for(int band = 0; band < bands; band++) {
+			int bandStart = fromRow + (int) ((long) rows * band / bands);
+			int bandEnd = fromRow + (int) ((long) rows * (band + 1) / bands);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					kernel.stepRows(current, next, bandStart, bandEnd);
+					return null;
+				}
+
+			});
+		}
+
+		try {
+			for(Future<Void> result: executor.invokeAll(tasks)) {
+				result.get();
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while computing a generation", e);
+		}
+		catch(ExecutionException e) {
+			throw new IllegalStateException("A band of the generation could not be computed", e.getCause());
+		}
+	}
+
+	/*
+	 * Checks if the kernel computing each band supports the given Rule
+	 */
+	public boolean supports(Rule rule) {
+		return kernel.supports(rule);
+	}
+
+	/*
+	 * Returns the number of bands each generation is split into (getter)
+	 */
+	public int getBandCount() {
+		return bandCount;
+	}
+
+	/*
+	 * Shuts down the ForkJoinPool this ParallelStepper created; an executor passed
+	 * to the constructor is left for its owner to shut down
+	 */
+	public void shutdown() {
+		if(ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(7);
+		GameOfLife sequential = new GameOfLife(301, 257);
+		GameOfLife parallel = new GameOfLife(301, 257);
+
+		for(int x = 0; x < sequential.getWidth(); x++) {
+			for(int y = 0; y < sequential.getHeight(); y++) {
+				if(random.nextInt(3) == 0) {
+					sequential.revive(x, y);
+					parallel.revive(x, y);
+				}
+			}
+		}
+
+		ParallelStepper stepper = new ParallelStepper(Runtime.getRuntime().availableProcessors());
+		parallel.setStepper(stepper);
+
+		// the parallel bands must match the sequential per-Cell generations exactly
+		for(int generation = 1; generation <= 50; generation++) {
+			sequential.nextGen();
+			parallel.nextGen();
+			for(int x = 0; x < sequential.getWidth(); x++) {
+				for(int y = 0; y < sequential.getHeight(); y++) {
+					if(sequential.isAlive(x, y) != parallel.isAlive(x, y)) {
+						throw new AssertionError("Generation " + generation + " differs at (" + x + ", " + y + ")");
+					}
+				}
+			}
+			if(sequential.aliveCount() != parallel.aliveCount()) {
+				throw new AssertionError("Generation " + generation + " counts " + parallel.aliveCount()
+						+ " living Cells instead of " + sequential.aliveCount());
+			}
+		}
+
+		stepper.shutdown();
+		System.out.println("50 parallel generations match the sequential ones, " + parallel.aliveCount() + " Cells alive");
+	}
+}
@@ -0,0 +1,513 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * This class reads and writes Game of Life patterns in the two most common text
+ * formats, run length encoded (RLE) files and Life 1.06 files
+ * An RLE file starts with a header such as "x = 3, y = 3, rule = B3/S23", followed by
+ * runs like "2o3b$" where o is a living Cell, b a dead one, $ the end of a row and !
+ * the end of the pattern; a Life 1.06 file starts with "#Life 1.06" followed by one
+ * "x y" line for every living Cell
+ * The files are read and written a block of bytes at a time, never as a whole String
+ * and never as Cell objects: RLE runs are written straight into the packed rows of a
+ * BitBoard, and exports walk the packed rows a long at a time, so patterns of hundreds
+ * of megabytes can be loaded and saved
+ * Lines starting with # in an RLE file are comments and are skipped; the rule in the
+ * header is given to a GameOfLife read from the file, and RLE files are written with
+ * the game's own rule
+ */
+public class PatternIO {
+
+	// the longest line written to an RLE file, as the format recommends
+	private static final int RLE_LINE_LENGTH = 70;
+
+	/*
+	 * Reads bytes from an InputStream through a buffer, without the locking of
+	 * BufferedInputStream, and keeps track of the line number for error messages
+	 */
+	private static final class ByteReader {
+		private InputStream in;
+		private byte[] buffer = new byte[1 << 16];
+		private int position;
+		private int limit;
+		private int line = 1;
+		private boolean ended;
+
+		ByteReader(InputStream in) {
+			this.in = in;
+		}
+
+		/*
+		 * Returns the next byte as a value from 0 to 255, or -1 at the end of the stream
+		 */
+		int read() throws IOException {
+			if(position == limit) {
+				limit = in.read(buffer, 0, buffer.length);
+				position = 0;
+				if(limit <= 0) {
+					limit = 0;
+					ended = true;
+					return -1;
+				}
+			}
+
+			int b = buffer[position++] & 0xFF;
+			if(b == '\n') {
+				line++;
+			}
+			return b;
+		}
+
+		/*
+		 * Skips the rest of the current line
+		 */
+		void skipLine() throws IOException {
+			int b;
+			do {
+				b = read();
+			} while(b != '\n' && b != -1);
+		}
+
+		/*
+		 * Reads the rest of the current line as a String; only used for short header lines
+		 */
+		String readLine() throws IOException {
+			StringBuilder text = new StringBuilder();
+			int b = read();
+			while(b != '\n' && b != -1) {
+				if(b != '\r') {
+					text.append((char) b);
+				}
+				b = read();
+			}
+			return text.toString();
+		}
+
+		IOException error(String message) {
+			return new IOException(message + " on line " + line);
+		}
+	}
+
+	/*
+	 * Holds the size and the rule, if there is one, given by an RLE header line
+	 */
+	private static final class RleHeader {
+		private int width = -1;
+		private int height = -1;
+		private Rule rule;
+	}
+
+	/*
+	 * Reads an RLE file into a new GameOfLife sized by the file's header
+	 */
+	public static GameOfLife readRle(InputStream in) throws IOException {
+		ByteReader reader = new ByteReader(in);
+		RleHeader header = readRleHeader(reader);
+		GameOfLife game = new GameOfLife(Math.max(header.width, 1), Math.max(header.height, 1));
+		if(header.rule != null) {
+			if(!header.rule.isTwoStateRangeOne()) {
+				throw reader.error("The rule " + header.rule + " needs a MultiStateGameOfLife");
+			}
+			game.setRule(header.rule);
+		}
+		readRleBody(reader, game.getBoard(), 0, 0);
+		return game;
+	}
+
+	/*
+	 * Reads an RLE file into an existing GameOfLife with the pattern's top left corner
+	 * at (left, top); the part of the pattern outside the board is dropped, and the
+	 * game keeps its own rule
+	 */
+	public static void readRle(InputStream in, GameOfLife game, int left, int top) throws IOException {
+		ByteReader reader = new ByteReader(in);
+		readRleHeader(reader);
+		readRleBody(reader, game.getBoard(), left, top);
+	}
+
+	/*
+	 * Skips the comment lines of an RLE file and returns the width, height and rule its
+	 * header line gives; the rule comes last and may hold commas of its own
+	 */
+	private static RleHeader readRleHeader(ByteReader reader) throws IOException {
+		while(true) {
+			String line = reader.readLine();
+			String trimmed = line.trim();
+
+			if(trimmed.isEmpty() || trimmed.startsWith("#")) {
+				if(reader.ended) {
+					throw reader.error("Missing RLE header");
+				}
+				continue;
+			}
+
+			RleHeader header = new RleHeader();
+			int ruleField = trimmed.indexOf("rule");
+			if(ruleField >= 0) {
+				int equals = trimmed.indexOf('=', ruleField);
+				if(equals < 0) {
+					throw reader.error("Malformed RLE header field \"" + trimmed.substring(ruleField) + "\"");
+				}
+				try {
+					header.rule = Rule.parse(trimmed.substring(equals + 1));
+				}
+				catch(IllegalArgumentException e) {
+					throw reader.error(e.getMessage());
+				}
+				trimmed = trimmed.substring(0, ruleField);
+			}
+
+			for(String field: trimmed.split(",")) {
+				if(field.trim().isEmpty()) {
+					continue;
+				}
+				String[] parts = field.split("=");
+				if(parts.length != 2) {
+					throw reader.error("Malformed RLE header field \"" + field.trim() + "\"");
+				}
+
+				String name = parts[0].trim();
+				try {
+					if(name.equals("x")) {
+						header.width = Integer.parseInt(parts[1].trim());
+					}
+					else if(name.equals("y")) {
+						header.height = Integer.parseInt(parts[1].trim());
+					}
+				}
+				catch(NumberFormatException e) {
+					throw reader.error("Malformed RLE size \"" + field.trim() + "\"");
+				}
+			}
+
+			if(header.width < 0 || header.height < 0) {
+				throw reader.error("The RLE header has no x and y size");
+			}
+			return header;
+		}
+	}
+
+	/*
+	 * Reads the runs of an RLE file into a BitBoard, with the pattern's top left corner
+	 * at (left, top), until the ! that ends the pattern
+	 */
+	private static void readRleBody(ByteReader reader, BitBoard board, int left, int top) throws IOException {
+		long x = left;
+		long y = top;
+		long count = 0;
+
+		for(int b = reader.read(); b != '!'; b = reader.read()) {
+			if(b == -1) {
+				throw reader.error("The RLE pattern ends without a !");
+			}
+			else if(b >= '0' && b <= '9') {
+				count = Math.min(count * 10 + (b - '0'), Integer.MAX_VALUE);
+			}
+			else if(b == '$') {
+				y += (count == 0) ? 1 : count;
+				x = left;
+				count = 0;
+			}
+			else if(b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+				continue;
+			}
+			else if(b == '#') {
+				reader.skipLine();
+			}
+			else if(Character.isLetter(b)) {
+				long run = (count == 0) ? 1 : count;
+				// every state other than b (or . in multi-state files) counts as alive
+				if(b != 'b' && x < Integer.MAX_VALUE && y < Integer.MAX_VALUE) {
+					board.setRun((int) x, (int) y, (int) run, true);
+				}
+				x += run;
+				count = 0;
+			}
+			else if(b == '.') {
+				x += (count == 0) ? 1 : count;
+				count = 0;
+			}
+			else {
+				throw reader.error("Unexpected character '" + (char) b + "' in RLE pattern");
+			}
+		}
+	}
+
+	/*
+	 * Reads a Life 1.06 file into an existing GameOfLife, placing the file's (0, 0) at
+	 * (left, top); Life 1.06 files carry no size, so Cells outside the board are dropped
+	 */
+	public static void readLife106(InputStream in, GameOfLife game, int left, int top) throws IOException {
+		ByteReader reader = new ByteReader(in);
+		BitBoard board = game.getBoard();
+		long[] coordinates = new long[2];
+
+		int b = reader.read();
+		while(b != -1) {
+			if(b == '#') {
+				reader.skipLine();
+				b = reader.read();
+				continue;
+			}
+
+			// reads two whitespace separated integers without building Strings
+			int found = 0;
+			while(b != '\n' && b != -1) {
+				if(b == '-' || (b >= '0' && b <= '9')) {
+					if(found == 2) {
+						throw reader.error("Too many numbers in a Life 1.06 line");
+					}
+
+					boolean negative = (b == '-');
+					long value = negative ? 0 : b - '0';
+					b = reader.read();
+					while(b >= '0' && b <= '9') {
+						value = Math.min(value * 10 + (b - '0'), Integer.MAX_VALUE);
+						b = reader.read();
+					}
+					coordinates[found++] = negative ? -value : value;
+				}
+				else if(b == ' ' || b == '\t' || b == '\r') {
+					b = reader.read();
+				}
+				else {
+					throw reader.error("Unexpected character '" + (char) b + "' in Life 1.06 pattern");
+				}
+			}
+
+			if(found == 2) {
+				long x = left + coordinates[0];
+				long y = top + coordinates[1];
+				if(x >= 0 && x < board.getWidth() && y >= 0 && y < board.getHeight()) {
+					board.setAlive((int) x, (int) y, true);
+				}
+			}
+			else if(found == 1) {
+				throw reader.error("A Life 1.06 line needs both an x and a y");
+			}
+
+			b = reader.read();
+		}
+	}
+
+	/*
+	 * Writes the current generation of a GameOfLife as an RLE file, leaving out the dead
+	 * Cells at the end of each row and merging runs of empty rows
+	 */
+	public static void writeRle(GameOfLife game, OutputStream out) throws IOException {
+		BitBoard board = game.getBoard();
+		RleWriter writer = new RleWriter(out);
+		writer.writeAscii("#C Generation " + game.getGenNumber() + "\n");
+		writer.writeAscii("x = " + board.getWidth() + ", y = " + board.getHeight() + ", rule = " + game.getRule() + "\n");
+
+		long[] words = board.getWords();
+		int wordsPerRow = board.getWordsPerRow();
+		int pendingRows = 0;
+
+		for(int y = 0; y < board.getHeight(); y++) {
+			int row = board.rowOffset(y);
+			int x = 0;
+
+			// walks the row one run at a time, jumping over whole longs of equal bits
+			while(x < board.getWidth()) {
+				int runEnd = nextChange(words, row, wordsPerRow, x, board.getWidth());
+				boolean alive = board.isAlive(x, y);
+
+				if(alive) {
+					if(pendingRows > 0) {
+						writer.writeRun(pendingRows, '$');
+						pendingRows = 0;
+					}
+					writer.writeRun(runEnd - x, 'o');
+				}
+				else if(runEnd < board.getWidth()) {
+					if(pendingRows > 0) {
+						writer.writeRun(pendingRows, '$');
+						pendingRows = 0;
+					}
+					writer.writeRun(runEnd - x, 'b');
+				}
+				x = runEnd;
+			}
+
+			pendingRows++;
+		}
+
+		writer.writeRun(1, '!');
+		writer.writeAscii("\n");
+		writer.flush();
+	}
+
+	/*
+	 * Returns the first column at or after x, in the row starting at index row, whose
+	 * state differs from the state at x, or width if the row ends first
+	 */
+	private static int nextChange(long[] words, int row, int wordsPerRow, int x, int width) {
+		int column = x + 1;
+		int word = column >>> 6;
+		long flip = ((words[row + word] >>> column) & 1L) != 0 ? -1L : 0L;
+
+		// the bits that differ from the state at x, ignoring the bits before x
+		long differences = (words[row + word] ^ flip) & (-1L << column);
+		while(differences == 0) {
+			word++;
+			if(word >= wordsPerRow) {
+				return width;
+			}
+			differences = words[row + word] ^ flip;
+		}
+
+		int change = (word << 6) + Long.numberOfTrailingZeros(differences) - 1;
+		return Math.min(change, width);
+	}
+
+	/*
+	 * Writes a Life 1.06 file with one line for every living Cell of the current generation
+	 */
+	public static void writeLife106(GameOfLife game, OutputStream out) throws IOException {
+		BitBoard board = game.getBoard();
+		RleWriter writer = new RleWriter(out);
+		writer.writeAscii("#Life 1.06\n");
+
+		long[] words = board.getWords();
+		long[] interiorMask = board.getInteriorMask();
+		int wordsPerRow = board.getWordsPerRow();
+
+		for(int y = 0; y < board.getHeight(); y++) {
+			int row = board.rowOffset(y);
+			for(int word = 0; word < wordsPerRow; word++) {
+				long bits = words[row + word] & interiorMask[word];
+				while(bits != 0) {
+					int x = (word << 6) + Long.numberOfTrailingZeros(bits) - 1;
+					writer.writeNumber(x);
+					writer.writeByte(' ');
+					writer.writeNumber(y);
+					writer.writeByte('\n');
+					bits &= bits - 1;
+				}
+			}
+		}
+
+		writer.flush();
+	}
+
+	/*
+	 * Writes ASCII text to an OutputStream through a buffer, wrapping RLE lines
+	 */
+	private static final class RleWriter {
+		private OutputStream out;
+		private byte[] buffer = new byte[1 << 16];
+		private int position;
+		private int lineLength;
+		private byte[] digits = new byte[20];
+
+		RleWriter(OutputStream out) {
+			this.out = out;
+		}
+
+		void writeByte(int b) throws IOException {
+			if(position == buffer.length) {
+				out.write(buffer, 0, position);
+				position = 0;
+			}
+			buffer[position++] = (byte) b;
+		}
+
+		void writeAscii(String text) throws IOException {
+			for(int i = 0; i < text.length(); i++) {
+				writeByte(text.charAt(i));
+			}
+		}
+
+		void writeNumber(long value) throws IOException {
+			if(value < 0) {
+				writeByte('-');
+				value = -value;
+			}
+
+			int length = 0;
+			do {
+				digits[length++] = (byte) ('0' + value % 10);
+				value /= 10;
+			} while(value != 0);
+
+			while(length > 0) {
+				writeByte(digits[--length]);
+			}
+		}
+
+		/*
+		 * Writes a run such as "12o", leaving out a count of 1 and starting a new line
+		 * before the run would make the line too long
+		 */
+		void writeRun(int count, char tag) throws IOException {
+			int length = 1 + ((count == 1) ? 0 : Integer.toString(count).length());
+			if(lineLength + length > RLE_LINE_LENGTH) {
+				writeByte('\n');
+				lineLength = 0;
+			}
+
+			if(count != 1) {
+				writeNumber(count);
+			}
+			writeByte(tag);
+			lineLength += length;
+		}
+
+		void flush() throws IOException {
+			out.write(buffer, 0, position);
+			position = 0;
+			out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		String gliderGun = "#N Gosper glider gun\n"
+				+ "x = 36, y = 9, rule = B3/S23\n"
+				+ "24bo$22bobo$12b2o6b2o12b2o$11bo3bo4b2o12b2o$2o8bo5bo3b2o$2o8bo3bob2o4b\n"
+				+ "obo$10bo5bo7bo$11bo3bo$12b2o!\n";
+
+		GameOfLife gun = readRle(new ByteArrayInputStream(gliderGun.getBytes(StandardCharsets.US_ASCII)));
+		System.out.println("The glider gun is " + gun.getWidth() + "x" + gun.getHeight() + " with "
+				+ gun.aliveCount() + " living Cells");
+
+		// writes the gun back out and reads it again into a bigger board
+		ByteArrayOutputStream rle = new ByteArrayOutputStream();
+		writeRle(gun, rle);
+		System.out.print(rle.toString("US-ASCII"));
+
+		GameOfLife copy = new GameOfLife(100, 100);
+		readRle(new ByteArrayInputStream(rle.toByteArray()), copy, 10, 20);
+		ByteArrayOutputStream life106 = new ByteArrayOutputStream();
+		writeLife106(copy, life106);
+
+		GameOfLife again = new GameOfLife(100, 100);
+		readLife106(new ByteArrayInputStream(life106.toByteArray()), again, -10, -20);
+		for(int x = 0; x < gun.getWidth(); x++) {
+			for(int y = 0; y < gun.getHeight(); y++) {
+				if(gun.isAlive(x, y) != again.isAlive(x, y)) {
+					throw new AssertionError("The round trip changed the Cell at (" + x + ", " + y + ")");
+				}
+			}
+		}
+		System.out.println("The RLE and Life 1.06 round trip kept all " + again.aliveCount() + " living Cells");
+
+		// a byte of 0xFF in a comment must not read as the end of the file
+		String comment = "#C Conway\u00b4s \u00ff\u00ff gun\n";
+		GameOfLife commented = readRle(new ByteArrayInputStream((comment + gliderGun).getBytes(StandardCharsets.ISO_8859_1)));
+		String life106Text = life106.toString("US-ASCII");
+		int firstLine = life106Text.indexOf('\n') + 1;
+		life106Text = life106Text.substring(0, firstLine) + comment + life106Text.substring(firstLine);
+		GameOfLife commented106 = new GameOfLife(100, 100);
+		readLife106(new ByteArrayInputStream(life106Text.getBytes(StandardCharsets.ISO_8859_1)), commented106, -10, -20);
+		if(commented.aliveCount() != gun.aliveCount() || commented106.aliveCount() != gun.aliveCount()) {
+			throw new AssertionError("A comment with non-ASCII bytes cut the files short: " + commented.aliveCount() + " and "
+					+ commented106.aliveCount() + " living Cells instead of " + gun.aliveCount());
+		}
+		System.out.println("Comments with non-ASCII bytes are skipped in both formats");
+	}
+}
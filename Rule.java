@@ -0,0 +1,409 @@
+import java.util.Arrays;
+
+/*
+ * This class is a compiled cellular automaton rule of the Life family, parsed once
+ * from a rule string and turned into lookup tables that the engines read without
+ * any branching on the rule
+ * Three notations are understood:
+ * B/S notation such as "B3/S23" (Conway's Game of Life), "B36/S23" (HighLife) or
+ * "B3678/S34678" (Day & Night), where a dead Cell with a B count of living neighbors
+ * is born and a living Cell with an S count survives; the older "23/3" form, with
+ * the survival counts first, is read too
+ * Generations notation such as "B2/S/C3" (Brian's Brain) or "345/2/4", where a living
+ * Cell that does not survive goes through C - 2 dying states before it is dead, and
+ * only living Cells count as neighbors
+ * Larger than Life notation such as "R5,C2,M1,S34..58,B34..45,NM" (Bosco's Rule),
+ * with a range R, C states, M1 when a Cell counts itself, survival and birth ranges
+ * of counts, and a Moore (NM) or von Neumann (NN) neighborhood
+ * A GameOfLife can run any two-state rule of range 1 through the nextStates table,
+ * indexed by a Cell's 3x3 neighborhood; the other rules need a MultiStateGameOfLife,
+ * which reads the transitions table, indexed by a Cell's state and count
+ */
+public final class Rule {
+
+	// the neighborhoods a rule can count over
+	public static final int MOORE = 0;
+	public static final int VON_NEUMANN = 1;
+
+	// John Conway's Game of Life
+	public static final Rule CONWAY = parse("B3/S23");
+
+	// instance data
+	private final String notation;
+	private final int range;
+	private final int states;
+	private final int neighborhood;
+	private final boolean countsSelf;
+	private final boolean[] birth;
+	private final boolean[] survival;
+
+	// the compiled tables
+	private final boolean[] nextStates;
+	private final byte[] transitions;
+
+	/*
+	 * Constructs a Rule from its parsed parts and compiles its tables
+	 */
+	private Rule(String notation, int range, int states, int neighborhood, boolean countsSelf,
+			boolean[] birth, boolean[] survival) {
+		this.notation = notation;
+		this.range = range;
+		this.states = states;
+		this.neighborhood = neighborhood;
+		this.countsSelf = countsSelf;
+		this.birth = birth;
+		this.survival = survival;
+
+		// the next state of a living or dead Cell for every 3x3 neighborhood, where bit
+		// (dy + 1) * 3 + (dx + 1) is the Cell at (dx, dy) and bit 4 is the Cell itself
+		this.nextStates = new boolean[512];
+		if(range == 1) {
+			int neighborMask = (neighborhood == MOORE) ? 0x1EF : 0xAA;
+			for(int index = 0; index < 512; index++) {
+				boolean alive = (index & 0x10) != 0;
+				int count = Integer.bitCount(index & neighborMask) + ((countsSelf && alive) ? 1 : 0);
+				nextStates[index] = alive ? survival[count] : birth[count];
+			}
+		}
+
+		// the next state for every state and count, with dying states counting down to dead
+		int counts = birth.length;
+		this.transitions = new byte[states * counts];
+		for(int count = 0; count < counts; count++) {
+			transitions[count] = (byte) (birth[count] ? 1 : 0);
+			transitions[counts + count] = (byte) (survival[count] ? 1 : (states > 2 ? 2 : 0));
+			for(int state = 2; state < states; state++) {
+				transitions[state * counts + count] = (byte) ((state + 1) % states);
+			}
+		}
+	}
+
+	/*
+	 * Parses a rule string in B/S, Generations or Larger than Life notation; letters may
+	 * be upper or lower case, and a malformed string throws an IllegalArgumentException
+	 */
+	public static Rule parse(String rule) {
+		String text = rule.trim().toUpperCase();
+		if(text.length() > 1 && text.charAt(0) == 'R' && Character.isDigit(text.charAt(1))) {
+			return parseLargerThanLife(text, rule);
+		}
+
+		return parseBirthSurvival(text, rule);
+	}
+
+	/*
+	 * Parses B/S and Generations notation, with or without the B, S and C letters
+	 */
+	private static Rule parseBirthSurvival(String text, String rule) {
+		String[] parts = text.split("/", -1);
+		if(parts.length < 2 || parts.length > 3) {
+			throw new IllegalArgumentException("\"" + rule + "\" is not a B/S or Generations rule");
+		}
+
+		String births = null;
+		String survivals = null;
+		String stateCount = null;
+		boolean lettered = parts[0].startsWith("B") || parts[0].startsWith("S");
+		for(int i = 0; i < parts.length; i++) {
+			String part = parts[i];
+			if(lettered && part.startsWith("B") && births == null) {
+				births = part.substring(1);
+			}
+			else if(lettered && part.startsWith("S") && survivals == null) {
+				survivals = part.substring(1);
+			}
+			else if(lettered && part.startsWith("C")) {
+				stateCount = part.substring(1);
+			}
+			else if(!lettered && i == 0) {
+				survivals = part;
+			}
+			else if(!lettered && i == 1) {
+				births = part;
+			}
+			else if(!lettered && i == 2) {
+				stateCount = part;
+			}
+			else {
+				throw new IllegalArgumentException("\"" + rule + "\" has an unexpected part \"" + part + "\"");
+			}
+		}
+		if(births == null || survivals == null) {
+			throw new IllegalArgumentException("\"" + rule + "\" needs both a B and an S part");
+		}
+
+		int states = 2;
+		if(stateCount != null) {
+			states = parseNumber(stateCount, rule);
+			if(states < 2 || states > 256) {
+				throw new IllegalArgumentException("\"" + rule + "\" must have from 2 to 256 states");
+			}
+		}
+
+		boolean[] birth = parseDigits(births, rule);
+		boolean[] survival = parseDigits(survivals, rule);
+		String notation = "B" + digitsOf(birth) + "/S" + digitsOf(survival) + (states > 2 ? "/C" + states : "");
+		return new Rule(notation, 1, states, MOORE, false, birth, survival);
+	}
+
+	/*
+	 * Parses Larger than Life notation, such as "R5,C2,M1,S34..58,B34..45,NM"
+	 */
+	private static Rule parseLargerThanLife(String text, String rule) {
+		int range = -1;
+		int states = 2;
+		boolean countsSelf = false;
+		int neighborhood = MOORE;
+		int[] survivalRange = null;
+		int[] birthRange = null;
+
+		for(String field: text.split(",")) {
+			String part = field.trim();
+			if(part.isEmpty()) {
+				throw new IllegalArgumentException("\"" + rule + "\" has an empty part");
+			}
+
+			String value = part.substring(1);
+			switch(part.charAt(0)) {
+				case 'R':
+					range = parseNumber(value, rule);
+					break;
+				case 'C':
+					// C0 and C1 are the usual ways of writing a two-state rule
+					states = Math.max(2, parseNumber(value, rule));
+					break;
+				case 'M':
+					countsSelf = parseNumber(value, rule) == 1;
+					break;
+				case 'S':
+					survivalRange = parseRange(value, rule);
+					break;
+				case 'B':
+					birthRange = parseRange(value, rule);
+					break;
+				case 'N':
+					if(value.equals("M")) {
+						neighborhood = MOORE;
+					}
+					else if(value.equals("N")) {
+						neighborhood = VON_NEUMANN;
+					}
+					else {
+						throw new IllegalArgumentException("\"" + rule + "\" has an unknown neighborhood N" + value);
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("\"" + rule + "\" has an unexpected part \"" + part + "\"");
+			}
+		}
+
+		if(range < 1 || range > 500) {
+			throw new IllegalArgumentException("\"" + rule + "\" must have a range from 1 to 500");
+		}
+		if(states > 256) {
+			throw new IllegalArgumentException("\"" + rule + "\" must have from 2 to 256 states");
+		}
+		if(survivalRange == null || birthRange == null) {
+			throw new IllegalArgumentException("\"" + rule + "\" needs both an S and a B range");
+		}
+
+		int side = 2 * range + 1;
+		int maximumCount = (neighborhood == MOORE) ? side * side : 2 * range * (range + 1) + 1;
+		if(!countsSelf) {
+			maximumCount--;
+		}
+
+		boolean[] birth = new boolean[maximumCount + 1];
+		boolean[] survival = new boolean[maximumCount + 1];
+		for(int count = 0; count <= maximumCount; count++) {
+			birth[count] = count >= birthRange[0] && count <= birthRange[1];
+			survival[count] = count >= survivalRange[0] && count <= survivalRange[1];
+		}
+
+		String notation = "R" + range + ",C" + states + ",M" + (countsSelf ? 1 : 0)
+				+ ",S" + survivalRange[0] + ".." + survivalRange[1]
+				+ ",B" + birthRange[0] + ".." + birthRange[1]
+				+ ",N" + (neighborhood == MOORE ? "M" : "N");
+		return new Rule(notation, range, states, neighborhood, countsSelf, birth, survival);
+	}
+
+	/*
+	 * Parses a string of neighbor counts from 0 to 8 into a table of nine flags
+	 */
+	private static boolean[] parseDigits(String digits, String rule) {
+		boolean[] counts = new boolean[9];
+		for(int i = 0; i < digits.length(); i++) {
+			char digit = digits.charAt(i);
+			if(digit < '0' || digit > '8') {
+				throw new IllegalArgumentException("\"" + rule + "\" has a neighbor count '" + digit + "' outside 0 to 8");
+			}
+			counts[digit - '0'] = true;
+		}
+		return counts;
+	}
+
+	/*
+	 * Parses a range of counts written as "low..high", or a single count
+	 */
+	private static int[] parseRange(String range, String rule) {
+		int dots = range.indexOf("..");
+		if(dots < 0) {
+			int count = parseNumber(range, rule);
+			return new int[] {count, count};
+		}
+
+		return new int[] {parseNumber(range.substring(0, dots), rule), parseNumber(range.substring(dots + 2), rule)};
+	}
+
+	/*
+	 * Parses a non-negative whole number that is part of a rule string
+	 */
+	private static int parseNumber(String number, String rule) {
+		try {
+			int value = Integer.parseInt(number.trim());
+			if(value >= 0) {
+				return value;
+			}
+		}
+		catch(NumberFormatException e) {
+			// falls through to the error below
+		}
+		throw new IllegalArgumentException("\"" + rule + "\" has a malformed number \"" + number + "\"");
+	}
+
+	/*
+	 * Writes the counts that are set in a table of flags as a string of digits
+	 */
+	private static String digitsOf(boolean[] counts) {
+		StringBuilder digits = new StringBuilder();
+		for(int count = 0; count < counts.length; count++) {
+			if(counts[count]) {
+				digits.append(count);
+			}
+		}
+		return digits.toString();
+	}
+
+	/*
+	 * Checks if this is Conway's Game of Life, however it was written, which the
+	 * SWAR-based Steppers are built for
+	 */
+	public boolean isConway() {
+		return this == CONWAY || CONWAY != null && states == 2 && range == 1
+				&& Arrays.equals(nextStates, CONWAY.nextStates);
+	}
+
+	/*
+	 * Checks if a GameOfLife, whose BitBoard only holds dead and living Cells and is
+	 * stepped by looking at 3x3 neighborhoods, can run this rule
+	 */
+	public boolean isTwoStateRangeOne() {
+		return states == 2 && range == 1;
+	}
+
+	/*
+	 * Returns the next state of a dead (false) or living (true) Cell given its 3x3
+	 * neighborhood as a 9-bit index, where bit (dy + 1) * 3 + (dx + 1) is the Cell
+	 * at (dx, dy); only meaningful for rules of range 1
+	 */
+	public boolean nextState(int neighborhoodIndex) {
+		return nextStates[neighborhoodIndex];
+	}
+
+	/*
+	 * Returns the table behind nextState, for the engines that index it directly
+	 */
+	boolean[] getNextStates() {
+		return nextStates;
+	}
+
+	/*
+	 * Returns the table of next states, indexed by state * (getMaximumCount() + 1)
+	 * plus the number of living Cells in the neighborhood
+	 */
+	byte[] getTransitions() {
+		return transitions;
+	}
+
+	/*
+	 * Returns the range of the neighborhood, 1 for the 3x3 neighborhood (getter)
+	 */
+	public int getRange() {
+		return range;
+	}
+
+	/*
+	 * Returns the number of states, 2 when Cells are only dead or alive (getter)
+	 */
+	public int getStates() {
+		return states;
+	}
+
+	/*
+	 * Returns MOORE or VON_NEUMANN (getter)
+	 */
+	public int getNeighborhood() {
+		return neighborhood;
+	}
+
+	/*
+	 * Checks if a Cell counts itself among its living neighbors (getter)
+	 */
+	public boolean countsSelf() {
+		return countsSelf;
+	}
+
+	/*
+	 * Returns the largest number of living Cells a neighborhood can hold
+	 */
+	public int getMaximumCount() {
+		return birth.length - 1;
+	}
+
+	/*
+	 * Returns the rule in the notation it was parsed from, written the standard way
+	 */
+	public String toString() {
+		return notation;
+	}
+
+	/*
+	 * Checks if another object is a Rule with the same behavior
+	 */
+	public boolean equals(Object other) {
+		if(!(other instanceof Rule)) {
+			return false;
+		}
+
+		Rule rule = (Rule) other;
+		return range == rule.range && states == rule.states && neighborhood == rule.neighborhood
+				&& countsSelf == rule.countsSelf && Arrays.equals(birth, rule.birth)
+				&& Arrays.equals(survival, rule.survival);
+	}
+
+	public int hashCode() {
+		return ((range * 31 + states) * 31 + neighborhood) * 31 + Arrays.hashCode(birth) * 7 + Arrays.hashCode(survival);
+	}
+
+	public static void main(String[] args) {
+		String[] rules = {"B3/S23", "23/3", "b36/s23", "B3678/S34678", "B2/S/C3", "345/2/4",
+				"R5,C2,M1,S34..58,B34..45,NM", "R1,C0,M0,S2..3,B3,NM", "R2,C3,M0,S4..7,B5..6,NN"};
+
+		for(String text: rules) {
+			Rule rule = parse(text);
+			System.out.println(text + " is " + rule + ", range " + rule.getRange() + ", " + rule.getStates()
+					+ " states, Conway: " + rule.isConway());
+		}
+
+		String[] malformed = {"B9/S23", "B3", "B3/S23/C1", "R0,C2,S1..2,B3..3", "R2,C2,S1..2"};
+		for(String text: malformed) {
+			try {
+				parse(text);
+				throw new AssertionError("\"" + text + "\" should not parse");
+			}
+			catch(IllegalArgumentException e) {
+				System.out.println("Rejected: " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,289 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * This class runs a GameOfLife on its own thread, so that slow generations never hold
+ * up the Swing Event Dispatch Thread
+ * While it is running, the loop computes generations as fast as it can (or with a
+ * chosen delay between them) and publishes an immutable Frame of the latest generation
+ * through an AtomicReference, at most once per frame interval (16 ms by default), so
+ * the copies follow the screen's refresh rate rather than the generation rate
+ * The user interface reads only Frames and never the GameOfLife itself, so no locks are
+ * needed on either side; a Runnable can be given to hear about every new Frame, and is
+ * called on the simulation thread
+ * After the loop is started, the GameOfLife must only be touched through this class
+ * Given a GenerationHistory, the loop records every generation in it and can rewind
+ * the game to any stored generation, on the simulation thread like everything else
+ */
+public class SimulationLoop implements Runnable {
+
+	// instance data
+	private GameOfLife game;
+	private AtomicReference<Frame> latestFrame;
+	private Runnable frameListener;
+	private GenerationHistory history;
+	private Thread thread;
+	private long frameNanos = 16000000L;
+	private volatile long delayNanos;
+
+	// the commands sent to the simulation thread, guarded by this object's monitor
+	private boolean running;
+	private int pendingSteps;
+	private int pendingRewind = -1;
+	private boolean shutdown;
+
+	/*
+	 * Constructs a paused SimulationLoop for the given game and publishes its first Frame
+	 */
+	public SimulationLoop(GameOfLife game) {
+		this.game = game;
+		this.latestFrame = new AtomicReference<Frame>(new Frame(game));
+	}
+
+	/*
+	 * Sets the Runnable called on the simulation thread after every new Frame is
+	 * published, such as one that asks the Swing components to repaint
+	 */
+	public void setFrameListener(Runnable frameListener) {
+		this.frameListener = frameListener;
+	}
+
+	/*
+	 * Records the current generation and every following one in the given history,
+	 * so rewind can go back to them; this must be called before the loop is started
+	 */
+	public void setHistory(GenerationHistory history) {
+		this.history = history;
+		history.record(game);
+		game.addGenerationListener(history);
+	}
+
+	/*
+	 * Pauses the loop and puts a generation stored in the history back into the game,
+	 * then publishes its Frame; running on from there replaces the later generations
+	 */
+	public synchronized void rewind(int generation) {
+		if(history == null) {
+			throw new IllegalStateException("The simulation loop keeps no history");
+		}
+
+		ensureThread();
+		running = false;
+		pendingSteps = 0;
+		pendingRewind = generation;
+		notifyAll();
+	}
+
+	/*
+	 * Sets the pause between generations in milliseconds; 0, the default, runs the
+	 * generations as fast as possible
+	 */
+	public void setDelay(long delayMillis) {
+		this.delayNanos = delayMillis * 1000000L;
+	}
+
+	/*
+	 * Returns the Frame of the latest published generation
+	 */
+	public Frame getLatestFrame() {
+		return latestFrame.get();
+	}
+
+	/*
+	 * Starts running generations continuously, starting the simulation thread if needed
+	 */
+	public synchronized void start() {
+		ensureThread();
+		running = true;
+		notifyAll();
+	}
+
+	/*
+	 * Stops running generations after the current one and publishes its Frame; single
+	 * steps still waiting are dropped, so none of them runs after the pause
+	 */
+	public synchronized void pause() {
+		running = false;
+		pendingSteps = 0;
+		notifyAll();
+	}
+
+	/*
+	 * Asks for a single generation to be computed and published while paused; it does
+	 * nothing while the loop is running
+	 */
+	public synchronized void step() {
+		ensureThread();
+		if(running) {
+			return;
+		}
+
+		pendingSteps++;
+		notifyAll();
+	}
+
+	/*
+	 * Checks if the loop is running generations continuously
+	 */
+	public synchronized boolean isRunning() {
+		return running;
+	}
+
+	/*
+	 * Stops the simulation thread for good and waits for it to finish
+	 */
+	public void shutdown() throws InterruptedException {
+		Thread toJoin;
+		synchronized(this) {
+			shutdown = true;
+			running = false;
+			notifyAll();
+			toJoin = thread;
+		}
+
+		if(toJoin != null) {
+			toJoin.join();
+		}
+	}
+
+	/*
+	 * Starts the simulation thread the first time it is needed
+	 */
+	private void ensureThread() {
+		if(shutdown) {
+			throw new IllegalStateException("The simulation loop has been shut down");
+		}
+
+		if(thread == null) {
+			thread = new Thread(this, "simulation loop");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/*
+	 * The body of the simulation thread: waits for commands, computes generations, and
+	 * publishes Frames
+	 */
+	public void run() {
+		long lastPublish = 0;
+
+		while(true) {
+			boolean publishNow;
+			int rewindTo;
+			synchronized(this) {
+				while(!shutdown && !running && pendingSteps == 0 && pendingRewind < 0) {
+					try {
+						wait();
+					}
+					catch(InterruptedException e) {
+						return;
+					}
+				}
+
+				if(shutdown) {
+					return;
+				}
+
+				// single steps and the last generation before a pause are always shown
+				publishNow = !running;
+				rewindTo = pendingRewind;
+				pendingRewind = -1;
+				if(pendingSteps > 0 && !running && rewindTo < 0) {
+					pendingSteps--;
+				}
+			}
+
+			if(rewindTo >= 0) {
+				if(history.contains(rewindTo)) {
+					history.restore(game, rewindTo);
+				}
+				latestFrame.set(new Frame(game));
+				if(frameListener != null) {
+					frameListener.run();
+				}
+				continue;
+			}
+
+			game.nextGen();
+
+			long now = System.nanoTime();
+			if(publishNow || now - lastPublish >= frameNanos || !isRunning()) {
+				latestFrame.set(new Frame(game));
+				lastPublish = now;
+				if(frameListener != null) {
+					frameListener.run();
+				}
+			}
+
+			long delay = delayNanos;
+			if(delay > 0) {
+				synchronized(this) {
+					long wakeUp = System.nanoTime() + delay;
+					for(long left = delay; left > 0 && running && !shutdown; left = wakeUp - System.nanoTime()) {
+						try {
+							wait(left / 1000000L, (int) (left % 1000000L));
+						}
+						catch(InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		GameOfLife game = LifeBenchmark.randomGame(512, 30, 8);
+		game.setStepper(new SwarStepper());
+		SimulationLoop loop = new SimulationLoop(game);
+		loop.setHistory(new GenerationHistory(32, 1 << 16, 256L << 20));
+		AtomicInteger generationsComputed = new AtomicInteger();
+		game.addGenerationListener(new GenerationListener() {
+
+			@Override
+			public void generationComputed(GameOfLife game) {
+				generationsComputed.incrementAndGet();
+			}
+
+		});
+
+		loop.start();
+		Thread.sleep(500);
+		for(int i = 0; i < 5; i++) {
+			loop.step();
+		}
+		loop.pause();
+		int computedAtPause = generationsComputed.get();
+		Thread.sleep(50);
+
+		// only the generation under way when pause was called may still finish
+		if(generationsComputed.get() > computedAtPause + 1) {
+			throw new AssertionError((generationsComputed.get() - computedAtPause)
+					+ " generations ran after the pause, replaying steps asked for while running");
+		}
+
+		Frame frame = loop.getLatestFrame();
+		System.out.println("Ran " + frame.getGeneration() + " generations in half a second; the last Frame has "
+				+ frame.getPopulation() + " living Cells");
+
+		loop.step();
+		Thread.sleep(50);
+		if(loop.getLatestFrame().getGeneration() != frame.getGeneration() + 1) {
+			throw new AssertionError("A single step went from generation " + frame.getGeneration() + " to "
+					+ loop.getLatestFrame().getGeneration());
+		}
+		System.out.println("After a single step the Frame is at generation " + loop.getLatestFrame().getGeneration());
+
+		int generation = frame.getGeneration() / 2;
+		loop.rewind(generation);
+		Thread.sleep(50);
+		if(loop.getLatestFrame().getGeneration() != generation) {
+			throw new AssertionError("Rewinding to generation " + generation + " showed generation "
+					+ loop.getLatestFrame().getGeneration());
+		}
+		System.out.println("Rewound to generation " + generation + ", which has " + loop.getLatestFrame().getPopulation()
+				+ " living Cells");
+		loop.shutdown();
+	}
+}
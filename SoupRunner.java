@@ -0,0 +1,329 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * This class runs large ensembles of random "soups": a small square of random Cells
+ * in the middle of an otherwise empty field, run until it settles into a still life or
+ * a cycle, to gather statistics of how long soups live and what they leave behind
+ * The soups are split between the threads of a ForkJoinPool as a tree of tasks, which
+ * idle threads steal from each other; every thread keeps its own pair of games and
+ * its own Statistics and reuses them for every soup it runs, so a soup allocates
+ * nothing, and the threads' Statistics are only added together at the end
+ * Each task splits its SplittableRandom when it splits its range of soups, so every
+ * soup gets the same random numbers however the tasks are scheduled, and a run gives
+ * the same Statistics on any number of threads
+ * A soup is run with runUntilStable; once the period of its cycle is known, a second
+ * game started period generations ahead walks along with a copy of the soup until the
+ * two meet, which gives the exact generation the cycle began
+ */
+public class SoupRunner {
+
+	// ranges of soups no larger than this are run by one task without splitting
+	private static final int SOUPS_PER_TASK = 32;
+
+	// instance data
+	private int fieldSize;
+	private int soupSize;
+	private int density;
+	private int maxGenerations;
+
+	/*
+	 * Constructs a SoupRunner for soups of the given side length, filled to the given
+	 * percentage, in the middle of a square field, each run for at most maxGenerations
+	 */
+	public SoupRunner(int fieldSize, int soupSize, int density, int maxGenerations) {
+		if(soupSize < 1 || soupSize > fieldSize) {
+			throw new IllegalArgumentException("A " + soupSize + "x" + soupSize + " soup does not fit on a "
+					+ fieldSize + "x" + fieldSize + " field");
+		}
+		if(density < 0 || density > 100 || maxGenerations < 1) {
+			throw new IllegalArgumentException("The density must be a percentage and maxGenerations positive");
+		}
+
+		this.fieldSize = fieldSize;
+		this.soupSize = soupSize;
+		this.density = density;
+		this.maxGenerations = maxGenerations;
+	}
+
+	/*
+	 * This class holds the aggregated results of many soups: distributions of how many
+	 * generations they took to settle, how many Cells they left and the periods of
+	 * their cycles, and how many did not settle in time
+	 */
+	public static class Statistics {
+
+		// instance data
+		private long soups;
+		private long unsettled;
+		private LatencyHistogram lifespans = new LatencyHistogram();
+		private LatencyHistogram populations = new LatencyHistogram();
+		private LatencyHistogram periods = new LatencyHistogram();
+
+		/*
+		 * Records a soup that settled into a cycle
+		 */
+		void recordSettled(int lifespan, int population, int period) {
+			soups++;
+			lifespans.record(lifespan);
+			populations.record(population);
+			periods.record(period);
+		}
+
+		/*
+		 * Records a soup that was still changing after the last generation allowed
+		 */
+		void recordUnsettled() {
+			soups++;
+			unsettled++;
+		}
+
+		/*
+		 * Adds the results of other soups to these
+		 */
+		public void add(Statistics other) {
+			soups += other.soups;
+			unsettled += other.unsettled;
+			lifespans.add(other.lifespans);
+			populations.add(other.populations);
+			periods.add(other.periods);
+		}
+
+		/*
+		 * Returns how many soups were run (getter)
+		 */
+		public long getSoups() {
+			return soups;
+		}
+
+		/*
+		 * Returns how many soups did not settle in time (getter)
+		 */
+		public long getUnsettled() {
+			return unsettled;
+		}
+
+		/*
+		 * Returns the distribution of the generation each settled soup's cycle began
+		 */
+		public LatencyHistogram getLifespans() {
+			return lifespans;
+		}
+
+		/*
+		 * Returns the distribution of the number of Cells alive when each settled
+		 * soup's cycle began
+		 */
+		public LatencyHistogram getPopulations() {
+			return populations;
+		}
+
+		/*
+		 * Returns the distribution of the periods of the settled soups' cycles, where a
+		 * still life has period 1
+		 */
+		public LatencyHistogram getPeriods() {
+			return periods;
+		}
+
+		/*
+		 * Returns the results as a few lines of text
+		 */
+		public String toString() {
+			return soups + " soups, " + unsettled + " unsettled\n"
+					+ "lifespan: " + lifespans + "\n"
+					+ "population: " + populations + "\n"
+					+ "period: " + periods;
+		}
+	}
+
+	/*
+	 * This class holds the games and results one thread reuses for all its soups
+	 */
+	private final class Worker {
+		private GameOfLife game = new GameOfLife(fieldSize, fieldSize);
+		private GameOfLife ahead = new GameOfLife(fieldSize, fieldSize);
+		private BitBoard soup = new BitBoard(fieldSize, fieldSize);
+		private Statistics statistics = new Statistics();
+
+		private Worker() {
+			game.setStepper(new ActiveSetStepper());
+			ahead.setStepper(new ActiveSetStepper());
+		}
+	}
+
+	/*
+	 * Runs the given number of soups on the given number of threads, taking the random
+	 * numbers from the given seed, and returns their Statistics
+	 */
+	public Statistics run(long soups, long seed, int threads) {
+		List<Worker> workers = new ArrayList<Worker>();
+		ThreadLocal<Worker> threadWorker = new ThreadLocal<Worker>() {
+
+			@Override
+			protected Worker initialValue() {
+				Worker worker = new Worker();
+				synchronized(workers) {
+					workers.add(worker);
+				}
+				return worker;
+			}
+
+		};
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new SoupTask(threadWorker, 0, soups, new SplittableRandom(seed)));
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		Statistics total = new Statistics();
+		for(Worker worker: workers) {
+			total.add(worker.statistics);
+		}
+		return total;
+	}
+
+	/*
+	 * This class runs a range of soups, splitting it in half for another thread to
+	 * steal while it is larger than SOUPS_PER_TASK
+	 */
+	private final class SoupTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private ThreadLocal<Worker> threadWorker;
+		private long from;
+		private long to;
+		private SplittableRandom random;
+
+		private SoupTask(ThreadLocal<Worker> threadWorker, long from, long to, SplittableRandom random) {
+			this.threadWorker = threadWorker;
+			this.from = from;
+			this.to = to;
+			this.random = random;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > SOUPS_PER_TASK) {
+				long middle = (from + to) >>> 1;
+				invokeAll(new SoupTask(threadWorker, from, middle, random.split()),
+						new SoupTask(threadWorker, middle, to, random));
+				return;
+			}
+
+			Worker worker = threadWorker.get();
+			for(long i = from; i < to; i++) {
+				runSoup(worker, random);
+			}
+		}
+	}
+
+	/*
+	 * Seeds the worker's game with a random soup, runs it until it settles and records
+	 * the result in the worker's Statistics
+	 */
+	private void runSoup(Worker worker, SplittableRandom random) {
+		GameOfLife game = worker.game;
+		game.clear();
+		game.setGenNumber(0);
+		int corner = (fieldSize - soupSize) / 2;
+		for(int y = 0; y < soupSize; y++) {
+			for(int x = 0; x < soupSize; x++) {
+				if(random.nextInt(100) < density) {
+					game.revive(corner + x, corner + y);
+				}
+			}
+		}
+		worker.soup.copyFrom(game.getBoard());
+		settle(worker);
+	}
+
+	/*
+	 * Runs the soup in the worker's game until it settles and records when its cycle
+	 * began, how many Cells it had then and the period of the cycle
+	 */
+	private void settle(Worker worker) {
+		GameOfLife game = worker.game;
+		int period = game.runUntilStable(maxGenerations);
+		if(period == 0) {
+			worker.statistics.recordUnsettled();
+			return;
+		}
+
+		// the soup and a copy started period generations ahead first match where the cycle begins
+		GameOfLife ahead = worker.ahead;
+		game.getBoard().copyFrom(worker.soup);
+		ahead.getBoard().copyFrom(worker.soup);
+		for(int i = 0; i < period; i++) {
+			ahead.nextGen();
+		}
+
+		int lifespan = 0;
+		while(!game.getBoard().hasSameCells(ahead.getBoard())) {
+			game.nextGen();
+			ahead.nextGen();
+			lifespan++;
+		}
+		worker.statistics.recordSettled(lifespan, game.aliveCount(), period);
+	}
+
+	public static void main(String[] args) {
+		int soups = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+		SoupRunner runner = new SoupRunner(256, 16, 50, 20000);
+
+		// the walk must find the same cycle as remembering every generation of small soups
+		SoupRunner small = new SoupRunner(48, 10, 40, 5000);
+		Worker worker = small.new Worker();
+		SplittableRandom random = new SplittableRandom(23);
+		for(int soup = 0; soup < 50; soup++) {
+			small.runSoup(worker, random);
+			Statistics found = worker.statistics;
+			worker.statistics = new Statistics();
+
+			GameOfLife game = new GameOfLife(48, 48);
+			game.getBoard().copyFrom(worker.soup);
+			Map<String, Integer> seen = new HashMap<String, Integer>();
+			String state = Arrays.toString(game.getBoard().getWords());
+			while(!seen.containsKey(state)) {
+				seen.put(state, game.getGenNumber());
+				game.nextGen();
+				state = Arrays.toString(game.getBoard().getWords());
+			}
+			int lifespan = seen.get(state);
+			if(found.getLifespans().getMax() != lifespan || found.getPeriods().getMax() != game.getGenNumber() - lifespan) {
+				throw new AssertionError("Soup " + soup + " settles at generation " + lifespan + " with period "
+						+ (game.getGenNumber() - lifespan) + ", not as found:\n" + found);
+			}
+		}
+		System.out.println("The walk finds the start of the cycle of 50 small soups exactly");
+
+		// the Statistics must not depend on the number of threads
+		long start = System.nanoTime();
+		Statistics oneThread = runner.run(soups, 23, 1);
+		long oneThreadNanos = System.nanoTime() - start;
+		System.out.println(oneThread);
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		for(int count = 2; count <= Math.max(4, threads); count *= 2) {
+			start = System.nanoTime();
+			Statistics statistics = runner.run(soups, 23, count);
+			long elapsed = System.nanoTime() - start;
+			if(!statistics.toString().equals(oneThread.toString())) {
+				throw new AssertionError(count + " threads gave different statistics:\n" + statistics);
+			}
+			System.out.println(String.format("%d threads: %.0f soups per second, %.2f times 1 thread", count,
+					soups * 1e9 / elapsed, (double) oneThreadNanos / elapsed));
+		}
+		System.out.println(String.format("1 thread: %.0f soups per second", soups * 1e9 / oneThreadNanos));
+	}
+}
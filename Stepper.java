@@ -0,0 +1,36 @@
+/*
+ * This interface is implemented by the classes that compute the next generation
+ * of a whole BitBoard at once, working on its packed rows instead of one Cell at a time
+ * A Stepper reads only the current BitBoard and writes only the next one, so separate
+ * bands of rows can be computed independently of each other
+ * A Stepper keeps the next BitBoard's counts of living Cells up to date: stepRows sets
+ * the count of every row it writes, and of the Cells born in it, and step adds them up
+ * once all rows are written
+ * A GameOfLife object uses its Stepper, when it has one that supports its Rule, in
+ * place of calling willBeAlive for every Cell
+ */
+public interface Stepper {
+
+	/*
+	 * Writes rows fromRow (inclusive) to toRow (exclusive) of the generation after
+	 * current into next; both BitBoards must have the same dimensions
+	 */
+	void stepRows(BitBoard current, BitBoard next, int fromRow, int toRow);
+
+	/*
+	 * Checks if this Stepper computes generations of the given Rule; a GameOfLife falls
+	 * back to willBeAlive while its Stepper does not support its Rule
+	 * The SWAR-based Steppers only know Conway's rules, which is the default
+	 */
+	default boolean supports(Rule rule) {
+		return rule.isConway();
+	}
+
+	/*
+	 * Writes every row of the generation after current into next
+	 */
+	default void step(BitBoard current, BitBoard next) {
+		stepRows(current, next, 0, current.getHeight());
+		next.sumRowPopulations();
+	}
+}
@@ -0,0 +1,363 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * This class is one worker of a DistributedGameOfLife: it holds a horizontal strip of
+ * the board, a range of whole rows, and computes its generations, usually in a process
+ * of its own
+ * The strip is a BitBoard as tall as the strip, and its ghost rows hold the halo: the
+ * bottom row of the strip above and the top row of the strip below, so any Stepper
+ * computes the strip exactly as it would inside the whole board
+ * Before every generation the worker sends its top and bottom rows to the workers
+ * above and below it and reads theirs into its ghost rows; the two neighbor channels
+ * are non-blocking and served by one Selector, so both halos travel at once and two
+ * neighbors sending to each other cannot block on full socket buffers
+ * The coordinator talks to a worker over a blocking channel, one message at a time:
+ * it assigns the strip, asks for a number of generations, gathers the rows or stops
+ * the worker
+ * Usage: java StripWorker <coordinator host> <coordinator port>
+ */
+public class StripWorker implements Runnable {
+
+	// the messages of the coordinator's protocol, each an int followed by its data
+	static final int HELLO = 1;
+	static final int ASSIGN = 2;
+	static final int STEP = 3;
+	static final int DONE = 4;
+	static final int GATHER = 5;
+	static final int ROWS = 6;
+	static final int STOP = 7;
+
+	// instance data
+	private InetSocketAddress coordinatorAddress;
+	private SocketChannel coordinator;
+	private ByteBuffer message = ByteBuffer.allocate(64);
+	private BitBoard strip;
+	private BitBoard nextStrip;
+	private Stepper stepper;
+	private int generationNumber;
+
+	// the channels to the workers above and below, null at the edges of the board
+	private SocketChannel above;
+	private SocketChannel below;
+	private Selector selector;
+	private ByteBuffer toAbove;
+	private ByteBuffer toBelow;
+	private ByteBuffer fromAbove;
+	private ByteBuffer fromBelow;
+
+	// the time spent exchanging halos and stepping since the last STEP message
+	private long exchangeNanos;
+	private long stepNanos;
+
+	/*
+	 * Constructs a StripWorker that will connect to the coordinator at the given address
+	 */
+	public StripWorker(InetSocketAddress coordinatorAddress) {
+		this.coordinatorAddress = coordinatorAddress;
+	}
+
+	/*
+	 * Reads from a blocking channel until the buffer is full
+	 */
+	static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer) < 0) {
+				throw new EOFException("The connection closed in the middle of a message");
+			}
+		}
+	}
+
+	/*
+	 * Writes the whole buffer to a blocking channel
+	 */
+	static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/*
+	 * Writes rows fromRow (inclusive) to toRow (exclusive) of a BitBoard to a blocking
+	 * channel as longs
+	 */
+	static void writeRows(SocketChannel channel, BitBoard board, int fromRow, int toRow) throws IOException {
+		int wordsPerRow = board.getWordsPerRow();
+		ByteBuffer buffer = ByteBuffer.allocate((toRow - fromRow) * wordsPerRow * Long.BYTES);
+		buffer.asLongBuffer().put(board.getWords(), board.rowOffset(fromRow), (toRow - fromRow) * wordsPerRow);
+		writeFully(channel, buffer);
+	}
+
+	/*
+	 * Reads rows fromRow (inclusive) to toRow (exclusive) of a BitBoard from a blocking
+	 * channel and recounts their living Cells
+	 */
+	static void readRows(SocketChannel channel, BitBoard board, int fromRow, int toRow) throws IOException {
+		int wordsPerRow = board.getWordsPerRow();
+		ByteBuffer buffer = ByteBuffer.allocate((toRow - fromRow) * wordsPerRow * Long.BYTES);
+		readFully(channel, buffer);
+		buffer.flip();
+		buffer.asLongBuffer().get(board.getWords(), board.rowOffset(fromRow), (toRow - fromRow) * wordsPerRow);
+		board.recountPopulations();
+		board.markModified();
+	}
+
+	/*
+	 * Reads the next int of a message from the coordinator
+	 */
+	private int readInt() throws IOException {
+		message.clear().limit(Integer.BYTES);
+		readFully(coordinator, message);
+		return message.getInt(0);
+	}
+
+	/*
+	 * Connects to the coordinator and serves its messages until it says STOP or the
+	 * connection fails
+	 */
+	public void run() {
+		try {
+			serve();
+		}
+		catch(IOException e) {
+			throw new RuntimeException("Strip worker failed", e);
+		}
+		finally {
+			close();
+		}
+	}
+
+	/*
+	 * Serves the coordinator's messages until STOP
+	 */
+	private void serve() throws IOException {
+		try(ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(new InetSocketAddress(coordinatorAddress.getAddress().isLoopbackAddress()
+					? coordinatorAddress.getAddress() : null, 0));
+			connect(server);
+		}
+
+		while(true) {
+			int type = readInt();
+			if(type == STEP) {
+				int generations = readInt();
+				runGenerations(generations);
+				message.clear();
+				message.putInt(DONE).putInt(generationNumber).putInt(strip.aliveCount())
+						.putLong(exchangeNanos).putLong(stepNanos).flip();
+				writeFully(coordinator, message);
+			}
+			else if(type == GATHER) {
+				message.clear();
+				message.putInt(ROWS).flip();
+				writeFully(coordinator, message);
+				writeRows(coordinator, strip, 0, strip.getHeight());
+			}
+			else if(type == STOP) {
+				return;
+			}
+			else {
+				throw new IOException("Unknown message " + type + " from the coordinator");
+			}
+		}
+	}
+
+	/*
+	 * Connects to the coordinator, says which port the worker below should connect to,
+	 * and waits for the strip to be assigned
+	 */
+	private void connect(ServerSocketChannel server) throws IOException {
+		coordinator = SocketChannel.open(coordinatorAddress);
+		coordinator.socket().setTcpNoDelay(true);
+
+		message.clear();
+		message.putInt(HELLO).putInt(((InetSocketAddress) server.getLocalAddress()).getPort()).flip();
+		writeFully(coordinator, message);
+
+		int type = readInt();
+		if(type != ASSIGN) {
+			throw new IOException("Expected a strip from the coordinator, not message " + type);
+		}
+		assign(server);
+	}
+
+	/*
+	 * Reads the strip assigned by the coordinator and connects to the neighboring
+	 * workers: first to the one above, which is already listening, then accepting the
+	 * one below
+	 */
+	private void assign(ServerSocketChannel server) throws IOException {
+		int width = readInt();
+		int height = readInt();
+		this.generationNumber = readInt();
+		int abovePort = readInt();
+		boolean hasBelow = readInt() != 0;
+
+		ByteBuffer text = ByteBuffer.allocate(readInt());
+		readFully(coordinator, text);
+		String aboveHost = new String(text.array(), StandardCharsets.UTF_8);
+		text = ByteBuffer.allocate(readInt());
+		readFully(coordinator, text);
+		Rule rule = Rule.parse(new String(text.array(), StandardCharsets.UTF_8));
+
+		this.strip = new BitBoard(width, height);
+		this.nextStrip = new BitBoard(width, height);
+		readRows(coordinator, strip, 0, height);
+		this.stepper = rule.isConway() ? new SwarStepper() : new LutStepper(rule);
+
+		this.selector = Selector.open();
+		int rowBytes = strip.getWordsPerRow() * Long.BYTES;
+		if(abovePort >= 0) {
+			above = SocketChannel.open(new InetSocketAddress(aboveHost, abovePort));
+			toAbove = ByteBuffer.allocateDirect(rowBytes);
+			fromAbove = ByteBuffer.allocateDirect(rowBytes);
+			register(above);
+		}
+		if(hasBelow) {
+			below = server.accept();
+			toBelow = ByteBuffer.allocateDirect(rowBytes);
+			fromBelow = ByteBuffer.allocateDirect(rowBytes);
+			register(below);
+		}
+	}
+
+	/*
+	 * Makes a neighbor channel non-blocking and registers it with the Selector
+	 */
+	private void register(SocketChannel channel) throws IOException {
+		channel.socket().setTcpNoDelay(true);
+		channel.configureBlocking(false);
+		channel.register(selector, 0);
+	}
+
+	/*
+	 * Computes the given number of generations of the strip, exchanging the halos
+	 * before each one
+	 */
+	private void runGenerations(int generations) throws IOException {
+		exchangeNanos = 0;
+		stepNanos = 0;
+
+		for(int i = 0; i < generations; i++) {
+			long start = System.nanoTime();
+			exchangeHalos();
+			long exchanged = System.nanoTime();
+
+			stepper.step(strip, nextStrip);
+			BitBoard previousStrip = strip;
+			strip = nextStrip;
+			nextStrip = previousStrip;
+			generationNumber++;
+
+			exchangeNanos += exchanged - start;
+			stepNanos += System.nanoTime() - exchanged;
+		}
+	}
+
+	/*
+	 * Sends the top and bottom rows to the neighbors and reads their rows into the
+	 * ghost rows, serving both channels with the Selector until every row is through
+	 */
+	private void exchangeHalos() throws IOException {
+		int pending = 0;
+		if(above != null) {
+			pending += startExchange(above, toAbove, fromAbove, 0);
+		}
+		if(below != null) {
+			pending += startExchange(below, toBelow, fromBelow, strip.getHeight() - 1);
+		}
+
+		while(pending > 0) {
+			selector.select();
+			for(SelectionKey key: selector.selectedKeys()) {
+				SocketChannel channel = (SocketChannel) key.channel();
+				ByteBuffer out = (channel == above) ? toAbove : toBelow;
+				ByteBuffer in = (channel == above) ? fromAbove : fromBelow;
+
+				if(key.isWritable()) {
+					channel.write(out);
+					if(!out.hasRemaining()) {
+						key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+						pending--;
+					}
+				}
+				if(key.isReadable()) {
+					if(channel.read(in) < 0) {
+						throw new EOFException("A neighboring worker closed its connection");
+					}
+					if(!in.hasRemaining()) {
+						key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+						pending--;
+					}
+				}
+			}
+			selector.selectedKeys().clear();
+		}
+
+		long[] words = strip.getWords();
+		int wordsPerRow = strip.getWordsPerRow();
+		if(above != null) {
+			fromAbove.flip();
+			fromAbove.asLongBuffer().get(words, strip.rowOffset(-1), wordsPerRow);
+		}
+		if(below != null) {
+			fromBelow.flip();
+			fromBelow.asLongBuffer().get(words, strip.rowOffset(strip.getHeight()), wordsPerRow);
+		}
+	}
+
+	/*
+	 * Fills the outgoing buffer with one row, readies the incoming one, and asks the
+	 * Selector for both directions; returns the two transfers left to finish
+	 */
+	private int startExchange(SocketChannel channel, ByteBuffer out, ByteBuffer in, int row) {
+		out.clear();
+		LongBuffer longs = out.asLongBuffer();
+		longs.put(strip.getWords(), strip.rowOffset(row), strip.getWordsPerRow());
+		in.clear();
+		channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		return 2;
+	}
+
+	/*
+	 * Closes every channel the worker opened
+	 */
+	private void close() {
+		SocketChannel[] channels = {coordinator, above, below};
+		for(SocketChannel channel: channels) {
+			try {
+				if(channel != null) {
+					channel.close();
+				}
+			}
+			catch(IOException e) {
+				// nothing more can be done with a channel that will not close
+			}
+		}
+		try {
+			if(selector != null) {
+				selector.close();
+			}
+		}
+		catch(IOException e) {
+			// as above
+		}
+	}
+
+	public static void main(String[] args) {
+		if(args.length != 2) {
+			System.err.println("Usage: java StripWorker <coordinator host> <coordinator port>");
+			System.exit(2);
+		}
+
+		new StripWorker(new InetSocketAddress(args[0], Integer.parseInt(args[1]))).run();
+	}
+}
@@ -0,0 +1,147 @@
+import java.util.Random;
+
+/*
+ * This class computes generations of John Conway's Game of Life 64 Cells at a time,
+ * treating each long of a BitBoard row as 64 one-bit counters ("SIMD within a register")
+ * For every long, the eight neighbor words are formed by shifting the longs of the rows
+ * above, below and at the Cell itself one bit west and east, and are then added up
+ * with bitwise full adders into the ones, twos and fours bits of each Cell's count
+ * A Cell is alive in the next generation when its count is 3, or when it is 2 and the
+ * Cell is already alive, which reduces to: no fours, a twos bit, and either a ones bit
+ * or a living Cell
+ */
+public class SwarStepper implements Stepper {
+
+	/*
+	 * Writes rows fromRow (inclusive) to toRow (exclusive) of the generation after
+	 * current into next
+	 */
+	public void stepRows(BitBoard current, BitBoard next, int fromRow, int toRow) {
+		long[] source = current.getWords();
+		long[] target = next.getWords();
+		long[] interiorMask = current.getInteriorMask();
+		int wordsPerRow = current.getWordsPerRow();
+
+		for(int y = fromRow; y < toRow; y++) {
+			int above = current.rowOffset(y - 1);
+			int middle = current.rowOffset(y);
+			int below = current.rowOffset(y + 1);
+
+			// the longs to the west of, at, and to the east of position i in each row
+			long abovePrevious = 0L, aboveWord = source[above], aboveNext;
+			long middlePrevious = 0L, middleWord = source[middle], middleNext;
+			long belowPrevious = 0L, belowWord = source[below], belowNext;
+			int rowPopulation = 0;
+			int rowBirths = 0;
+
+			for(int i = 0; i < wordsPerRow; i++) {
+				if(i + 1 < wordsPerRow) {
+					aboveNext = source[above + i + 1];
+					middleNext = source[middle + i + 1];
+					belowNext = source[below + i + 1];
+				}
+				else {
+					aboveNext = 0L;
+					middleNext = 0L;
+					belowNext = 0L;
+				}
+
+				long word = nextWord(abovePrevious, aboveWord, aboveNext,
+						middlePrevious, middleWord, middleNext,
+						belowPrevious, belowWord, belowNext) & interiorMask[i];
+				target[middle + i] = word;
+				rowPopulation += Long.bitCount(word);
+				rowBirths += Long.bitCount(word & ~middleWord);
+
+				abovePrevious = aboveWord;
+				aboveWord = aboveNext;
+				middlePrevious = middleWord;
+				middleWord = middleNext;
+				belowPrevious = belowWord;
+				belowWord = belowNext;
+			}
+			next.setRowPopulation(y, rowPopulation);
+			next.setRowBirths(y, rowBirths);
+		}
+	}
+
+	/*
+	 * Computes the next state of the 64 Cells held in middleWord, given the longs on
+	 * either side of it in its own row and in the rows above and below
+	 */
+	static long nextWord(long abovePrevious, long aboveWord, long aboveNext,
+			long middlePrevious, long middleWord, long middleNext,
+			long belowPrevious, long belowWord, long belowNext) {
+		// a Cell's west neighbor is the bit below it, and its east neighbor the bit above it
+		long aboveWest = (aboveWord << 1) | (abovePrevious >>> 63);
+		long aboveEast = (aboveWord >>> 1) | (aboveNext << 63);
+		long middleWest = (middleWord << 1) | (middlePrevious >>> 63);
+		long middleEast = (middleWord >>> 1) | (middleNext << 63);
+		long belowWest = (belowWord << 1) | (belowPrevious >>> 63);
+		long belowEast = (belowWord >>> 1) | (belowNext << 63);
+
+		// full adders for the rows above and below, a half adder for the Cell's own row
+		long sum = aboveWest ^ aboveWord;
+		long aboveOnes = sum ^ aboveEast;
+		long aboveTwos = (aboveWest & aboveWord) | (sum & aboveEast);
+
+		sum = belowWest ^ belowWord;
+		long belowOnes = sum ^ belowEast;
+		long belowTwos = (belowWest & belowWord) | (sum & belowEast);
+
+		long middleOnes = middleWest ^ middleEast;
+		long middleTwos = middleWest & middleEast;
+
+		// adds the three ones bits, carrying into the twos
+		sum = aboveOnes ^ belowOnes;
+		long ones = sum ^ middleOnes;
+		long carry = (aboveOnes & belowOnes) | (sum & middleOnes);
+
+		// adds the four twos bits; any pair of them makes a count of four or more
+		long firstPair = aboveTwos ^ belowTwos;
+		long secondPair = middleTwos ^ carry;
+		long twos = firstPair ^ secondPair;
+		long fours = (aboveTwos & belowTwos) | (middleTwos & carry) | (firstPair & secondPair);
+
+		return ~fours & twos & (ones | middleWord);
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		int[] widths = {1, 2, 62, 63, 64, 65, 127, 130, 200};
+		SwarStepper swar = new SwarStepper();
+
+		// compares the SWAR kernel with willBeAlive on randomized boards of awkward widths
+		for(int width: widths) {
+			for(int trial = 0; trial < 20; trial++) {
+				int height = 1 + random.nextInt(40);
+				GameOfLife game = new GameOfLife(width, height);
+				for(int x = 0; x < width; x++) {
+					for(int y = 0; y < height; y++) {
+						if(random.nextInt(100) < 10 + trial * 4) {
+							game.revive(x, y);
+						}
+					}
+				}
+
+				BitBoard next = new BitBoard(width, height);
+				swar.step(game.getBoard(), next);
+
+				for(int x = 0; x < width; x++) {
+					for(int y = 0; y < height; y++) {
+						if(next.isAlive(x, y) != game.willBeAlive(x, y)) {
+							throw new AssertionError("SWAR and willBeAlive disagree at (" + x + ", " + y
+									+ ") on a " + width + "x" + height + " board");
+						}
+					}
+				}
+				if(next.aliveCount() != next.aliveCount(0, 0, width, height - 1) + next.rowAliveCount(height - 1)
+						|| next.aliveCount() != next.aliveCount(1, 0, width, height) + next.aliveCount(0, 0, 1, height)) {
+					throw new AssertionError("The counts of living Cells do not add up on a " + width + "x" + height + " board");
+				}
+			}
+		}
+
+		System.out.println("The SWAR kernel matches willBeAlive on " + widths.length * 20 + " random boards");
+	}
+}
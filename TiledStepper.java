@@ -0,0 +1,338 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * This class computes generations a tile at a time, where a tile is one long column
+ * of the BitBoard (64 Cells across) by TILE_ROWS rows, and skips every tile that
+ * cannot change
+ * For each tile it keeps a flag telling whether the tile changed in the last generation
+ * and a count of its living Cells; a tile is only recomputed when it or one of the
+ * eight tiles around it changed, because the BitBoard being written still holds the
+ * generation before the current one, which agrees with the current one in every tile
+ * that did not change; a recomputed tile whose whole neighborhood has no living Cells
+ * is simply cleared
+ * This suits boards that are mostly still life or empty, with activity in a few places,
+ * where a generation costs about as much as the active tiles
+ * The first generation, and any generation after the BitBoards were edited or
+ * swapped for others, recomputes every tile that has a living Cell nearby
+ * The tile populations describe the BitBoard written by the last call to step, and
+ * add up to its number of living Cells
+ * When the edges wrap around, a tile on an edge whose ghost squares differ from the
+ * generation before counts as changed, and while any ghost square is alive the edge
+ * tiles are never cleared as dead
+ */
+public class TiledStepper implements Stepper {
+
+	// the number of rows in a tile
+	static final int TILE_ROWS = 64;
+
+	// the BitBoards of the last generation and their modification counts afterwards
+	private BitBoard lastCurrent;
+	private BitBoard lastNext;
+	private int lastCurrentModCount;
+	private int lastNextModCount;
+
+	// the tiles across (one per long of a row) and down, and their flags and populations
+	private int tilesAcross;
+	private int tilesDown;
+	private boolean[] changed = new boolean[0];
+	private boolean[] nextChanged = new boolean[0];
+	private int[] populations = new int[0];
+	private int[] nextPopulations = new int[0];
+	private int population;
+	private int computedTileCount;
+	private boolean ghostsAlive;
+
+	private SwarStepper fullStepper = new SwarStepper();
+
+	/*
+	 * Writes the generation after current into next, skipping the tiles whose
+	 * neighborhood did not change when next still holds the generation before current
+	 */
+	public void step(BitBoard current, BitBoard next) {
+		boolean incremental = current == lastNext && next == lastCurrent
+				&& current.getModCount() == lastNextModCount
+				&& next.getModCount() == lastCurrentModCount;
+
+		if(!incremental) {
+			startOver(current);
+		}
+		scanGhosts(current, next, incremental);
+		stepTiles(current, next, incremental);
+
+		lastCurrent = current;
+		lastNext = next;
+		lastCurrentModCount = current.getModCount();
+		lastNextModCount = next.getModCount();
+	}
+
+	/*
+	 * Writes rows fromRow (inclusive) to toRow (exclusive) of the generation after
+	 * current into next; a band of rows is always computed in full, and the next
+	 * call to step starts over
+	 */
+	public void stepRows(BitBoard current, BitBoard next, int fromRow, int toRow) {
+		fullStepper.stepRows(current, next, fromRow, toRow);
+		lastCurrent = null;
+		lastNext = null;
+	}
+
+	/*
+	 * Returns the number of living Cells on the BitBoard written by the last call to step
+	 */
+	public int getPopulation() {
+		return population;
+	}
+
+	/*
+	 * Returns the number of living Cells in the tile holding long column of a row and
+	 * rows band * TILE_ROWS up to the next band, on the BitBoard written by the last step
+	 */
+	public int getTilePopulation(int column, int band) {
+		return populations[band * tilesAcross + column];
+	}
+
+	/*
+	 * Returns the number of tiles across the BitBoard, one per long of a row
+	 */
+	public int getTilesAcross() {
+		return tilesAcross;
+	}
+
+	/*
+	 * Returns the number of tiles down the BitBoard
+	 */
+	public int getTilesDown() {
+		return tilesDown;
+	}
+
+	/*
+	 * Returns the number of tiles recomputed in the last generation, the rest being skipped
+	 */
+	public int getComputedTileCount() {
+		return computedTileCount;
+	}
+
+	/*
+	 * Sizes the tile arrays for the BitBoard, counts the living Cells of each tile, and
+	 * marks every tile as changed so that the whole neighborhood of each is looked at
+	 */
+	private void startOver(BitBoard current) {
+		long[] source = current.getWords();
+		int height = current.getHeight();
+		tilesAcross = current.getWordsPerRow();
+		tilesDown = (height + TILE_ROWS - 1) / TILE_ROWS;
+
+		int tileCount = tilesAcross * tilesDown;
+		if(changed.length != tileCount) {
+			changed = new boolean[tileCount];
+			nextChanged = new boolean[tileCount];
+			populations = new int[tileCount];
+			nextPopulations = new int[tileCount];
+		}
+
+		long[] interiorMask = current.getInteriorMask();
+		Arrays.fill(populations, 0);
+		Arrays.fill(changed, true);
+		for(int y = 0; y < height; y++) {
+			int row = current.rowOffset(y);
+			int tile = (y / TILE_ROWS) * tilesAcross;
+			for(int column = 0; column < tilesAcross; column++) {
+				populations[tile + column] += Long.bitCount(source[row + column] & interiorMask[column]);
+			}
+		}
+	}
+
+	/*
+	 * Looks for living ghost squares around current and, when stepping incrementally,
+	 * marks as changed every edge tile whose ghost squares differ from those of next,
+	 * which still holds the generation before with its own ghosts filled
+	 */
+	private void scanGhosts(BitBoard current, BitBoard next, boolean incremental) {
+		long[] source = current.getWords();
+		long[] target = next.getWords();
+		int height = current.getHeight();
+		int top = current.rowOffset(-1);
+		int bottom = current.rowOffset(height);
+		int lastBand = (tilesDown - 1) * tilesAcross;
+		ghostsAlive = false;
+
+		for(int column = 0; column < tilesAcross; column++) {
+			ghostsAlive |= source[top + column] != 0 || source[bottom + column] != 0;
+			if(incremental && source[top + column] != target[top + column]) {
+				changed[column] = true;
+			}
+			if(incremental && source[bottom + column] != target[bottom + column]) {
+				changed[lastBand + column] = true;
+			}
+		}
+
+		int rightColumn = current.getWidth() + 1;
+		int rightWord = rightColumn >>> 6;
+		long rightMask = 1L << rightColumn;
+		for(int y = 0; y < height; y++) {
+			int row = current.rowOffset(y);
+			int band = (y / TILE_ROWS) * tilesAcross;
+			ghostsAlive |= (source[row] & 1L) != 0 || (source[row + rightWord] & rightMask) != 0;
+			if(incremental && ((source[row] ^ target[row]) & 1L) != 0) {
+				changed[band] = true;
+			}
+			if(incremental && ((source[row + rightWord] ^ target[row + rightWord]) & rightMask) != 0) {
+				changed[band + rightWord] = true;
+			}
+		}
+	}
+
+	/*
+	 * Recomputes or clears the tiles next to a change and leaves the others as they are
+	 */
+	private void stepTiles(BitBoard current, BitBoard next, boolean incremental) {
+		long[] source = current.getWords();
+		long[] target = next.getWords();
+		int height = current.getHeight();
+
+		population = 0;
+		computedTileCount = 0;
+		next.clearBirths();
+		for(int band = 0; band < tilesDown; band++) {
+			int firstRow = band * TILE_ROWS;
+			int endRow = Math.min(height, firstRow + TILE_ROWS);
+
+			for(int column = 0; column < tilesAcross; column++) {
+				int tile = band * tilesAcross + column;
+				boolean neighborhoodChanged = false;
+				boolean neighborhoodDead = true;
+
+				for(int b = Math.max(0, band - 1); b <= Math.min(tilesDown - 1, band + 1); b++) {
+					for(int c = Math.max(0, column - 1); c <= Math.min(tilesAcross - 1, column + 1); c++) {
+						neighborhoodChanged |= changed[b * tilesAcross + c];
+						neighborhoodDead &= populations[b * tilesAcross + c] == 0;
+					}
+				}
+				if(ghostsAlive && (band == 0 || band == tilesDown - 1 || column == 0 || column == tilesAcross - 1)) {
+					neighborhoodDead = false;
+				}
+
+				if(!neighborhoodChanged) {
+					// next already holds this tile's state, which stays the same
+					nextChanged[tile] = false;
+					nextPopulations[tile] = populations[tile];
+				}
+				else if(neighborhoodDead) {
+					// nothing can be born here; next may still hold Cells from two generations ago
+					for(int y = firstRow; y < endRow; y++) {
+						int index = next.rowOffset(y) + column;
+						if(target[index] != 0L) {
+							next.addRowPopulation(y, -Long.bitCount(target[index] & current.getInteriorMask()[column]));
+							target[index] = 0L;
+						}
+					}
+					nextChanged[tile] = false;
+					nextPopulations[tile] = 0;
+				}
+				else {
+					stepTile(current, next, source, target, column, firstRow, endRow, tile);
+					computedTileCount++;
+				}
+				population += nextPopulations[tile];
+			}
+		}
+
+		boolean[] swapChanged = changed;
+		changed = nextChanged;
+		nextChanged = swapChanged;
+		int[] swapPopulations = populations;
+		populations = nextPopulations;
+		nextPopulations = swapPopulations;
+	}
+
+	/*
+	 * Computes one tile with the SWAR kernel, recording whether it changed and its
+	 * population, and updating the row counts of next
+	 */
+	private void stepTile(BitBoard current, BitBoard next, long[] source, long[] target,
+			int column, int firstRow, int endRow, int tile) {
+		long interiorMask = current.getInteriorMask()[column];
+		boolean hasPrevious = column > 0;
+		boolean hasNext = column + 1 < tilesAcross;
+		boolean tileChanged = false;
+		int tilePopulation = 0;
+
+		for(int y = firstRow; y < endRow; y++) {
+			int index = current.rowOffset(y) + column;
+			int above = index - tilesAcross;
+			int below = index + tilesAcross;
+
+			long word = SwarStepper.nextWord(
+					hasPrevious ? source[above - 1] : 0L, source[above], hasNext ? source[above + 1] : 0L,
+					hasPrevious ? source[index - 1] : 0L, source[index], hasNext ? source[index + 1] : 0L,
+					hasPrevious ? source[below - 1] : 0L, source[below], hasNext ? source[below + 1] : 0L)
+					& interiorMask;
+
+			int wordPopulation = Long.bitCount(word);
+			int change = wordPopulation - Long.bitCount(target[index] & interiorMask);
+			if(change != 0) {
+				next.addRowPopulation(y, change);
+			}
+			int born = Long.bitCount(word & ~source[index]);
+			if(born != 0) {
+				next.addRowBirths(y, born);
+			}
+			target[index] = word;
+			tileChanged |= word != (source[index] & interiorMask);
+			tilePopulation += wordPopulation;
+		}
+
+		nextChanged[tile] = tileChanged;
+		nextPopulations[tile] = tilePopulation;
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(13);
+		GameOfLife full = new GameOfLife(700, 500);
+		GameOfLife tiled = new GameOfLife(700, 500);
+
+		// a few small soups on an otherwise empty board
+		for(int soup = 0; soup < 10; soup++) {
+			int left = random.nextInt(670);
+			int top = random.nextInt(470);
+			for(int x = left; x < left + 30; x++) {
+				for(int y = top; y < top + 30; y++) {
+					if(random.nextBoolean()) {
+						full.revive(x, y);
+						tiled.revive(x, y);
+					}
+				}
+			}
+		}
+
+		TiledStepper stepper = new TiledStepper();
+		full.setStepper(new SwarStepper());
+		tiled.setStepper(stepper);
+
+		for(int generation = 1; generation <= 400; generation++) {
+			if(generation == 150) {
+				// an edit between generations must be picked up
+				full.swapStatus(350, 250);
+				tiled.swapStatus(350, 250);
+			}
+
+			full.nextGen();
+			tiled.nextGen();
+			for(int x = 0; x < full.getWidth(); x++) {
+				for(int y = 0; y < full.getHeight(); y++) {
+					if(full.isAlive(x, y) != tiled.isAlive(x, y)) {
+						throw new AssertionError("Generation " + generation + " differs at (" + x + ", " + y + ")");
+					}
+				}
+			}
+			if(stepper.getPopulation() != full.aliveCount() || tiled.aliveCount() != full.aliveCount()) {
+				throw new AssertionError("Generation " + generation + " has " + full.aliveCount()
+						+ " living Cells but the tiles count " + stepper.getPopulation());
+			}
+		}
+
+		System.out.println("400 tiled generations match the full ones; tiles computed in the last one: "
+				+ stepper.getComputedTileCount() + " of " + stepper.getTilesAcross() * stepper.getTilesDown());
+	}
+}
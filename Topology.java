@@ -0,0 +1,17 @@
+/*
+ * This enum lists the ways the edges of a GameOfLife's Board can meet
+ * PLANE is a bounded plane: everything past an edge is dead
+ * TORUS joins the left edge to the right one and the top edge to the bottom one, so a
+ * glider leaving one side comes back on the other
+ * KLEIN_BOTTLE joins the left and right edges like a torus, but joins the top and
+ * bottom edges with a twist, so a Cell leaving the top at column x comes back at the
+ * bottom at column width - 1 - x
+ * The wrapping is done with the ghost rows and columns around a BitBoard, which are
+ * filled from the opposite edges once per generation, so the Steppers count
+ * neighbors across the edges without any modulo or bounds check per Cell
+ */
+public enum Topology {
+	PLANE,
+	TORUS,
+	KLEIN_BOTTLE
+}
@@ -0,0 +1,408 @@
+import java.util.Arrays;
+
+/*
+ * This class is an engine for John Conway's Game of Life on a board with no edges
+ * Only the living Cells are stored, each as its (x, y) coordinates packed into a single
+ * long, in a LongHashSet, so the board creates no Cell or boxed Integer objects and a
+ * pattern can travel as far as an int coordinate reaches without being clipped
+ * The coordinates Integer.MIN_VALUE and Integer.MAX_VALUE are reserved, so that every
+ * living Cell's neighbors can also be stored
+ * A GameOfLife object has a fixed width and height, so this class is a sibling of it
+ * rather than a kind of Board, and offers the same methods along with a bounding box
+ * that grows and shrinks with the pattern
+ * An UnboundedGameOfLife object can be constructed empty, from a two-dimensional Cell
+ * array, or from the current generation of a GameOfLife object
+ * Each generation is computed by adding one to a count for every neighbor of every
+ * living Cell, in a table of packed coordinates that is reused between generations
+ */
+public class UnboundedGameOfLife {
+
+	// instance data
+	private LongHashSet living;
+	private LongHashSet nextLiving;
+	private int generationNumber;
+
+	// the table of neighbor counts, keyed by packed coordinates
+	private long[] countKeys;
+	private byte[] counts;
+
+	// the smallest rectangle holding every living Cell, recomputed when it may have shrunk
+	private int minX;
+	private int maxX;
+	private int minY;
+	private int maxY;
+	private boolean boundsValid;
+
+	/*
+	 * Constructs an empty UnboundedGameOfLife
+	 */
+	public UnboundedGameOfLife() {
+		this.living = new LongHashSet();
+		this.nextLiving = new LongHashSet();
+		this.countKeys = new long[64];
+		this.counts = new byte[64];
+		Arrays.fill(countKeys, LongHashSet.EMPTY);
+		this.generationNumber = 0;
+		this.boundsValid = false;
+	}
+
+	/*
+	 * Constructs an UnboundedGameOfLife given a two-dimensional array of Cells, where
+	 * the Cell at [y][x] is placed at (x, y)
+	 */
+	public UnboundedGameOfLife(Cell[][] initialState) {
+		this();
+
+		for(int y = 0; y < initialState.length; y++) {
+			for(int x = 0; x < initialState[y].length; x++) {
+				if(initialState[y][x].getStatus() == Cell.ALIVE) {
+					revive(x, y);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Constructs an UnboundedGameOfLife holding the current generation of a GameOfLife;
+	 * an UnboundedGameOfLife only runs Conway's rules
+	 */
+	public UnboundedGameOfLife(GameOfLife game) {
+		this();
+
+		if(!game.getRule().isConway()) {
+			throw new IllegalArgumentException("An UnboundedGameOfLife only runs B3/S23, not " + game.getRule());
+		}
+
+		for(int y = 0; y < game.getHeight(); y++) {
+			for(int x = 0; x < game.getWidth(); x++) {
+				if(game.isAlive(x, y)) {
+					revive(x, y);
+				}
+			}
+		}
+
+		this.generationNumber = game.getGenNumber();
+	}
+
+	/*
+	 * Packs the coordinates (x, y) into a single long
+	 */
+	static long pack(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	/*
+	 * Returns the x coordinate of a packed long
+	 */
+	static int unpackX(long key) {
+		return (int) (key >> 32);
+	}
+
+	/*
+	 * Returns the y coordinate of a packed long
+	 */
+	static int unpackY(long key) {
+		return (int) key;
+	}
+
+	// Checks to see if the Cell at integer coordinates (x, y) is alive
+	public boolean isAlive(int x, int y) {
+		return living.contains(pack(x, y));
+	}
+
+	// Calculates how many of a Cell's neighbors are alive
+	public int countLivingNeighbors(int x, int y) {
+		int liveCellCount = 0;
+
+		for(int i = x - 1; i <= x + 1; i++) {
+			for(int j = y - 1; j <= y + 1; j++) {
+				if(!(i == x && j == y) && isAlive(i, j)) {
+					liveCellCount++;
+				}
+			}
+		}
+
+		return liveCellCount;
+	}
+
+	/*
+	 * Checks to see if the Cell at (x, y) will be alive in the next generation
+	 */
+	public boolean willBeAlive(int x, int y) {
+		int neighbors = countLivingNeighbors(x, y);
+		return (neighbors == 3 || isAlive(x, y) && neighbors == 2);
+	}
+
+	/*
+	 * Sets the Cell at (x, y) to the given state, either 0 (dead) or 1 (alive)
+	 */
+	public void setCell(int x, int y, int state) {
+		if(x == Integer.MIN_VALUE || x == Integer.MAX_VALUE || y == Integer.MIN_VALUE || y == Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("(" + x + ", " + y + ") is reserved for the neighbors of the edge Cells");
+		}
+
+		if(state == Cell.ALIVE) {
+			if(living.add(pack(x, y)) && boundsValid) {
+				minX = Math.min(minX, x);
+				maxX = Math.max(maxX, x);
+				minY = Math.min(minY, y);
+				maxY = Math.max(maxY, y);
+			}
+		}
+		else if(living.remove(pack(x, y)) && (x == minX || x == maxX || y == minY || y == maxY)) {
+			boundsValid = false;
+		}
+	}
+
+	/*
+	 * Sets the Cell at (x, y) to alive
+	 */
+	public void revive(int x, int y) {
+		setCell(x, y, Cell.ALIVE);
+	}
+
+	/*
+	 * Sets the Cell at (x, y) to dead
+	 */
+	public void kill(int x, int y) {
+		setCell(x, y, Cell.DEAD);
+	}
+
+	/*
+	 * Swaps the state of the Cell at (x, y)
+	 */
+	public void swapStatus(int x, int y) {
+		setCell(x, y, isAlive(x, y) ? Cell.DEAD : Cell.ALIVE);
+	}
+
+	/*
+	 * Counts how many total Cells are alive
+	 */
+	public int aliveCount() {
+		return living.size();
+	}
+
+	/*
+	 * Clears the board by killing every Cell
+	 */
+	public void clear() {
+		living.clear();
+		boundsValid = false;
+	}
+
+	/*
+	 * Advances from one generation to the next
+	 */
+	public void nextGen() {
+		clearCounts();
+
+		// every living Cell adds one to the count of each of its neighbors
+		for(int slot = 0; slot < living.getSlotCount(); slot++) {
+			if(living.isUsed(slot)) {
+				long key = living.keyAt(slot);
+				int x = unpackX(key);
+				int y = unpackY(key);
+				addCount(pack(x - 1, y - 1));
+				addCount(pack(x, y - 1));
+				addCount(pack(x + 1, y - 1));
+				addCount(pack(x - 1, y));
+				addCount(pack(x + 1, y));
+				addCount(pack(x - 1, y + 1));
+				addCount(pack(x, y + 1));
+				addCount(pack(x + 1, y + 1));
+			}
+		}
+
+		// the Cells with three neighbors, or two and already alive, live on
+		nextLiving.clear();
+		int newMinX = Integer.MAX_VALUE, newMaxX = Integer.MIN_VALUE;
+		int newMinY = Integer.MAX_VALUE, newMaxY = Integer.MIN_VALUE;
+
+		for(int slot = 0; slot < countKeys.length; slot++) {
+			long key = countKeys[slot];
+			if(key != LongHashSet.EMPTY && (counts[slot] == 3 || counts[slot] == 2 && living.contains(key))) {
+				int x = unpackX(key);
+				int y = unpackY(key);
+				if(x == Integer.MIN_VALUE || x == Integer.MAX_VALUE || y == Integer.MIN_VALUE || y == Integer.MAX_VALUE) {
+					throw new IllegalStateException("The pattern has reached the edge of the int coordinates");
+				}
+
+				nextLiving.add(key);
+				newMinX = Math.min(newMinX, x);
+				newMaxX = Math.max(newMaxX, x);
+				newMinY = Math.min(newMinY, y);
+				newMaxY = Math.max(newMaxY, y);
+			}
+		}
+
+		LongHashSet previous = living;
+		living = nextLiving;
+		nextLiving = previous;
+
+		minX = newMinX;
+		maxX = newMaxX;
+		minY = newMinY;
+		maxY = newMaxY;
+		boundsValid = living.size() > 0;
+		generationNumber++;
+	}
+
+	/*
+	 * Returns the generation number the game is currently on as an integer
+	 */
+	public int getGenNumber() {
+		return generationNumber;
+	}
+
+	/*
+	 * Returns the smallest x coordinate of a living Cell, or 0 if every Cell is dead
+	 */
+	public int getMinX() {
+		updateBounds();
+		return minX;
+	}
+
+	/*
+	 * Returns the largest x coordinate of a living Cell, or -1 if every Cell is dead
+	 */
+	public int getMaxX() {
+		updateBounds();
+		return maxX;
+	}
+
+	/*
+	 * Returns the smallest y coordinate of a living Cell, or 0 if every Cell is dead
+	 */
+	public int getMinY() {
+		updateBounds();
+		return minY;
+	}
+
+	/*
+	 * Returns the largest y coordinate of a living Cell, or -1 if every Cell is dead
+	 */
+	public int getMaxY() {
+		updateBounds();
+		return maxY;
+	}
+
+	/*
+	 * Returns the width of the bounding box of the living Cells as a long
+	 */
+	public long getWidth() {
+		return (long) getMaxX() - getMinX() + 1;
+	}
+
+	/*
+	 * Returns the height of the bounding box of the living Cells as a long
+	 */
+	public long getHeight() {
+		return (long) getMaxY() - getMinY() + 1;
+	}
+
+	/*
+	 * Recomputes the bounding box by visiting every living Cell, if it may have shrunk
+	 */
+	private void updateBounds() {
+		if(boundsValid) {
+			return;
+		}
+
+		if(living.size() == 0) {
+			minX = 0;
+			maxX = -1;
+			minY = 0;
+			maxY = -1;
+			return;
+		}
+
+		minX = Integer.MAX_VALUE;
+		maxX = Integer.MIN_VALUE;
+		minY = Integer.MAX_VALUE;
+		maxY = Integer.MIN_VALUE;
+		for(int slot = 0; slot < living.getSlotCount(); slot++) {
+			if(living.isUsed(slot)) {
+				long key = living.keyAt(slot);
+				minX = Math.min(minX, unpackX(key));
+				maxX = Math.max(maxX, unpackX(key));
+				minY = Math.min(minY, unpackY(key));
+				maxY = Math.max(maxY, unpackY(key));
+			}
+		}
+		boundsValid = true;
+	}
+
+	/*
+	 * Empties the table of neighbor counts, making sure it has room for the neighbors
+	 * of every living Cell without growing during the generation
+	 */
+	private void clearCounts() {
+		int needed = Integer.highestOneBit(Math.max(32, living.size() * 8) * 2 - 1) << 1;
+		if(countKeys.length < needed) {
+			countKeys = new long[needed];
+			counts = new byte[needed];
+		}
+		else {
+			Arrays.fill(counts, (byte) 0);
+		}
+
+		Arrays.fill(countKeys, LongHashSet.EMPTY);
+	}
+
+	/*
+	 * Adds one to the neighbor count of the Cell with the given packed coordinates
+	 */
+	private void addCount(long key) {
+		int mask = countKeys.length - 1;
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+
+		while(countKeys[slot] != LongHashSet.EMPTY && countKeys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+
+		countKeys[slot] = key;
+		counts[slot]++;
+	}
+
+	public static void main(String[] args) {
+		Cell[][] glider = {{new Cell(0), new Cell(1), new Cell(0)},
+				{new Cell(0), new Cell(0), new Cell(1)},
+				{new Cell(1), new Cell(1), new Cell(1)}};
+
+		UnboundedGameOfLife g = new UnboundedGameOfLife(glider);
+		for(int i = 0; i < 4000; i++) {
+			g.nextGen();
+		}
+
+		// a glider on a bounded board would have died at the edge long ago
+		System.out.println("After " + g.getGenNumber() + " generations the glider has " + g.aliveCount()
+				+ " Cells inside (" + g.getMinX() + ", " + g.getMinY() + ") to (" + g.getMaxX() + ", " + g.getMaxY() + ")");
+
+		// compares a soup with the bounded engine while it stays clear of the edges
+		GameOfLife bounded = new GameOfLife(200, 200);
+		for(int x = 90; x < 110; x++) {
+			for(int y = 90; y < 110; y++) {
+				if((x * 7 + y * 13) % 5 < 2) {
+					bounded.revive(x, y);
+				}
+			}
+		}
+
+		UnboundedGameOfLife unbounded = new UnboundedGameOfLife(bounded);
+		for(int generation = 0; generation < 60; generation++) {
+			bounded.nextGen();
+			unbounded.nextGen();
+		}
+
+		for(int x = 0; x < bounded.getWidth(); x++) {
+			for(int y = 0; y < bounded.getHeight(); y++) {
+				if(bounded.isAlive(x, y) != unbounded.isAlive(x, y)) {
+					throw new AssertionError("The engines differ at (" + x + ", " + y + ")");
+				}
+			}
+		}
+		System.out.println("60 unbounded generations match the bounded ones, " + unbounded.aliveCount() + " Cells alive, "
+				+ unbounded.getWidth() + "x" + unbounded.getHeight() + " bounding box");
+	}
+}
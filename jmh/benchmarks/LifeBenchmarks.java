@@ -0,0 +1,205 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * This class runs the LifeBenchmark measurements under JMH: GameOfLife.nextGen with the
+ * per-Cell path and every Stepper, countLivingNeighbors, aliveCount, Board.clear and
+ * BoardPanel.paintComponent, on square boards from 64x64 to 8192x8192 at several
+ * densities of living Cells
+ * JMH forks a fresh JVM for every benchmark, warms it up and hands every result to a
+ * Blackhole; besides the calls per second each benchmark reports the Cells it handled
+ * per second as the "cells" counter, and main adds the GC profiler, whose
+ * gc.alloc.rate.norm line is the bytes allocated per call
+ * JMH does not accept benchmarks in the default package and a named package cannot
+ * name its classes, so each state looks up a LifeBenchmark factory once by reflection
+ * and the measured call is a plain LongSupplier call on the Operation it returns
+ * Usage, after mvn package: java -jar target/benchmarks.jar [JMH options], for instance
+ * -p size=512 to run one board size
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class LifeBenchmarks {
+
+	// the number of Cells countLivingNeighbors is called on per call
+	private static final int NEIGHBOR_SAMPLES = 1 << 16;
+
+	/*
+	 * This class holds the Operation a benchmark repeats and the Cells it handles per call
+	 */
+	@State(Scope.Thread)
+	public abstract static class Measured {
+
+		LongSupplier operation;
+		long cellsPerCall;
+
+		/*
+		 * Calls the named static factory of LifeBenchmark
+		 */
+		void open(String factory, long cellsPerCall, Class<?>[] types, Object... arguments) throws ReflectiveOperationException {
+			this.operation = (LongSupplier) Class.forName("LifeBenchmark").getMethod(factory, types).invoke(null, arguments);
+			this.cellsPerCall = cellsPerCall;
+		}
+
+		@TearDown(Level.Trial)
+		public void close() throws Exception {
+			((AutoCloseable) operation).close();
+		}
+	}
+
+	/*
+	 * This class holds the board sizes and densities of living Cells, in percent
+	 */
+	@State(Scope.Thread)
+	public abstract static class Sized extends Measured {
+
+		@Param({"64", "512", "2048", "8192"})
+		public int size;
+
+		@Param({"5", "25", "50"})
+		public int density;
+	}
+
+	@State(Scope.Thread)
+	public static class NextGen extends Sized {
+
+		@Param({"cell", "swar", "parallel", "activeset", "tiled", "lut"})
+		public String engine;
+
+		@Setup(Level.Trial)
+		public void setUp() throws ReflectiveOperationException {
+			open("nextGen", (long) size * size, new Class<?>[] {int.class, int.class, String.class}, size, density, engine);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class CountLivingNeighbors extends Sized {
+
+		@Setup(Level.Trial)
+		public void setUp() throws ReflectiveOperationException {
+			open("countLivingNeighbors", NEIGHBOR_SAMPLES, new Class<?>[] {int.class, int.class, int.class}, size, density, NEIGHBOR_SAMPLES);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class AliveCount extends Sized {
+
+		@Setup(Level.Trial)
+		public void setUp() throws ReflectiveOperationException {
+			open("aliveCount", (long) size * size, new Class<?>[] {int.class, int.class}, size, density);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Paint extends Sized {
+
+		@Setup(Level.Trial)
+		public void setUp() throws ReflectiveOperationException {
+			open("paint", (long) size * size, new Class<?>[] {int.class, int.class}, size, density);
+		}
+	}
+
+	/*
+	 * This class refills a Board of GamePiece objects, which needs gigabytes beyond
+	 * 4096x4096, and clears it unless only the refill is measured
+	 */
+	@State(Scope.Thread)
+	public static class BoardRefill extends Measured {
+
+		@Param({"64", "512", "2048", "4096"})
+		public int boardSize;
+
+		@Param({"5", "25", "50"})
+		public int boardDensity;
+
+		@Param({"true", "false"})
+		public boolean clear;
+
+		@Setup(Level.Trial)
+		public void setUp() throws ReflectiveOperationException {
+			long cells = clear ? (long) boardSize * boardSize : (long) boardSize * boardSize * boardDensity / 100;
+			open("boardRefill", cells, new Class<?>[] {int.class, int.class, boolean.class}, boardSize, boardDensity, clear);
+		}
+	}
+
+	/*
+	 * This class counts the Cells handled, which JMH reports per second next to the calls
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Cells {
+
+		public long cells;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			cells = 0;
+		}
+	}
+
+	@Benchmark
+	public long nextGen(NextGen state, Cells counter) {
+		counter.cells += state.cellsPerCall;
+		return state.operation.getAsLong();
+	}
+
+	@Benchmark
+	public long countLivingNeighbors(CountLivingNeighbors state, Cells counter) {
+		counter.cells += state.cellsPerCall;
+		return state.operation.getAsLong();
+	}
+
+	@Benchmark
+	public long aliveCount(AliveCount state, Cells counter) {
+		counter.cells += state.cellsPerCall;
+		return state.operation.getAsLong();
+	}
+
+	@Benchmark
+	public long boardRefill(BoardRefill state, Cells counter) {
+		counter.cells += state.cellsPerCall;
+		return state.operation.getAsLong();
+	}
+
+	@Benchmark
+	public long paintComponent(Paint state, Cells counter) {
+		counter.cells += state.cellsPerCall;
+		return state.operation.getAsLong();
+	}
+
+	/*
+	 * Runs the benchmarks with the GC profiler, passing any JMH options on
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		new Runner(new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(LifeBenchmarks.class.getName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}